@@ -0,0 +1,552 @@
+/*
+ * Name: LoadGenerator.java
+ *
+ * What:
+ *   This file contains a program for measuring how the TrainStat server
+ *   behaves as clients are added.  It connects simulated clients over
+ *   loopback, plays a session of requests through the stores and reports
+ *   how long the changes take to reach the clients.
+ *
+ * Special Considerations:
+ *   It is a measuring tool, not part of CATS.  It writes its report to
+ *   the console.
+ */
+package cats.apps;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import cats.common.Constants;
+import cats.layout.FastClock;
+import cats.layout.store.FieldInfo;
+import cats.layout.store.FieldPair;
+import cats.layout.store.GenericRecord;
+import cats.network.NetworkProtocol;
+import cats.network.TrainStatServer;
+import cats.rr_events.LatencyHistogram;
+import cats.rr_events.RREventManager;
+import cats.trains.Train;
+
+/**
+ *   This file contains a program for measuring how the TrainStat server
+ *   behaves as clients are added.  It connects simulated clients over
+ *   loopback, plays a session of requests through the stores and reports
+ *   how long the changes take to reach the clients.
+ *   <p>
+ *   Unless it is told to connect to a running CATS, it starts the parts
+ *   of CATS the server needs (the clock, the record formats and the
+ *   RREvent thread) and the server itself, in the same JVM, so the heap
+ *   and thread counts it reports are those of the server.
+ *   <p>
+ *   The session adds trains and crews with the requests TrainStat clients
+ *   send, then changes the engine of the trains, round robin, at a fixed
+ *   rate.  Each change carries a unique mark; every client notes when the
+ *   change carrying the mark arrives, giving the time from the request
+ *   being sent to each client receiving the change.  The lines of a
+ *   script file, if given, are sent between the changes as extra load.
+ *   <p>
+ *   The arguments are
+ *   <pre>
+ *   -clients n     the number of clients (50)
+ *   -trains n      the number of trains (100)
+ *   -rate n        the changes sent each second (200)
+ *   -seconds n     how long the changes are sent (60)
+ *   -port n        the port of the server (NetworkProtocol.DEFAULT_PORT)
+ *   -connect host  use the server in a running CATS
+ *   -nonblocking   run the single thread server
+ *   -script file   a file of requests to send along with the changes
+ *   </pre>
+ *
+ * <p>Title: CATS - Crandic Automated Traffic System</p>
+ * <p>Description: A program for dispatching trains on Pat Lana's
+ * Crandic model railroad.
+ * <p>Copyright: Copyright (c) 2019</p>
+ * <p>Company: </p>
+ * @author Rodney Black
+ * @version $Revision$
+ */
+public class LoadGenerator {
+
+  /**
+   * is the start of the name of each train added.
+   */
+  private static final String TRAIN_PREFIX = "LOAD";
+
+  /**
+   * is the start of the name of each crew added.
+   */
+  private static final String CREW_PREFIX = "LOADCREW";
+
+  /**
+   * is the tag of the crew name.
+   */
+  private static final String CREW_NAME = "CREW_NAME";
+
+  /**
+   * is the start of the mark in each change.
+   */
+  private static final String MARK = "LOADMARK-";
+
+  /**
+   * is how long (in milliseconds) the clients are given to receive the
+   * stores before the changes start.
+   */
+  private static final long WARM_UP = 2000;
+
+  /**
+   * is how often (in milliseconds) the measurements are reported.
+   */
+  private static final long REPORT_INTERVAL = 1000;
+
+  /**
+   * is how long (in milliseconds) the sender sleeps between batches of
+   * requests.
+   */
+  private static final long TICK = 10;
+
+  /**
+   * is the number of bytes in a megabyte.
+   */
+  private static final long MEGABYTE = 1024 * 1024;
+
+  /**
+   * are the settings.
+   */
+  private int Clients = 50;
+  private int Trains = 100;
+  private int Rate = 200;
+  private int Seconds = 60;
+  private int Port = NetworkProtocol.DEFAULT_PORT;
+  private String Host;
+  private boolean NonBlocking;
+  private File Script;
+
+  /**
+   * is the time from sending each change to a client receiving it, for
+   * the whole run.
+   */
+  private final LatencyHistogram Latency = new LatencyHistogram();
+
+  /**
+   * is the time from sending each change to a client receiving it,
+   * since the last report.
+   */
+  private final LatencyHistogram Recent = new LatencyHistogram();
+
+  /**
+   * are when the marked changes were sent (System.nanoTime()), by mark.
+   */
+  private final ConcurrentHashMap<String, Long> Marks =
+    new ConcurrentHashMap<String, Long>();
+
+  /**
+   * are the lines received by all the clients.
+   */
+  private final AtomicLong Received = new AtomicLong();
+
+  /**
+   * are the bytes received by all the clients.
+   */
+  private final AtomicLong ReceivedBytes = new AtomicLong();
+
+  /**
+   * are the lines and bytes received and the requests sent, at the last
+   * report.
+   */
+  private long LastReceived;
+  private long LastBytes;
+  private long LastSent;
+
+  /**
+   * are the marked changes received by all the clients.
+   */
+  private final AtomicLong Deliveries = new AtomicLong();
+
+  /**
+   * are the requests sent.
+   */
+  private long Sent;
+
+  /**
+   * are the marked changes sent.
+   */
+  private long Changes;
+
+  /**
+   * are the clients.
+   */
+  private final List<Peer> Peers = new ArrayList<Peer>();
+
+  /**
+   * are the lines of the script.
+   */
+  private final List<String> ScriptLines = new ArrayList<String>();
+
+  /**
+   * is where the requests are sent.
+   */
+  private OutputStream Requests;
+
+  /**
+   * runs the program.
+   *
+   * @param args are the arguments, described above.
+   */
+  public static void main(String[] args) {
+    LoadGenerator generator = new LoadGenerator();
+    if (!generator.parse(args)) {
+      System.out.println("usage: LoadGenerator [-clients n] [-trains n] " +
+          "[-rate n] [-seconds n] [-port n] [-connect host] [-nonblocking] " +
+          "[-script file]");
+      System.exit(1);
+    }
+    try {
+      generator.run();
+    }
+    catch (IOException ioe) {
+      System.out.println("LoadGenerator failed: " + ioe.getMessage());
+      System.exit(1);
+    }
+    System.exit(0);
+  }
+
+  /**
+   * reads the arguments.
+   *
+   * @param args are the arguments.
+   * @return true if they are valid.
+   */
+  private boolean parse(String[] args) {
+    try {
+      for (int a = 0; a < args.length; ++a) {
+        if ("-clients".equals(args[a])) {
+          Clients = Integer.parseInt(args[++a]);
+        }
+        else if ("-trains".equals(args[a])) {
+          Trains = Integer.parseInt(args[++a]);
+        }
+        else if ("-rate".equals(args[a])) {
+          Rate = Integer.parseInt(args[++a]);
+        }
+        else if ("-seconds".equals(args[a])) {
+          Seconds = Integer.parseInt(args[++a]);
+        }
+        else if ("-port".equals(args[a])) {
+          Port = Integer.parseInt(args[++a]);
+        }
+        else if ("-connect".equals(args[a])) {
+          Host = args[++a];
+        }
+        else if ("-nonblocking".equals(args[a])) {
+          NonBlocking = true;
+        }
+        else if ("-script".equals(args[a])) {
+          Script = new File(args[++a]);
+        }
+        else {
+          return false;
+        }
+      }
+    }
+    catch (RuntimeException e) {
+      return false;
+    }
+    return (Clients > 0) && (Trains > 0) && (Rate > 0) && (Seconds > 0);
+  }
+
+  /**
+   * runs the session and reports the measurements.
+   *
+   * @throws IOException if the server cannot be reached or the script
+   * cannot be read.
+   */
+  private void run() throws IOException {
+    long start;
+    long now;
+    long nextReport;
+    long due;
+    int script = 0;
+    if (Script != null) {
+      readScript();
+    }
+    if (Host == null) {
+      startServer();
+    }
+    for (int c = 0; c < Clients; ++c) {
+      Peers.add(new Peer(new Socket((Host == null) ? "127.0.0.1" : Host,
+          Port), c));
+    }
+    for (Iterator<Peer> iter = Peers.iterator(); iter.hasNext(); ) {
+      iter.next().start();
+    }
+    Requests = Peers.get(0).Connection.getOutputStream();
+    for (int t = 0; t < Trains; ++t) {
+      send(Constants.ADD_TRAIN_REQUEST + Constants.FS +
+          pair(Train.TRAIN_SYMBOL, TRAIN_PREFIX + t) + Constants.FS +
+          pair(Train.TRAIN_NAME, "Load train " + t));
+      send(Constants.ADD_CREW_REQUEST + Constants.FS +
+          pair(CREW_NAME, CREW_PREFIX + t));
+    }
+    pause(WARM_UP);
+    Latency.reset();
+    Recent.reset();
+    Received.set(0);
+    ReceivedBytes.set(0);
+    Sent = 0;
+    System.out.println("seconds\tsent/s\trecv/s\tKB/s\tp50us\tp90us\tp99us\t" +
+        "maxus\tpending\theapMB\tthreads");
+    start = System.currentTimeMillis();
+    nextReport = start + REPORT_INTERVAL;
+    while ((now = System.currentTimeMillis()) < (start + (Seconds * 1000L))) {
+      due = ((now - start) * Rate) / 1000;
+      while (Changes < due) {
+        sendChange();
+        if (!ScriptLines.isEmpty()) {
+          send(ScriptLines.get(script));
+          script = (script + 1) % ScriptLines.size();
+        }
+      }
+      if (now >= nextReport) {
+        report((now - start) / 1000, REPORT_INTERVAL, Recent);
+        Recent.reset();
+        LastReceived = Received.get();
+        LastBytes = ReceivedBytes.get();
+        LastSent = Sent;
+        nextReport += REPORT_INTERVAL;
+      }
+      pause(TICK);
+    }
+    // let the last changes arrive
+    pause(WARM_UP);
+    System.out.println("total");
+    LastReceived = 0;
+    LastBytes = 0;
+    LastSent = 0;
+    report(Seconds, Seconds * 1000L, Latency);
+    for (Iterator<Peer> iter = Peers.iterator(); iter.hasNext(); ) {
+      iter.next().close();
+    }
+    if (Host == null) {
+      TrainStatServer.instance().disable();
+    }
+  }
+
+  /**
+   * reads the script.  Blank lines are skipped.
+   *
+   * @throws IOException if it cannot be read.
+   */
+  private void readScript() throws IOException {
+    BufferedReader reader = new BufferedReader(new FileReader(Script));
+    String line;
+    try {
+      while ((line = reader.readLine()) != null) {
+        if (line.trim().length() != 0) {
+          ScriptLines.add(line);
+        }
+      }
+    }
+    finally {
+      reader.close();
+    }
+  }
+
+  /**
+   * starts the parts of CATS the server needs and the server.
+   */
+  private void startServer() {
+    TrainStatServer server;
+    if (FastClock.TheClock == null) {
+      FastClock.TheClock = new FastClock();
+    }
+    FieldInfo.init(GenericRecord.EDITRECORD);
+    GenericRecord.init(GenericRecord.DATARECORD);
+    if (RREventManager.EventThread == null) {
+      RREventManager.EventThread = new Thread(new RREventManager());
+      RREventManager.EventThread.setName("RREventManager");
+      RREventManager.EventThread.setDaemon(true);
+      RREventManager.EventThread.start();
+    }
+    server = TrainStatServer.instance();
+    server.setPortNumber(Port);
+    server.setNonBlocking(NonBlocking);
+    server.enable();
+    // give the listener time to open the port
+    pause(WARM_UP / 4);
+  }
+
+  /**
+   * constructs a tag="value" field.
+   *
+   * @param tag is the tag.
+   * @param value is the value.
+   * @return the field.
+   */
+  private static String pair(String tag, String value) {
+    return tag + FieldPair.SEP + Constants.QUOTE + value + Constants.QUOTE;
+  }
+
+  /**
+   * sends a marked change to the next train.
+   *
+   * @throws IOException if the request cannot be sent.
+   */
+  private void sendChange() throws IOException {
+    String mark = MARK + Changes;
+    Marks.put(mark, Long.valueOf(System.nanoTime()));
+    send(Constants.CHANGE_TRAIN_REQUEST + Constants.FS +
+        pair(Train.TRAIN_SYMBOL, TRAIN_PREFIX + (Changes % Trains)) +
+        Constants.FS + pair(Train.ENGINE, mark));
+    ++Changes;
+  }
+
+  /**
+   * sends a request.
+   *
+   * @param request is the request.
+   * @throws IOException if it cannot be sent.
+   */
+  private void send(String request) throws IOException {
+    Requests.write((request + NetworkProtocol.EOL).getBytes());
+    ++Sent;
+  }
+
+  /**
+   * prints a line of measurements.  "pending" is the number of marked
+   * changes sent that some client has not yet received.
+   *
+   * @param seconds is the time since the changes started.
+   * @param span is the milliseconds measured.
+   * @param latency are the times measured.
+   */
+  private void report(long seconds, long span, LatencyHistogram latency) {
+    Runtime runtime = Runtime.getRuntime();
+    long received = Received.get() - LastReceived;
+    long bytes = ReceivedBytes.get() - LastBytes;
+    long sent = Sent - LastSent;
+    System.out.println(seconds + "\t" + ((sent * 1000) / span) + "\t" +
+        ((received * 1000) / span) + "\t" + ((bytes * 1000) / span / 1024) +
+        "\t" + micros(latency.getPercentile(50)) + "\t" +
+        micros(latency.getPercentile(90)) + "\t" +
+        micros(latency.getPercentile(99)) + "\t" + micros(latency.getMax()) +
+        "\t" + ((Changes * Clients) - Deliveries.get()) + "\t" +
+        ((runtime.totalMemory() - runtime.freeMemory()) / MEGABYTE) + "\t" +
+        ManagementFactory.getThreadMXBean().getThreadCount());
+  }
+
+  /**
+   * converts nanoseconds to microseconds.
+   *
+   * @param nanos is the time in nanoseconds.
+   * @return the time in microseconds.
+   */
+  private static long micros(long nanos) {
+    return nanos / 1000;
+  }
+
+  /**
+   * sleeps.
+   *
+   * @param millis is how long, in milliseconds.
+   */
+  private static void pause(long millis) {
+    try {
+      Thread.sleep(millis);
+    }
+    catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * is a simulated TrainStat client.  It reads everything the server
+   * sends and times the marked changes.
+   */
+  private class Peer extends Thread {
+
+    /**
+     * is the connection to the server.
+     */
+    final Socket Connection;
+
+    /**
+     * is the number of the last mark timed.  A mark is timed only the
+     * first time it is seen, so the marks in a snapshot of the stores
+     * are not counted again.
+     */
+    private long LastMark = -1;
+
+    /**
+     * is the ctor.
+     *
+     * @param connection is the connection to the server.
+     * @param number identifies the client.
+     */
+    Peer(Socket connection, int number) {
+      super("LoadPeer" + number);
+      setDaemon(true);
+      Connection = connection;
+    }
+
+    public void run() {
+      BufferedReader in;
+      String line;
+      String mark;
+      Long sent;
+      long number;
+      int start;
+      int end;
+      try {
+        in = new BufferedReader(new InputStreamReader(
+            Connection.getInputStream()));
+        while ((line = in.readLine()) != null) {
+          Received.incrementAndGet();
+          ReceivedBytes.addAndGet(line.length() + NetworkProtocol.EOL.length());
+          if ((start = line.indexOf(MARK)) >= 0) {
+            end = start + MARK.length();
+            while ((end < line.length()) && Character.isDigit(line.charAt(end))) {
+              ++end;
+            }
+            mark = line.substring(start, end);
+            sent = Marks.get(mark);
+            number = (end == (start + MARK.length())) ? -1 :
+              Long.parseLong(mark.substring(MARK.length()));
+            if ((sent != null) && (number > LastMark)) {
+              LastMark = number;
+              sent = Long.valueOf(System.nanoTime() - sent.longValue());
+              Latency.record(sent.longValue());
+              Recent.record(sent.longValue());
+              Deliveries.incrementAndGet();
+            }
+          }
+        }
+      }
+      catch (IOException ioe) {
+        // the connection was closed
+      }
+    }
+
+    /**
+     * disconnects from the server.
+     */
+    void close() {
+      try {
+        Connection.close();
+      }
+      catch (IOException ioe) {
+      }
+    }
+  }
+}
+/* @(#)LoadGenerator.java */
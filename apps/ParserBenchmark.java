@@ -0,0 +1,213 @@
+/*
+ * Name: ParserBenchmark.java
+ *
+ * What:
+ *   This file contains a program for measuring how long the RequestParser
+ *   takes to turn a TrainStat request into a record and how much it
+ *   allocates doing so.
+ *
+ * Special Considerations:
+ *   It is a measuring tool, not part of CATS.  It writes its report to
+ *   the console.
+ */
+package cats.apps;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.StringTokenizer;
+
+import cats.common.Constants;
+import cats.layout.store.FieldInfo;
+import cats.layout.store.FieldPair;
+import cats.layout.store.GenericRecord;
+import cats.network.RequestParser;
+import cats.trains.Train;
+import cats.trains.TrainStore;
+
+/**
+ *   This file contains a program for measuring how long the RequestParser
+ *   takes to turn a TrainStat request into a record and how much it
+ *   allocates doing so.
+ *   <p>
+ *   It parses the same change train request with the way requests were
+ *   parsed before (a StringTokenizer, a FieldPair made from each token and
+ *   a GenericRecord that grows as they are added) and with the
+ *   RequestParser, and reports the time and, if the JVM can count them,
+ *   the bytes allocated for each request.  The records are not handed to
+ *   the stores, so only the parsing is measured.
+ *   <p>
+ *   The arguments are
+ *   <pre>
+ *   -iterations n  the requests parsed in each round (1000000)
+ *   -rounds n      the rounds, the first of which warms up the JVM (5)
+ *   </pre>
+ *
+ * <p>Title: CATS - Crandic Automated Traffic System</p>
+ * <p>Description: A program for dispatching trains on Pat Lana's
+ * Crandic model railroad.
+ * <p>Copyright: Copyright (c) 2019</p>
+ * <p>Company: </p>
+ * @author Rodney Black
+ * @version $Revision$
+ */
+public class ParserBenchmark {
+
+  /**
+   * is the request parsed.
+   */
+  private static final String REQUEST = Constants.CHANGE_TRAIN_REQUEST +
+    Constants.FS + pair(Train.TRAIN_SYMBOL, "101") +
+    Constants.FS + pair(Train.TRAIN_NAME, "Cedar Rapids local") +
+    Constants.FS + pair(Train.ENGINE, "4126") +
+    Constants.FS + pair(Train.CABOOSE, "C-17") +
+    Constants.FS + pair(Train.CREW, "Smith") +
+    Constants.FS + pair(Train.LENGTH, "34") +
+    Constants.FS + pair(Train.WEIGHT, "2200") +
+    Constants.FS + pair(Train.CARS, "12");
+
+  /**
+   * is the number of requests parsed in each round.
+   */
+  private int Iterations = 1000000;
+
+  /**
+   * is the number of rounds.
+   */
+  private int Rounds = 5;
+
+  /**
+   * is where the fields start in the request.
+   */
+  private final int From = Constants.CHANGE_TRAIN_REQUEST.length();
+
+  /**
+   * keeps the JIT from discarding the records.
+   */
+  private long Sink;
+
+  /**
+   * runs the program.
+   *
+   * @param args are the arguments, described above.
+   */
+  public static void main(String[] args) {
+    ParserBenchmark bench = new ParserBenchmark();
+    if (!bench.parse(args)) {
+      System.out.println("usage: ParserBenchmark [-iterations n] [-rounds n]");
+      System.exit(1);
+    }
+    bench.run();
+    System.exit(0);
+  }
+
+  /**
+   * reads the arguments.
+   *
+   * @param args are the arguments.
+   * @return true if they are valid.
+   */
+  private boolean parse(String[] args) {
+    try {
+      for (int a = 0; a < args.length; ++a) {
+        if ("-iterations".equals(args[a])) {
+          Iterations = Integer.parseInt(args[++a]);
+        }
+        else if ("-rounds".equals(args[a])) {
+          Rounds = Integer.parseInt(args[++a]);
+        }
+        else {
+          return false;
+        }
+      }
+    }
+    catch (RuntimeException e) {
+      return false;
+    }
+    return (Iterations > 0) && (Rounds > 0);
+  }
+
+  /**
+   * parses the request, in rounds, both ways.
+   */
+  private void run() {
+    FieldInfo.init(GenericRecord.EDITRECORD);
+    GenericRecord.init(GenericRecord.DATARECORD);
+    System.out.println("request: " + REQUEST.length() + " characters");
+    for (int r = 0; r < Rounds; ++r) {
+      measure((r == 0) ? "warm up tokenizer" : "tokenizer", false);
+      measure((r == 0) ? "warm up parser   " : "parser   ", true);
+    }
+    if (Sink == 0) {
+      System.out.println("no fields parsed");
+    }
+  }
+
+  /**
+   * parses the request Iterations times and reports the cost.
+   *
+   * @param label identifies the way of parsing.
+   * @param inPlace is true for the RequestParser and false for the
+   * StringTokenizer.
+   */
+  private void measure(String label, boolean inPlace) {
+    RequestParser parser = RequestParser.instance();
+    long bytes = allocated();
+    long start = System.nanoTime();
+    long elapsed;
+    for (int i = 0; i < Iterations; ++i) {
+      if (inPlace) {
+        Sink += parser.toRecord(REQUEST, From, TrainStore.TrainKeeper).size();
+      }
+      else {
+        Sink += tokenize(REQUEST).size();
+      }
+    }
+    elapsed = System.nanoTime() - start;
+    bytes = allocated() - bytes;
+    System.out.println(label + ": " + (elapsed / Iterations) + " ns/op" +
+        ((bytes < 0) ? "" : ", " + (bytes / Iterations) + " bytes/op"));
+  }
+
+  /**
+   * parses a request the way it was parsed before the RequestParser
+   * worked in place.
+   *
+   * @param line is the request.
+   * @return the fields of the request.
+   */
+  private static GenericRecord tokenize(String line) {
+    StringTokenizer tokens = new StringTokenizer(line, Constants.FS_STRING);
+    GenericRecord rec = new GenericRecord();
+    tokens.nextToken();
+    while (tokens.hasMoreTokens()) {
+      rec.add(new FieldPair(tokens.nextToken()));
+    }
+    return rec;
+  }
+
+  /**
+   * asks the JVM how many bytes this thread has allocated.
+   *
+   * @return the bytes or -1, if the JVM does not count them.
+   */
+  private static long allocated() {
+    ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (bean instanceof com.sun.management.ThreadMXBean) {
+      return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(
+          Thread.currentThread().getId());
+    }
+    return -1;
+  }
+
+  /**
+   * forms a tag="value" token.
+   *
+   * @param tag is the tag.
+   * @param value is the value.
+   * @return the token.
+   */
+  private static String pair(String tag, String value) {
+    return tag + FieldPair.SEP + Constants.QUOTE + value + Constants.QUOTE;
+  }
+}
+/* @(#)ParserBenchmark.java */
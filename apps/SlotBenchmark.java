@@ -0,0 +1,170 @@
+/*
+ * Name: SlotBenchmark.java
+ *
+ * What:
+ *   This file contains a program for measuring how long finding a field
+ *   of a GenericRecord takes by its tag and by its FieldSlot.
+ *
+ * Special Considerations:
+ *   It is a measuring tool, not part of CATS.  It writes its report to
+ *   the console.
+ */
+package cats.apps;
+
+import cats.layout.store.FieldInfo;
+import cats.layout.store.FieldPair;
+import cats.layout.store.FieldSlot;
+import cats.layout.store.FieldVector;
+import cats.layout.store.GenericRecord;
+
+/**
+ *   This file contains a program for measuring how long finding a field
+ *   of a GenericRecord takes by its tag and by its FieldSlot.
+ *   <p>
+ *   It builds a FieldVector and a record laid out by it, the way the
+ *   records of a store are, and reads the first, middle and last fields
+ *   of the record, first with findPair(String) and then with
+ *   findPair(FieldSlot).  The tags searched for are copies of the tags in
+ *   the record, as they are when they come from a request or an XML file,
+ *   so the search compares characters, not references.
+ *   <p>
+ *   The arguments are
+ *   <pre>
+ *   -iterations n  the lookups of each field in each round (10000000)
+ *   -rounds n      the rounds, the first of which warms up the JVM (5)
+ *   -fields n      the fields in the record (20)
+ *   </pre>
+ *
+ * <p>Title: CATS - Crandic Automated Traffic System</p>
+ * <p>Description: A program for dispatching trains on Pat Lana's
+ * Crandic model railroad.
+ * <p>Copyright: Copyright (c) 2019</p>
+ * <p>Company: </p>
+ * @author Rodney Black
+ * @version $Revision$
+ */
+public class SlotBenchmark {
+
+  /**
+   * is the number of lookups of each field in each round.
+   */
+  private int Iterations = 10000000;
+
+  /**
+   * is the number of rounds.
+   */
+  private int Rounds = 5;
+
+  /**
+   * is the number of fields in the record.
+   */
+  private int Fields = 20;
+
+  /**
+   * keeps the JIT from discarding the lookups.
+   */
+  private long Sink;
+
+  /**
+   * runs the program.
+   *
+   * @param args are the arguments, described above.
+   */
+  public static void main(String[] args) {
+    SlotBenchmark bench = new SlotBenchmark();
+    if (!bench.parse(args)) {
+      System.out.println(
+          "usage: SlotBenchmark [-iterations n] [-rounds n] [-fields n]");
+      System.exit(1);
+    }
+    bench.run();
+    System.exit(0);
+  }
+
+  /**
+   * reads the arguments.
+   *
+   * @param args are the arguments.
+   * @return true if they are valid.
+   */
+  private boolean parse(String[] args) {
+    try {
+      for (int a = 0; a < args.length; ++a) {
+        if ("-iterations".equals(args[a])) {
+          Iterations = Integer.parseInt(args[++a]);
+        }
+        else if ("-rounds".equals(args[a])) {
+          Rounds = Integer.parseInt(args[++a]);
+        }
+        else if ("-fields".equals(args[a])) {
+          Fields = Integer.parseInt(args[++a]);
+        }
+        else {
+          return false;
+        }
+      }
+    }
+    catch (RuntimeException e) {
+      return false;
+    }
+    return (Iterations > 0) && (Rounds > 0) && (Fields > 0);
+  }
+
+  /**
+   * builds the record and looks up its fields, in rounds, both ways.
+   */
+  private void run() {
+    FieldInfo[] infos = new FieldInfo[Fields];
+    FieldVector format;
+    GenericRecord rec;
+    int[] picks = {0, Fields / 2, Fields - 1};
+    String[] tags = new String[picks.length];
+    FieldSlot[] slots = new FieldSlot[picks.length];
+    for (int f = 0; f < Fields; ++f) {
+      infos[f] = new FieldInfo("FIELD_" + f, true, "FIELD_" + f, true, false,
+          FieldInfo.NARROW_WIDTH, null, String.valueOf(f), String.class);
+    }
+    format = new FieldVector(infos, "SLOTBENCHMARK");
+    rec = format.createDefaultRecord(GenericRecord.DATARECORD, null);
+    for (int p = 0; p < picks.length; ++p) {
+      tags[p] = new String("FIELD_" + picks[p]);
+      slots[p] = new FieldSlot(tags[p]);
+    }
+    System.out.println("record: " + Fields + " fields");
+    for (int r = 0; r < Rounds; ++r) {
+      for (int p = 0; p < picks.length; ++p) {
+        String label = ((r == 0) ? "warm up " : "") + "field " + picks[p];
+        measure(label + " by tag ", rec, tags[p], null);
+        measure(label + " by slot", rec, null, slots[p]);
+      }
+    }
+    if (Sink == 0) {
+      System.out.println("no fields found");
+    }
+  }
+
+  /**
+   * looks up a field Iterations times and reports the cost.
+   *
+   * @param label identifies the lookup.
+   * @param rec is the record searched.
+   * @param tag is the tag of the field or null, to use slot.
+   * @param slot is the FieldSlot of the field, when tag is null.
+   */
+  private void measure(String label, GenericRecord rec, String tag,
+      FieldSlot slot) {
+    long start = System.nanoTime();
+    long elapsed;
+    FieldPair pair;
+    for (int i = 0; i < Iterations; ++i) {
+      pair = (tag != null) ? rec.findPair(tag) : rec.findPair(slot);
+      if (pair != null) {
+        ++Sink;
+      }
+    }
+    elapsed = System.nanoTime() - start;
+    System.out.println(label + ": " + (elapsed * 1000 / Iterations) / 1000.0 +
+        " ns/op");
+  }
+}
+/* @(#)SlotBenchmark.java */
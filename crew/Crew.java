@@ -11,6 +11,7 @@ import cats.common.Constants;
 import cats.gui.store.TimeSpec;
 import cats.jobs.Job;
 import cats.layout.store.FieldPair;
+import cats.layout.store.FieldSlot;
 import cats.layout.store.GenericRecord;
 import cats.layout.store.StoredObject;
 import cats.trains.Train;
@@ -66,6 +67,14 @@ public class Crew
    */
   static final String FONT = "FONT";
 
+  /*
+   * The following are the slots of the fields read often, so they are
+   * found without searching the GenericRecord.
+   */
+  private static final FieldSlot NAME_SLOT = new FieldSlot(CREW_NAME);
+  private static final FieldSlot TRAIN_SLOT = new FieldSlot(TRAIN_ID);
+  private static final FieldSlot ON_DUTY_SLOT = new FieldSlot(TIME_ON_DUTY);
+
   /**
    * is used to locate the fields that describe the Crew entry.  The
    * common.prop class has some useful utilities for pulling out
@@ -205,7 +214,7 @@ public class Crew
    * @return the name of the Crew from the GenericRecord.
    */
   public String getCrewName() {
-    return new String( (String) CrewFields.findValue(CREW_NAME));
+    return new String( (String) CrewFields.findValue(NAME_SLOT));
   }
 
   /**
@@ -242,15 +251,15 @@ public class Crew
       StartTime = train.getOnDuty();
     }
     Assignment = train;
-    Callboard.Crews.broadcastTimestamp(Constants.ASSIGN_TAG, new String(Constants.QUOTE + getCrewName()
+    Callboard.Crews.broadcastTimestamp(getCrewName(), Constants.ASSIGN_TAG, new String(Constants.QUOTE + getCrewName()
         +Constants.QUOTE + Constants.FS + Constants.RUNNING + Constants.FS + Constants.QUOTE + (
         train == null ? Constants.NOTHING : train.getSymbol())+ Constants.QUOTE));
     CrewFields.replacePair(pair);
     // correct type on TIME_ON_DUTY?
 //    CrewFields.replacePair(new FieldPair(TIME_ON_DUTY, StartTime));
     CrewFields.replacePair(new FieldPair(TIME_ON_DUTY, TimeSpec.convertMinutes(StartTime)));
-    broadcastRec.add(CrewFields.findPair(CREW_NAME));
-    broadcastRec.add(CrewFields.findPair(TRAIN_ID));
+    broadcastRec.add(CrewFields.findPair(NAME_SLOT));
+    broadcastRec.add(CrewFields.findPair(TRAIN_SLOT));
 //    broadcastRec.add(CrewFields.findPair(TIME_ON_DUTY));
     broadcastRec.add(new FieldPair(TIME_ON_DUTY, TimeSpec.convertMinutes(StartTime)));
     Callboard.Crews.broadcastChange(broadcastRec);
@@ -338,13 +347,13 @@ public class Crew
       else {
         StartTime = TimeSpec.UNKNOWN_TIME;
       }
-      Callboard.Crews.broadcastTimestamp(Constants.ASSIGN_TAG, new String(Constants.QUOTE + getCrewName() +
+      Callboard.Crews.broadcastTimestamp(getCrewName(), Constants.ASSIGN_TAG, new String(Constants.QUOTE + getCrewName() +
           Constants.QUOTE + Constants.FS + Constants.RUNNING + Constants.FS + Constants.QUOTE + (
               Assignment == null ? "nothing" : 
                 Assignment.getSymbol()) + Constants.QUOTE));
     }
     else {
-      dTime = ((String) CrewFields.findValue(TIME_ON_DUTY)).trim();
+      dTime = ((String) CrewFields.findValue(ON_DUTY_SLOT)).trim();
       if (dTime.equals("")) {
         StartTime = TimeSpec.UNKNOWN_TIME;
       }
@@ -52,7 +52,12 @@ public class CounterFactory
   private final int[][] SequenceRanges = {
       {0, 1, 2, 3, 4, 5},  // debounce (in seconds)
       {0, 10, 20, 30, 40, 50},  // delay between commands during refresh (ms)
-      {0, 10, 20, 30, 40, 50}   // Loconet (ms)
+      {0, 10, 20, 30, 40, 50},  // Loconet (ms)
+      {1, 8, 16, 32, 64, 128},  // RREvents per batch
+      {0, 2, 4, 8, 16, 32},     // RREvent lane fairness
+      {0, 1, 4, 16, 64, 256},   // log segment size (MB)
+      {0, 15, 30, 60, 120, 240}, // log segment length (minutes)
+      {0, 500, 2000, 10000, 50000, 200000} // TrainStat queue limit (lines)
   };
 
   /**
@@ -61,7 +66,12 @@ public class CounterFactory
   private final String[] SequenceLabels = {
       "Occupancy Debounce",     // debounce
       "Refresh Delay (msec)",   // refresh
-      "Loconet Governor (msec)" // Loconet
+      "Loconet Governor (msec)", // Loconet
+      "Event Batch Size",       // RREvent batch
+      "Event Lane Fairness",    // RREvent lanes
+      "Log Segment Size (MB)",  // log size
+      "Log Segment Time (min)", // log time
+      "TrainStat Queue Limit"   // network client backlog
   };
   
   /**
@@ -70,7 +80,12 @@ public class CounterFactory
   private final int[] SequenceIndexes = {
       0,
       0,
-      1
+      1,
+      3,
+      3,
+      0,
+      0,
+      3
   };
   
   /**
@@ -90,10 +105,41 @@ public class CounterFactory
    * is the tag for the Loconet governor
    */
   public final static String LNTAG = "LNGOVERNOR";
+
+  /**
+   * is the tag for the most RREvents processed between screen updates
+   */
+  public final static String EVENTBATCHTAG = "EVENTBATCH";
+
+  /**
+   * is the tag for how often a lower priority RREvent lane can be
+   * passed over (0 for strict priority)
+   */
+  public final static String EVENTFAIRTAG = "EVENTFAIRNESS";
+
+  /**
+   * is the tag for the size at which the log is split (0 for no limit)
+   */
+  public final static String LOGSIZETAG = "LOGSEGMENTSIZE";
+
+  /**
+   * is the tag for the time after which the log is split (0 for no limit)
+   */
+  public final static String LOGTIMETAG = "LOGSEGMENTTIME";
+  /**
+   * is the tag for the most messages queued for a TrainStat client
+   * (0 for no limit)
+   */
+  public final static String NETQUEUETAG = "TRAINSTATQUEUE";
   private final String[] XmlTags = {
       DEBOUNCETAG,
       REFRESHTAG,
-      LNTAG
+      LNTAG,
+      EVENTBATCHTAG,
+      EVENTFAIRTAG,
+      LOGSIZETAG,
+      LOGTIMETAG,
+      NETQUEUETAG
   };
   
   /**
@@ -127,6 +173,11 @@ public class CounterFactory
     }
     exposeSequence(DEBOUNCETAG);
     exposeSequence(REFRESHTAG);
+    exposeSequence(EVENTBATCHTAG);
+    exposeSequence(EVENTFAIRTAG);
+    exposeSequence(LOGSIZETAG);
+    exposeSequence(LOGTIMETAG);
+    exposeSequence(NETQUEUETAG);
   }
 
 
@@ -26,6 +26,7 @@ import cats.layout.replay.ReplayHandler;
 import cats.trains.TrainStore;
 import cats.layout.Logger;
 import cats.network.OperationsClient;
+import cats.rr_events.EventProfiler;
 
 import java.awt.*;
 import java.awt.event.*;
@@ -376,6 +377,7 @@ public class DispPanel
     });
     jMenuFileSave.setEnabled(false);
     jMenu.add(jMenuFileSave);
+    jMenu.add(new LogCompression());
 
     // add the Replay menu item
     jMenuFileReplay = new JMenuItem("Replay");
@@ -520,6 +522,17 @@ public class DispPanel
     cFactory = new CounterFactory("Adjustments");
     jMenu.add(cFactory);
     OccupancySpectrum.instance();
+    EventProfiler.instance();
+    jMenuItem = new JMenuItem("Save Event Latency ...");
+    jMenuItem.addActionListener(new ActionListener() {
+      public void actionPerformed(ActionEvent e) {
+        String latencyFile = saveLog("Select file for event latency:");
+        if (latencyFile != null) {
+          EventProfiler.instance().dump(latencyFile);
+        }
+      }
+    });
+    tFactory.add(jMenuItem);
 
     jMenu.add(new TrainLabel());
     jMenu.add(new Tracker());
@@ -547,7 +560,10 @@ public class DispPanel
     panel.add(ServerPort.instance());
     jMenu.add(panel);
     jMenu.add(StartTrainStat.instance());
+    jMenu.add(NonBlockingTrainStat.instance());
+    jMenu.add(DropSlowClients.instance());
     jMenu.add(ClientRefresh.instance());
+    jMenu.add(StartWebGateway.instance());
     jMenu.addSeparator();
     jMenuItem = new JMenuItem("Operations ...");
     jMenuItem.addActionListener(new ActionListener() {
@@ -0,0 +1,68 @@
+/*
+ * Name: DropSlowClients.java
+ *
+ * What:
+ *   This file contains a boolean for controlling what is done with a
+ *   TrainStat client that falls too far behind.  "true" means it is
+ *   disconnected; "false" means its backlog is discarded and it is sent
+ *   the contents of the stores again.
+ *
+ * Special Considerations:
+ */
+package cats.gui;
+
+/**
+ *   This file contains a boolean for controlling what is done with a
+ *   TrainStat client that falls too far behind.  "true" means it is
+ *   disconnected; "false" means its backlog is discarded and it is sent
+ *   the contents of the stores again.
+ *   <p>
+ *   How far behind is too far is the "TrainStat Queue Limit" on the
+ *   Adjustments menu.
+ *
+ * <p>Title: CATS - Crandic Automated Traffic System</p>
+ * <p>Description: A program for dispatching trains on Pat Lana's
+ * Crandic model railroad.
+ * <p>Copyright: Copyright (c) 2019</p>
+ * <p>Company: </p>
+ * @author Rodney Black
+ * @version $Revision$
+ */
+@SuppressWarnings("serial")
+public class DropSlowClients extends BooleanGui {
+    /**
+     * is the tag for identifying a DropSlowClients Object in the XMl file.
+     */
+    static final String XMLTag = "TRAINSTATDROPSLOW";
+
+    /**
+     * is the label on the JCheckBoxMenuItem
+     */
+    static final String Label = "Disconnect Slow TrainStat Clients";
+
+    /**
+     * is the singleton.
+     */
+    private static DropSlowClients DropSlow;
+
+    /**
+     * constructs the factory.
+     */
+    private DropSlowClients() {
+      super(Label, XMLTag, false);
+      DropSlow = this;
+    }
+
+    /**
+     * is the only public method for retrieving the DropSlowClients
+     * object
+     * @return the Singleton
+     */
+    static public DropSlowClients instance() {
+      if (DropSlow == null) {
+        DropSlow = new DropSlowClients();
+      }
+      return DropSlow;
+    }
+}
+/* @(#)DropSlowClients.java */
@@ -80,6 +80,11 @@ public class GridTile
    * initialized.
    */
   private static boolean Instantiated = false;
+
+  /**
+   * is the thread whose calls to doUpdates() are being deferred.
+   */
+  private static volatile Thread UpdateHolder;
   
   /**
    * the size of a GridTile.
@@ -450,11 +455,34 @@ public class GridTile
     doUpdates();
   }
     
+  /**
+   * defers doUpdates() calls made by the current thread until
+   * releaseUpdates() is called.  The RREventManager uses it so that
+   * a batch of RREvents results in one pass over the changed GridTiles,
+   * rather than one per RREvent.  Calls from other threads are not
+   * affected.
+   */
+  public static void holdUpdates() {
+    UpdateHolder = Thread.currentThread();
+  }
+
+  /**
+   * ends the deferral started by holdUpdates() and executes the updates
+   * that have accumulated.
+   */
+  public static void releaseUpdates() {
+    UpdateHolder = null;
+    doUpdates();
+  }
+
   /**
    * is the method called to execute all the updates that have
    * been queued.
    */
   public static void doUpdates() {
+    if (Thread.currentThread() == UpdateHolder) {
+      return;
+    }
     boolean proceed = Instantiated;
     while (proceed) {
       synchronized (ProcessingList) {
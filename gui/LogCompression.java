@@ -0,0 +1,54 @@
+/*
+ * Name: LogCompression.java
+ * 
+ * What:
+ *  LogCompression is a Singleton object with a boolean value.  It is set
+ *  to true if CATS should compress each segment of the session log when
+ *  it is closed.
+ *   
+ * Special Considerations:
+ */
+package cats.gui;
+
+/**
+ *  LogCompression is a Singleton object with a boolean value.  It is set
+ *  to true if CATS should compress each segment of the session log when
+ *  it is closed.  The segments are compressed with gzip and can be
+ *  replayed without uncompressing them.
+ *  <p>
+ *  By default, the boolean is false, so that the log can be read with
+ *  a text editor.
+ * <p>Title: CATS - Crandic Automated Traffic System</p>
+ * <p>Description: A program for dispatching trains on Pat Lana's
+ * Crandic model railroad.
+ * <p>Copyright: Copyright (c) 2019</p>
+ * <p>Company: </p>
+ * @author Rodney Black
+ * @version $Revision$
+ */
+@SuppressWarnings("serial")
+public class LogCompression extends BooleanGui {
+  /**
+   * is the tag for identifying a LogCompression Object in the XML file.
+   */
+  static final String XMLTag = "LOGCOMPRESSION";
+  
+  /**
+   * is the label on the JCheckBoxMenuItem
+   */
+  static final String Label = "Compress Log Segments";
+
+  /**
+   * is the singleton.
+   */
+  public static LogCompression TheLogCompression;
+
+  /**
+   * constructs the factory.
+   */
+  public LogCompression() {
+    super(Label, XMLTag, false);
+    TheLogCompression = this;
+  }
+}
+/* @(#)LogCompression.java */
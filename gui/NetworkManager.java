@@ -18,6 +18,7 @@
 package cats.gui;
 
 import cats.network.TrainStatServer;
+import cats.network.WebGateway;
 
 
 /**
@@ -99,6 +100,21 @@ public class NetworkManager {
     // The disabled case can be ignored because the port number
     // will be sent to the server code just prior to it
     // being enabled.
+    if (StartWebGateway.instance().getFlagValue()) {
+      startWebGateway();
+    }
+  }
+
+  /**
+   * receives a change in which server implementation is to be used.
+   * Like a change in the port, it is picked up the next time the server
+   * is enabled, so a running server is restarted.
+   */
+  public void newServerMode() {
+    if (StartTrainStat.instance().getFlagValue()) {
+      TrainStatServer.instance().disable();
+      startServer();
+    }
   }
 
   /**
@@ -111,6 +127,7 @@ public class NetworkManager {
     TrainStatServer server = TrainStatServer.instance();
     if (server != null) {
       server.setPortNumber(ServerPort.instance().getPortValue());
+      server.setNonBlocking(NonBlockingTrainStat.instance().getFlagValue());
       server.enable();
     }
   }
@@ -130,6 +147,29 @@ public class NetworkManager {
     }
   }
 
+  /**
+   * starts (or restarts) the web gateway on the port above the
+   * TrainStat server's port.
+   */
+  private void startWebGateway() {
+    WebGateway.instance().enable(ServerPort.instance().getPortValue() +
+        WebGateway.PORT_OFFSET);
+  }
+
+  /**
+   * enables or disables the web gateway.
+   * @param enable is true to enable the gateway and false to disable
+   * it.
+   */
+  public void enableWebGateway(boolean enable) {
+    if (enable) {
+      startWebGateway();
+    }
+    else {
+      WebGateway.instance().disable();
+    }
+  }
+
   /**
    * is the stimulus to refresh the status on all network
    * clients.
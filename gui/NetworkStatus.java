@@ -11,6 +11,7 @@ package cats.gui;
 
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.Iterator;
 
 import javax.swing.BoxLayout;
 import javax.swing.JLabel;
@@ -59,6 +60,12 @@ public class NetworkStatus extends JPanel {
    */
   private JLabel ClientCount = new JLabel();
   
+  /**
+   * holds a JLabel for each TrainStat client, showing how far behind
+   * it is
+   */
+  private JPanel ClientBacklog = new JPanel();
+  
  
   /**
    * is the ctor
@@ -70,6 +77,8 @@ public class NetworkStatus extends JPanel {
     add(HostName);
     add(ConnectionStatus);
     add(ClientCount);
+    ClientBacklog.setLayout(new BoxLayout(ClientBacklog, BoxLayout.Y_AXIS));
+    add(ClientBacklog);
   }
   
   /**
@@ -100,6 +109,11 @@ public class NetworkStatus extends JPanel {
     }
     ClientCount.setText(TrainStatServer.instance().getClientCount() +
     " Status clients");
+    ClientBacklog.removeAll();
+    for (Iterator<String> iter = TrainStatServer.instance().describeClients().iterator();
+    iter.hasNext(); ) {
+      ClientBacklog.add(new JLabel(iter.next()));
+    }
     if (TrainStatServer.instance().isConnected()) {
       ConnectionStatus.setText("Connection Up");
     }
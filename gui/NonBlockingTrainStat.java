@@ -0,0 +1,87 @@
+/*
+ * Name: NonBlockingTrainStat.java
+ *
+ * What:
+ *   This file contains a boolean for controlling which implementation of
+ *   the TrainStat server is run.  "true" means all clients are served by
+ *   one thread, using non-blocking sockets; "false" means each client has
+ *   its own threads.
+ *
+ * Special Considerations:
+ */
+package cats.gui;
+
+import java.awt.event.ActionEvent;
+
+/**
+ *   This file contains a boolean for controlling which implementation of
+ *   the TrainStat server is run.  "true" means all clients are served by
+ *   one thread, using non-blocking sockets; "false" means each client has
+ *   its own threads.
+ *   <p>
+ *   The default is false, the original server.  Changing the value while
+ *   the server is running restarts it, which drops the clients.
+ *
+ * <p>Title: CATS - Crandic Automated Traffic System</p>
+ * <p>Description: A program for dispatching trains on Pat Lana's
+ * Crandic model railroad.
+ * <p>Copyright: Copyright (c) 2019</p>
+ * <p>Company: </p>
+ * @author Rodney Black
+ * @version $Revision$
+ */
+@SuppressWarnings("serial")
+public class NonBlockingTrainStat extends BooleanGui {
+    /**
+     * is the tag for identifying a NonBlockingTrainStat Object in the XMl file.
+     */
+    static final String XMLTag = "TRAINSTATNONBLOCKING";
+
+    /**
+     * is the label on the JCheckBoxMenuItem
+     */
+    static final String Label = "Single Thread TrainStat Server";
+
+    /**
+     * is the singleton.
+     */
+    private static NonBlockingTrainStat NonBlocking;
+
+    /**
+     * constructs the factory.
+     */
+    private NonBlockingTrainStat() {
+      super(Label, XMLTag, false);
+      NonBlocking = this;
+    }
+
+    /**
+     * is the only public method for retrieving the NonBlockingTrainStat
+     * object
+     * @return the Singleton
+     */
+    static public NonBlockingTrainStat instance() {
+      if (NonBlocking == null) {
+        NonBlocking = new NonBlockingTrainStat();
+      }
+      return NonBlocking;
+    }
+
+    /**
+     * is the ActionListener for setting or clearing the flag.
+     */
+    public void actionPerformed(ActionEvent arg0) {
+      NetworkManager.instance().newServerMode();
+    }
+
+    /**
+     * tells the factory that an XMLEleObject is to be created.  Thus,
+     * its contents can be set from the information in an XML Element
+     * description.
+     */
+    public void newElement() {
+      super.newElement();
+      NetworkManager.instance().newServerMode();
+    }
+}
+/* @(#)NonBlockingTrainStat.java */
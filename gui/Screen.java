@@ -27,6 +27,8 @@ import java.awt.event.MouseEvent;
 import java.awt.Point;
 import java.awt.Rectangle;
 import java.io.File;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import javax.swing.JOptionPane;
 
 /**
@@ -85,6 +87,17 @@ public class Screen
    */
   private static int Gap = 8;
 
+  /**
+   * is the fewest columns for which the Sections are linked in parallel.
+   * Smaller layouts are linked by the loading thread.
+   */
+  private static final int PARALLEL_COLUMNS = 64;
+
+  /**
+   * is the number of columns a linking task handles without splitting.
+   */
+  private static final int TASK_COLUMNS = 16;
+
   /**
    * is the matrix of track Sections that compose the layout.
    */
@@ -203,24 +216,31 @@ public class Screen
     int sWidth = MyGrid[0].length;
     int sHeight = MyGrid.length;
     Section sec;
+    long phase = System.nanoTime();
 
     // This really doesn't belong here, but it needs to be done.
     PanelSignal.setPalette();
 
     //  **************  Be sure to collect Tracks into Blocks before
     //  **************  computing MaxX.  First, join the Section edges.
+    //  Edges joined to their neighbors are joined first, a column at a time,
+    //  then the edges joined to a Section named in the XML file.
+    linkNeighbors(sWidth, sHeight);
     for (int x = 1; x < sWidth; ++x) {
       for (int y = 1; y < sHeight; ++y) {
         if ( (sec = MyGrid[y][x]) != null) {
-          sec.linkEdges();
+          sec.linkEdges(true);
         }
       }
     }
+    phase = logPhase("linking edges", phase);
 
     // Now, identify the tracks in each Block.
     Block.resolveBlocks();
+    phase = logPhase("resolving blocks", phase);
 
-    // Wire up the Signals.
+    // Wire up the Signals.  This is not done in parallel because connecting
+    // a Signal pushes its Indication back through all the Signals behind it.
     for (int x = 1; x < sWidth; ++x) {
       for (int y = 1; y < sHeight; ++y) {
         if ( (sec = MyGrid[y][x]) != null) {
@@ -228,6 +248,7 @@ public class Screen
         }
       }
     }
+    phase = logPhase("wiring signals", phase);
 
     // Determine the column of the rightmost visible Section.
     findMaxColumn:
@@ -297,6 +318,125 @@ public class Screen
       }
       Slice[x] = new Rectangle(0, 0, sWidth, sHeight);
     }
+    logPhase("sizing the screen", phase);
+  }
+
+  /**
+   * joins the SecEdges that join their geographic neighbors.  Linking a
+   * Section changes only it and the Sections beside it, so on a large
+   * layout, the even columns are linked in parallel, then the odd
+   * columns.
+   *
+   * @param sWidth is the number of columns in the grid.
+   * @param sHeight is the number of rows in the grid.
+   */
+  private void linkNeighbors(int sWidth, int sHeight) {
+    ForkJoinPool pool;
+    if (sWidth < PARALLEL_COLUMNS) {
+      for (int x = 1; x < sWidth; ++x) {
+        linkColumn(x, sHeight);
+      }
+    }
+    else {
+      pool = new ForkJoinPool();
+      try {
+        pool.invoke(new LinkTask(1, sWidth, sHeight, 0));
+        pool.invoke(new LinkTask(1, sWidth, sHeight, 1));
+      }
+      finally {
+        pool.shutdown();
+      }
+    }
+  }
+
+  /**
+   * joins the SecEdges in one column that join their geographic neighbors.
+   *
+   * @param x is the column.
+   * @param sHeight is the number of rows in the grid.
+   */
+  private void linkColumn(int x, int sHeight) {
+    Section sec;
+    for (int y = 1; y < sHeight; ++y) {
+      if ( (sec = MyGrid[y][x]) != null) {
+        sec.linkEdges(false);
+      }
+    }
+  }
+
+  /**
+   * records how long a step in loading the layout took.
+   *
+   * @param step describes the step.
+   * @param started is when (System.nanoTime()) the step started.
+   * @return when the step ended, which is when the next step starts.
+   */
+  private static long logPhase(String step, long started) {
+    long now = System.nanoTime();
+    log.info("Layout loading: " + step + " took " +
+        ((now - started) / 1000000) + " msec");
+    return now;
+  }
+
+  /**
+   * is a fork/join task for linking the columns of one parity (even or
+   * odd) in a range of columns.  Columns of the same parity are at least
+   * two apart, so they do not touch the same Sections.
+   */
+  @SuppressWarnings("serial")
+  private class LinkTask extends RecursiveAction {
+
+    /**
+     * is the first column in the range.
+     */
+    private final int Low;
+
+    /**
+     * is the column after the last in the range.
+     */
+    private final int High;
+
+    /**
+     * is the number of rows.
+     */
+    private final int Height;
+
+    /**
+     * is 0 to link the even columns and 1 to link the odd.
+     */
+    private final int Parity;
+
+    /**
+     * is the constructor.
+     *
+     * @param low is the first column.
+     * @param high is the column after the last.
+     * @param height is the number of rows.
+     * @param parity selects the even (0) or odd (1) columns.
+     */
+    LinkTask(int low, int high, int height, int parity) {
+      Low = low;
+      High = high;
+      Height = height;
+      Parity = parity;
+    }
+
+    @Override
+    protected void compute() {
+      int middle;
+      if ((High - Low) <= TASK_COLUMNS) {
+        for (int x = Low; x < High; ++x) {
+          if ((x % 2) == Parity) {
+            linkColumn(x, Height);
+          }
+        }
+      }
+      else {
+        middle = (Low + High) >>> 1;
+        invokeAll(new LinkTask(Low, middle, Height, Parity),
+            new LinkTask(middle, High, Height, Parity));
+      }
+    }
   }
 
   /**
@@ -712,10 +852,13 @@ public class Screen
    */
   static public void init(File layout) {
     String errReport;
+    long phase;
     XMLReader.registerFactory(XML_TAG, new LayoutFactory());
     Section.init();
     if (layout.exists() && layout.canRead()) {
-      errReport = XMLReader.parseDocument(layout);
+      phase = System.nanoTime();
+      errReport = XMLReader.parseCachedDocument(layout);
+      logPhase("reading " + layout.getName(), phase);
       if (errReport != null) {
         JOptionPane.showMessageDialog( (Component)null,
                                       errReport,
@@ -731,6 +874,7 @@ public class Screen
         LockedDecoders.BlackList.pruneSingles();
         JmriPrefixManager.readBack();
         GridTile.InitializationDone();
+        XMLReader.saveImage();
       }
     }
     else {
@@ -740,6 +884,9 @@ public class Screen
                                     JOptionPane.ERROR_MESSAGE);
     }
   }
+
+  static org.apache.log4j.Logger log = org.apache.log4j.Logger.getLogger(
+      Screen.class.getName());
 }
 
 /**
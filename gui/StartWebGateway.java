@@ -0,0 +1,88 @@
+/*
+ * Name: StartWebGateway.java
+ *
+ * What:
+ *   This file contains a boolean for controlling if the web gateway,
+ *   which serves the train, job and crew stores to browsers, should be
+ *   run.  "true" means CATS should run it and "false" means it should not.
+ *
+ * Special Considerations:
+ *   The checkbox is in the "Network" menu pulldown, unlike most of the
+ *   other booleans.
+ */
+package cats.gui;
+
+import java.awt.event.ActionEvent;
+
+/**
+ *   This file contains a boolean for controlling if the web gateway,
+ *   which serves the train, job and crew stores to browsers, should be
+ *   run.  "true" means CATS should run it and "false" means it should not.
+ *   <p>
+ *   The gateway listens on the port above the TrainStat server's port.
+ *   It does not need the TrainStat server to be running.
+ *
+ * <p>Title: CATS - Crandic Automated Traffic System</p>
+ * <p>Description: A program for dispatching trains on Pat Lana's
+ * Crandic model railroad.
+ * <p>Copyright: Copyright (c) 2019</p>
+ * <p>Company: </p>
+ * @author Rodney Black
+ * @version $Revision$
+ */
+@SuppressWarnings("serial")
+public class StartWebGateway extends BooleanGui {
+    /**
+     * is the tag for identifying a StartWebGateway Object in the XMl file.
+     */
+    static final String XMLTag = "WEBGATEWAYLABEL";
+
+    /**
+     * is the label on the JCheckBoxMenuItem
+     */
+    static final String Label = "Start Web Gateway";
+
+    /**
+     * is the singleton.
+     */
+    private static StartWebGateway GatewayActive;
+
+    /**
+     * constructs the factory.
+     */
+    private StartWebGateway() {
+      super(Label, XMLTag, false);
+      GatewayActive = this;
+      NetworkManager.instance().enableWebGateway(getFlagValue());
+    }
+
+    /**
+     * is the only public method for retrieving the StartWebGateway
+     * object
+     * @return the Singleton
+     */
+    static public StartWebGateway instance() {
+      if (GatewayActive == null) {
+        GatewayActive = new StartWebGateway();
+      }
+      return GatewayActive;
+    }
+
+    /**
+     * is the ActionListener for setting or clearing the flag.
+     */
+    public void actionPerformed(ActionEvent arg0) {
+      NetworkManager.instance().enableWebGateway(getState());
+    }
+
+    /**
+     * tells the factory that an XMLEleObject is to be created.  Thus,
+     * its contents can be set from the information in an XML Element
+     * description.
+     */
+    public void newElement() {
+      super.newElement();
+      NetworkManager.instance().enableWebGateway(getFlagValue());
+    }
+}
+/* @(#)StartWebGateway.java */
@@ -41,6 +41,17 @@ public class MeterLnSensorManager extends jmri.managers.AbstractSensorManager {
     
     private boolean busy = false;
 
+    /**
+     * is how long (in milliseconds) after the last read back request
+     * the replies are still considered part of the read back.
+     */
+    private static final long READBACK_TAIL = 2000;
+
+    /**
+     * is when the last read back request was sent.
+     */
+    private volatile long readBackDone;
+
     /**
      * check for the existance of a Manager.
      *
@@ -99,8 +110,21 @@ public class MeterLnSensorManager extends jmri.managers.AbstractSensorManager {
      *   issued to Route turnouts
    */
     public void setUpdateNotBusy() {
+    readBackDone = System.currentTimeMillis();
     busy = false;
   }
+
+    /**
+     * tells if the sensors are being read back, so that the reports
+     * can be given a lower priority than reports of trains moving.
+     *
+     * @return true if a read back is in progress or just finished.
+     */
+    static public boolean isReadingBack() {
+    MeterLnSensorManager mgr = mInstance;
+    return (mgr != null) && (mgr.busy ||
+        ((System.currentTimeMillis() - mgr.readBackDone) < READBACK_TAIL));
+  }
   
     static org.apache.log4j.Logger log = org.apache.log4j.Logger.getLogger(MeterLnSensorManager.class.getName());
 
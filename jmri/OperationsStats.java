@@ -0,0 +1,139 @@
+/*
+ * Name: OperationsStats.java
+ *
+ * What:
+ *   This file contains when CATS last received the attributes (length,
+ *   weight, cars, lead engine and caboose) Operations holds for each train
+ *   and which trains have requests outstanding, so that Operations is
+ *   asked only for what CATS does not already know.
+ *
+ * Special Considerations:
+ *   The requests are sent from the RREvent thread and the GUI, and the
+ *   responses arrive on the connection's thread, so all methods are
+ *   synchronized.
+ */
+package cats.jmri;
+
+import java.util.HashMap;
+
+/**
+ *   This file contains when CATS last received the attributes (length,
+ *   weight, cars, lead engine and caboose) Operations holds for each train
+ *   and which trains have requests outstanding, so that Operations is
+ *   asked only for what CATS does not already know.
+ *   <p>
+ *   The Operations protocol does not number requests; a response carries
+ *   the name of the train it is about.  So, requests are correlated with
+ *   responses by train.  A train is pending from the time its attributes
+ *   are requested until one of them arrives (or PENDING_LIMIT passes, in
+ *   case Operations does not know the train).  Other responses naming the
+ *   train, such as the reply to moving it, do not end the request.  While
+ *   it is pending, no more requests for its attributes are sent.
+ *   <p>
+ *   The attributes received are trusted for STATS_LIFE.  Until then,
+ *   moving the train does not ask for them again.  Only the time they
+ *   arrived is kept; the values themselves are applied to the train in
+ *   the TrainStore.
+ *
+ * <p>Title: CATS - Crandic Automated Traffic System</p>
+ * <p>Description: A program for dispatching trains on Pat Lana's
+ * Crandic model railroad.
+ * <p>Copyright: Copyright (c) 2019</p>
+ * <p>Company: </p>
+ * @author Rodney Black
+ * @version $Revision$
+ */
+class OperationsStats {
+
+  /**
+   * is how long (in milliseconds) the attributes of a train are trusted
+   * after they are received.
+   */
+  static final long STATS_LIFE = 30000;
+
+  /**
+   * is how long (in milliseconds) a request is waited on before another
+   * can be sent for the same train.
+   */
+  static final long PENDING_LIMIT = 10000;
+
+  /**
+   * is what is known about each train, by train symbol.
+   */
+  private final HashMap<String, TrainStats> Trains =
+    new HashMap<String, TrainStats>();
+
+  /**
+   * determines if the attributes of a train should be requested, and
+   * if so, marks the train as pending.
+   * @param train is the train's symbol
+   * @param force is true to ignore the attributes that have been received
+   * (but not a request that is pending)
+   * @return true if a request should be sent
+   */
+  synchronized boolean needStats(String train, boolean force) {
+    long now = System.currentTimeMillis();
+    TrainStats stats = Trains.get(train);
+    if (stats == null) {
+      stats = new TrainStats();
+      Trains.put(train, stats);
+    }
+    if ((stats.Requested != 0) && ((now - stats.Requested) < PENDING_LIMIT)) {
+      return false;
+    }
+    if (!force && (stats.Received != 0) &&
+        ((now - stats.Received) < STATS_LIFE)) {
+      return false;
+    }
+    stats.Requested = now;
+    return true;
+  }
+
+  /**
+   * is called when an attribute of a train arrives from Operations.  It
+   * ends the train's pending request.
+   * @param train is the train's symbol
+   */
+  synchronized void received(String train) {
+    TrainStats stats = Trains.get(train);
+    if (stats == null) {
+      stats = new TrainStats();
+      Trains.put(train, stats);
+    }
+    stats.Requested = 0;
+    stats.Received = System.currentTimeMillis();
+  }
+
+  /**
+   * discards what is known about a train, such as when it terminates.
+   * @param train is the train's symbol
+   */
+  synchronized void forget(String train) {
+    Trains.remove(train);
+  }
+
+  /**
+   * discards what is known about all trains, such as when the connection
+   * to Operations changes.
+   */
+  synchronized void clear() {
+    Trains.clear();
+  }
+
+  /**
+   * is what is known about the requests for one train.
+   */
+  private static class TrainStats {
+    /**
+     * is when the attributes were last requested or 0, if no request is
+     * outstanding.
+     */
+    long Requested;
+
+    /**
+     * is when an attribute was last received or 0, if none have been.
+     */
+    long Received;
+  }
+}
+/* @(#)OperationsStats.java */
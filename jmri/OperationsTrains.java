@@ -50,6 +50,14 @@ import cats.trains.TrainStore;
  * </ul>
  * Lists (e.g. trains and locations) are a little bit different.  Each element is on a line by itself.
  * The last element is followed by a period.
+ * <p>
+ * Requests are queued to the connection and the responses handled as they arrive, so any number
+ * can be outstanding.  Because responses are identified only by the train they are about, the
+ * trains with requests outstanding and when their attributes were last received are kept in an
+ * OperationsStats.  They keep a train's attributes from being requested again while a request is
+ * outstanding or what was received is recent.  Every response is applied to the train, because
+ * the train's record may have been changed (by an editor or a file) since the attributes were
+ * received.  A refresh asks about several trains in each message.
  *
  * <p>Title: CATS - Crandic Automated Traffic System</p>
  * <p>Description: A program for dispatching trains on Pat Lana's
@@ -65,6 +73,12 @@ public class OperationsTrains {
 	 * taken from Operations
 	 */
 	final String REQUEST_DELIMITER = " , ";
+
+  /**
+   * is the most trains whose attributes are requested in one message
+   * by a refresh
+   */
+  private static final int REFRESH_BATCH = 10;
 	
   /**
    * creates the checkbox under Appearance->Trace Items for controlling tracing
@@ -81,6 +95,12 @@ public class OperationsTrains {
    */
   private static OperationsTrains Singleton = null;
 
+  /**
+   * is what is known about the trains in Operations and the requests
+   * outstanding
+   */
+  private final OperationsStats Stats = new OperationsStats();
+
   /**
    * is the ctor
    */
@@ -109,6 +129,7 @@ public class OperationsTrains {
    * being notified that the existing connection was dropped.
    */
   public boolean setConnection(OperationsConnection connect) {
+    Stats.clear();
     if ((MyConnection != null) && (connect != null)) {
       MyConnection = connect;
       return false;
@@ -134,16 +155,36 @@ public class OperationsTrains {
     ArrayList<Attribute> request = new ArrayList<Attribute>();
     request.add(new Attribute(jmri.jmris.simpleserver.SimpleOperationsServer.TRAIN, train));
     request.add(new Attribute(jmri.jmris.simpleserver.SimpleOperationsServer.TRAINLOCATION, location));
-    requestAll(request);
+    if (Stats.needStats(train, false)) {
+      requestAll(request);
+    }
     sendRequest(request);
   }
 
   /**
-   * is a request to refresh all trains from Operations
+   * is a request to refresh all trains from Operations.  The trains are
+   * requested REFRESH_BATCH to a message and trains with requests
+   * outstanding are skipped.
    */
   public void refreshTrains() {
+    ArrayList<Attribute> request = new ArrayList<Attribute>();
+    int count = 0;
+    if (!isEnabled()) {
+      return;
+    }
     for (String train : TrainStore.TrainKeeper.listKeys()) {
-      requestStats(train);
+      if (Stats.needStats(train, true)) {
+        request.add(new Attribute(jmri.jmris.simpleserver.SimpleOperationsServer.TRAIN, train));
+        requestAll(request);
+        if (++count == REFRESH_BATCH) {
+          sendRequest(request);
+          request = new ArrayList<Attribute>();
+          count = 0;
+        }
+      }
+    }
+    if (count != 0) {
+      sendRequest(request);
     }
   }
 
@@ -167,6 +208,7 @@ public class OperationsTrains {
     ArrayList<Attribute> request = new ArrayList<Attribute>();
     request.add(new Attribute(jmri.jmris.simpleserver.SimpleOperationsServer.TRAIN, train));
     request.add(new Attribute(jmri.jmris.simpleserver.SimpleOperationsServer.TERMINATE, null));
+    Stats.forget(train);
     sendRequest(request);
   }
   
@@ -194,11 +236,15 @@ public class OperationsTrains {
   
   /**
    * sends a request to Operations for the status of a train.  The response is
-   * asynchronous and will come back in a later message.
+   * asynchronous and will come back in a later message.  If a request for
+   * the train is already outstanding, another is not sent.
    * @param train is the name of the train whose status is requested.
    */
   public void requestStats(String train) {
     ArrayList<Attribute> request = new ArrayList<Attribute>();
+    if (!isEnabled() || !Stats.needStats(train, true)) {
+      return;
+    }
     request.add(new Attribute(jmri.jmris.simpleserver.SimpleOperationsServer.TRAIN, train));
     requestAll(request);
     sendRequest(request);
@@ -310,6 +356,9 @@ public class OperationsTrains {
         trainName = (String) reply.getValue();
       }
       else if (trainName != null) {
+        if (isStat(tag) && (value != null)) {
+          Stats.received(trainName);
+        }
         if (jmri.jmris.simpleserver.SimpleOperationsServer.TRAINLOCATION.equals(tag)) {
           processLocationResponse(trainName, value);
         }
@@ -335,6 +384,20 @@ public class OperationsTrains {
     }
   }
   
+  /**
+   * determines if a response tag is one of the train attributes that are
+   * remembered
+   * @param tag is the tag
+   * @return true if it is requested by requestAll()
+   */
+  private boolean isStat(String tag) {
+    return jmri.jmris.simpleserver.SimpleOperationsServer.TRAINLENGTH.equals(tag) ||
+      jmri.jmris.simpleserver.SimpleOperationsServer.TRAINWEIGHT.equals(tag) ||
+      jmri.jmris.simpleserver.SimpleOperationsServer.TRAINCARS.equals(tag) ||
+      jmri.jmris.simpleserver.SimpleOperationsServer.TRAINLEADLOCO.equals(tag) ||
+      jmri.jmris.simpleserver.SimpleOperationsServer.TRAINCABOOSE.equals(tag);
+  }
+
   /**
    * taken from Operations before it is deprecated
    * @param message is the message from operations
@@ -11,8 +11,10 @@ import cats.common.Constants;
 import cats.crew.Callboard;
 import cats.crew.Crew;
 import cats.jobs.JobStore;
+import cats.layout.LogRecord;
 import cats.layout.Logger;
 import cats.layout.store.FieldPair;
+import cats.layout.store.FieldSlot;
 import cats.layout.store.GenericRecord;
 import cats.layout.store.StoredObject;
 //import cats.layout.xml.XMLEleFactory;
@@ -66,6 +68,14 @@ implements StoredObject {
    */
   public static final String FONT = "FONT";
 
+  /*
+   * The following are the slots of the fields read often, so they are
+   * found without searching the GenericRecord.
+   */
+  private static final FieldSlot NAME_SLOT = new FieldSlot(JOB_NAME);
+  private static final FieldSlot RUNS_SLOT = new FieldSlot(RUNS_TRAIN);
+  private static final FieldSlot CREW_SLOT = new FieldSlot(CREW_NAME);
+
   /**
    * is used to locate the fields that describe the Train.  The
    * common.prop class has some useful utilities for pulling out
@@ -117,8 +127,7 @@ implements StoredObject {
   public void destructor() {
     if ( (MyCrew != null) && (MyCrew.getJob() == this)) {
       MyCrew.setJob(null);
-      writeStatus(new String(Constants.QUOTE + MyCrew.getCrewName() + Constants.QUOTE +
-          Constants.FS + Constants.REASSIGNED));
+      writeStatus(MyCrew.getCrewName(), null);
     }
     JobStore.JobsKeeper.delRecord(JobFields);
   }
@@ -185,11 +194,24 @@ implements StoredObject {
    * clock so that an accurate record is kept as to how long someone worked a job.
    * Note that only the log is written.
    * 
-   * @param msg is the message to log
+   * @param crew is the name of the crew
+   * @param job is the name of the job the crew was assigned to or null,
+   * if the crew was released from this job
    */
-  private void writeStatus(String msg) {
-    if ( (msg != null) && Logger.isLogging()) {
-      Logger.realTimeStamp(Constants.ASSIGN_TAG, msg);
+  private void writeStatus(String crew, String job) {
+    LogRecord rec;
+    if (Logger.isLogging()) {
+      rec = LogRecord.startRealTime(Constants.ASSIGN_TAG);
+      rec.append(Constants.QUOTE).append(crew).append(Constants.QUOTE).
+      append(Constants.FS);
+      if (job == null) {
+        rec.append(Constants.REASSIGNED);
+      }
+      else {
+        rec.append(Constants.ASSIGNMENT).append(Constants.FS).
+        append(Constants.QUOTE).append(job).append(Constants.QUOTE);
+      }
+      Logger.logRecord(rec);
     }
   }
 
@@ -199,7 +221,7 @@ implements StoredObject {
    * @return the name of the Train.
    */
   private String getJobName() {
-    return new String( (String) JobFields.findValue(JOB_NAME));
+    return new String( (String) JobFields.findValue(NAME_SLOT));
   }
 
   /**
@@ -208,7 +230,7 @@ implements StoredObject {
    * @return true if the crew assigned to the Job appears on the extra board.
    */
   public boolean isExtra() {
-    return ( (Boolean) JobFields.findValue(RUNS_TRAIN)).booleanValue();
+    return ( (Boolean) JobFields.findValue(RUNS_SLOT)).booleanValue();
   }
 
   /**
@@ -217,7 +239,7 @@ implements StoredObject {
    * @return the crew name.
    */
   public String getCrewName() {
-    return new String( (String) JobFields.findValue(CREW_NAME));
+    return new String( (String) JobFields.findValue(CREW_SLOT));
   }
 
   /**
@@ -231,8 +253,8 @@ implements StoredObject {
     GenericRecord broadcastRec = new GenericRecord();
     crewChange(crew);
     JobFields.replacePair(newPair);
-    broadcastRec.add(JobFields.findPair(JOB_NAME));
-    broadcastRec.add(JobFields.findPair(CREW_NAME));
+    broadcastRec.add(JobFields.findPair(NAME_SLOT));
+    broadcastRec.add(JobFields.findPair(CREW_SLOT));
     JobStore.JobsKeeper.broadcastChange(broadcastRec);
   }
 
@@ -247,14 +269,12 @@ implements StoredObject {
     if (MyCrew != newCrew) {
       if ( (MyCrew != null) && (MyCrew.getJob() == this)) {
         MyCrew.setJob(null);
-        writeStatus(new String(Constants.QUOTE + MyCrew.getCrewName() + Constants.QUOTE +
-            Constants.FS + Constants.REASSIGNED));
+        writeStatus(MyCrew.getCrewName(), null);
       }
       MyCrew = newCrew;
       if (MyCrew != null) {
         MyCrew.setJob(this);
-        writeStatus(new String(Constants.QUOTE + cName + Constants.QUOTE + Constants.FS +
-            Constants.ASSIGNMENT + Constants.FS + Constants.QUOTE + getJobName() + Constants.QUOTE));
+        writeStatus(cName, getJobName());
       }
     }   
   }
@@ -0,0 +1,55 @@
+/* Name: CoalescedEventCounter.java
+ *
+ * What:
+ *  This file defines a Singleton that counts the number of
+ *  Loconet reports that were merged into a report for the same
+ *  address which had not been processed yet.
+ * Special Considerations:
+ */
+package cats.layout;
+
+/**
+ *  This file defines a Singleton that counts the number of
+ *  Loconet reports that were merged into a report for the same
+ *  address which had not been processed yet.
+ * <p>Title: CATS - Crandic Automated Traffic System</p>
+ * <p>Description: A program for dispatching trains on Pat Lana's
+ * Crandic model railroad.
+ * <p>Copyright: Copyright (c) 2019</p>
+ * <p>Company: </p>
+ * @author Rodney Black
+ * @version $Revision$
+ */
+public class CoalescedEventCounter extends PegCounter {
+
+  /**
+   * is the PegCounter for merged Loconet reports
+   */
+  private static CoalescedEventCounter Coalesced;
+
+  /**
+   * is the JMRI User Name for the associated Memory object
+   */
+  public static final String JMRI_NAME = "CoalescedEvents";
+
+  /**
+   * is the ctor
+   */
+  private CoalescedEventCounter() {
+    super(JMRI_NAME);
+  }
+
+  /**
+   * is used to locate the singleton
+   *
+   * @return the singleton.  If it does not exist, this method
+   * creates it.
+   */
+  public static CoalescedEventCounter instance() {
+    if (Coalesced == null) {
+      Coalesced = new CoalescedEventCounter();
+    }
+    return Coalesced;
+  }
+}
+/* @(#)CoalescedEventCounter.java */
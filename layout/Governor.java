@@ -40,10 +40,17 @@ public class Governor
    */
   private static int MsgDelay;
 
+  /**
+   * is the number of Loconet messages that can be waiting before
+   * the sender is paused.
+   */
+  public static final int LOCO_CAPACITY = 1024;
+
   /**
    * a FIFO for holding Loconet messages ready to be sent to the layout.
    */
-  public static Queue LocoQue = new Queue();
+  public static RingQueue LocoQue = new RingQueue(LOCO_CAPACITY,
+      RingQueue.BLOCK);
 
   /**
    * The thread that periodically writes to the Loconet.
@@ -0,0 +1,257 @@
+/* Name: LogRecord.java
+ *
+ * What:
+ *   This class is a reusable builder for the timestamped records that
+ *   are written to the log and sent to the network clients.
+ *
+ * Special Considerations:
+ *   Each thread has its own LogRecord, so a LogRecord must not be
+ *   handed to another thread or held after finish().
+ */
+package cats.layout;
+
+import java.awt.Point;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import cats.common.Constants;
+
+/**
+ *   This class is a reusable builder for the timestamped records that
+ *   are written to the log and sent to the network clients.  A record is
+ *   <p>
+ *   tag FS timestamp [clock source] FS message
+ *   <p>
+ *   where the message is appended a piece at a time.  The characters are
+ *   accumulated in a buffer owned by the thread, which is reused for the
+ *   next record, so the only thing created for a record is the finished
+ *   String.
+ *   <p>
+ *   Formatting the time is the expensive part of a record, so the
+ *   formatted time is remembered and reused for all the records stamped
+ *   in the same second.  If the time format shows fractions of a
+ *   second, the time is formatted for every record.
+ *   <p>
+ *   If a record is started while the thread is already building one
+ *   (for example, a record's message causes another record to be
+ *   logged), the inner record gets its own buffer.
+ * <p>Title: CATS - Crandic Automated Traffic System</p>
+ * <p>Description: A program for dispatching trains on Pat Lana's
+ * Crandic model railroad.
+ * <p>Copyright: Copyright (c) 2019</p>
+ * <p>Company: </p>
+ * @author Rodney Black
+ * @version $Revision$
+ */
+public class LogRecord {
+
+  /**
+   * is the initial size of the buffer.
+   */
+  private static final int INITIAL_SIZE = 256;
+
+  /**
+   * are the LogRecords, one for each thread.
+   */
+  private static final ThreadLocal<LogRecord> Records =
+    new ThreadLocal<LogRecord>() {
+    @Override
+    protected LogRecord initialValue() {
+      return new LogRecord();
+    }
+  };
+
+  /**
+   * is where the record is built.
+   */
+  private final StringBuilder Buffer = new StringBuilder(INITIAL_SIZE);
+
+  /**
+   * is true while a record is being built in Buffer.
+   */
+  private boolean InUse;
+
+  /**
+   * is the formatter for the time of day.
+   */
+  private final DateFormat TimeFormat = DateFormat.getTimeInstance();
+
+  /**
+   * is true if all times in the same second format the same.
+   */
+  private final boolean Cacheable;
+
+  /**
+   * is the second (since the epoch) of the last time formatted.
+   */
+  private long CachedSecond = Long.MIN_VALUE;
+
+  /**
+   * is the last time formatted.
+   */
+  private String CachedTime;
+
+  /**
+   * is the constructor.
+   */
+  private LogRecord() {
+    Cacheable = !(TimeFormat instanceof SimpleDateFormat) ||
+    (((SimpleDateFormat) TimeFormat).toPattern().indexOf('S') < 0);
+  }
+
+  /**
+   * begins a record stamped with the time from the FastClock.  The
+   * time is followed by an "*" if it is fast time or a space if it is
+   * the computer's time.
+   *
+   * @param tag is the tag identifying the kind of record.
+   * @return the LogRecord to append the message to.
+   */
+  public static LogRecord start(String tag) {
+    LogRecord rec = claim();
+    rec.Buffer.append(tag).append(Constants.FS);
+    rec.appendTime(FastClock.TheClock.getTOD());
+    rec.Buffer.append(FastClock.TheClock.isFastTime() ? '*' : ' ');
+    rec.Buffer.append(Constants.FS);
+    return rec;
+  }
+
+  /**
+   * begins a record stamped with the computer's time of day.
+   *
+   * @param tag is the tag identifying the kind of record.
+   * @return the LogRecord to append the message to.
+   */
+  public static LogRecord startRealTime(String tag) {
+    LogRecord rec = claim();
+    rec.Buffer.append(tag).append(Constants.FS);
+    rec.appendTime(new Date());
+    rec.Buffer.append(Constants.FS);
+    return rec;
+  }
+
+  /**
+   * locates an empty LogRecord for the calling thread.
+   *
+   * @return the thread's LogRecord, if it is not in use, or a new one.
+   */
+  private static LogRecord claim() {
+    LogRecord rec = Records.get();
+    if (rec.InUse) {
+      rec = new LogRecord();
+    }
+    rec.InUse = true;
+    rec.Buffer.setLength(0);
+    return rec;
+  }
+
+  /**
+   * formats a time into the record.
+   *
+   * @param when is the time.
+   */
+  private void appendTime(Date when) {
+    long second;
+    if (Cacheable) {
+      second = when.getTime() / 1000L;
+      if ((second != CachedSecond) || (CachedTime == null)) {
+        CachedTime = TimeFormat.format(when);
+        CachedSecond = second;
+      }
+      Buffer.append(CachedTime);
+    }
+    else {
+      Buffer.append(TimeFormat.format(when));
+    }
+  }
+
+  /**
+   * adds some text to the record.
+   *
+   * @param text is the text.  null is added as "null", as String
+   * concatenation does.
+   * @return this LogRecord.
+   */
+  public LogRecord append(String text) {
+    Buffer.append(text);
+    return this;
+  }
+
+  /**
+   * adds a character to the record.
+   *
+   * @param c is the character.
+   * @return this LogRecord.
+   */
+  public LogRecord append(char c) {
+    Buffer.append(c);
+    return this;
+  }
+
+  /**
+   * adds a number to the record.
+   *
+   * @param i is the number.
+   * @return this LogRecord.
+   */
+  public LogRecord append(int i) {
+    Buffer.append(i);
+    return this;
+  }
+
+  /**
+   * adds the description of an Object to the record.
+   *
+   * @param o is the Object.
+   * @return this LogRecord.
+   */
+  public LogRecord append(Object o) {
+    Buffer.append(o);
+    return this;
+  }
+
+  /**
+   * adds a location in the format of Logger.formatLocation():
+   * "(x,y)" or "(x,y):edge".
+   *
+   * @param section is the coordinates of the Section.
+   * @param edge is the edge of the Section or a negative number if the
+   * location is the Section.
+   * @return this LogRecord.
+   */
+  public LogRecord appendLocation(Point section, int edge) {
+    Buffer.append('(').append(section.x).append(',').append(section.y).
+    append(')');
+    if (edge >= 0) {
+      Buffer.append(':').append(edge);
+    }
+    return this;
+  }
+
+  /**
+   * gives access to the buffer, for classes that know how to describe
+   * themselves into a StringBuilder.
+   *
+   * @return the buffer holding the record.
+   */
+  public StringBuilder getBuffer() {
+    return Buffer;
+  }
+
+  /**
+   * completes the record.  The LogRecord must not be used after this.
+   *
+   * @return the record.
+   */
+  public String finish() {
+    String record = Buffer.toString();
+    if (Buffer.capacity() > (INITIAL_SIZE * 16)) {
+      Buffer.setLength(0);
+      Buffer.trimToSize();
+    }
+    InUse = false;
+    return record;
+  }
+}
+/* @(#)LogRecord.java */
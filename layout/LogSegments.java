@@ -0,0 +1,318 @@
+/* Name: LogSegments.java
+ *
+ * What:
+ *   This class knows how the session log is split into segment files:
+ *   how they are named, how to find all the segments of a session,
+ *   how to read them and how to compress the ones that are closed.
+ *
+ * Special Considerations:
+ *   This class is application independent.
+ */
+package cats.layout;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ *   This class knows how the session log is split into segment files:
+ *   how they are named, how to find all the segments of a session,
+ *   how to read them and how to compress the ones that are closed.
+ *   <p>
+ *   The first segment has the name the user gave the log.  Later segments
+ *   add a three digit sequence number, so "Oct17.data" is followed by
+ *   "Oct17.data.001", "Oct17.data.002", and so on.  A compressed segment
+ *   has ".gz" added to its name.
+ * <p>Title: CATS - Crandic Automated Traffic System</p>
+ * <p>Description: A program for dispatching trains on Pat Lana's
+ * Crandic model railroad.
+ * <p>Copyright: Copyright (c) 2019</p>
+ * <p>Company: </p>
+ * @author Rodney Black
+ * @version $Revision$
+ */
+public class LogSegments {
+
+  /**
+   * is the suffix on a compressed segment.
+   */
+  public static final String COMPRESSED_SUFFIX = ".gz";
+
+  /**
+   * is the suffix on a segment while it is being compressed.
+   */
+  private static final String PARTIAL_SUFFIX = ".part";
+
+  /**
+   * is the number of digits in a segment number.
+   */
+  private static final int DIGITS = 3;
+
+  /**
+   * is the highest segment number.
+   */
+  public static final int MAX_SEGMENT = 999;
+
+  /**
+   * is the size of the buffer used for compressing.
+   */
+  private static final int COPY_SIZE = 64 * 1024;
+
+  /**
+   * is how long (in milliseconds) finishCompressing() waits for the
+   * segments still being compressed.
+   */
+  private static final long COMPRESS_WAIT = 5000;
+
+  /**
+   * are the threads compressing segments.
+   */
+  private static final List<Thread> Compressors = new ArrayList<Thread>();
+
+  /**
+   * constructs the name of a segment.
+   *
+   * @param base is the name of the first segment.
+   * @param index is the number of the segment (0 is the first).
+   * @return the name of the segment file, without any compression suffix.
+   */
+  public static String segmentName(String base, int index) {
+    String number;
+    if (index == 0) {
+      return base;
+    }
+    number = String.valueOf(index);
+    while (number.length() < DIGITS) {
+      number = "0" + number;
+    }
+    return base + "." + number;
+  }
+
+  /**
+   * finds the segment file with a name, which may have been compressed.
+   *
+   * @param name is the name of the segment, without a compression suffix.
+   * @return the uncompressed file, if it exists, the compressed one, if
+   * it exists, or null.
+   */
+  private static File locate(String name) {
+    File f = new File(name);
+    if (f.isFile()) {
+      return f;
+    }
+    f = new File(name + COMPRESSED_SUFFIX);
+    if (f.isFile()) {
+      return f;
+    }
+    return null;
+  }
+
+  /**
+   * determines the name of the first segment of the set a file belongs to.
+   *
+   * @param member is a log file.
+   * @return the name of the first segment, without a compression
+   * suffix.  If member is not a numbered segment, it is the first.
+   */
+  private static String findBase(File member) {
+    String name = member.getPath();
+    String base;
+    int dot;
+    if (name.endsWith(COMPRESSED_SUFFIX)) {
+      name = name.substring(0, name.length() - COMPRESSED_SUFFIX.length());
+    }
+    dot = name.lastIndexOf('.');
+    if ((dot > 0) && (dot == (name.length() - DIGITS - 1))) {
+      for (int c = dot + 1; c < name.length(); ++c) {
+        if (!Character.isDigit(name.charAt(c))) {
+          return name;
+        }
+      }
+      base = name.substring(0, dot);
+      if (locate(base) != null) {
+        return base;
+      }
+    }
+    return name;
+  }
+
+  /**
+   * lists, in order, all the segments of the session that a log file
+   * is a part of.  A missing segment number (for example, a segment the
+   * user deleted) is skipped, so the segments after it are still found.
+   *
+   * @param member is any segment of the log (or a log that was not
+   * split into segments).
+   * @return the segment files.  If member is not part of a set of
+   * segments, the list holds only member.
+   */
+  public static List<File> listSegments(File member) {
+    List<File> segments = new ArrayList<File>();
+    String base = findBase(member);
+    File f;
+    for (int index = 0; index <= MAX_SEGMENT; ++index) {
+      if ((f = locate(segmentName(base, index))) != null) {
+        segments.add(f);
+      }
+    }
+    if (segments.isEmpty()) {
+      segments.add(member);
+    }
+    return segments;
+  }
+
+  /**
+   * finds the first segment number, at or after a starting number, not
+   * used by an earlier session with the same name.  A session that writes
+   * there follows the earlier one in listSegments(), so both are replayed
+   * and nothing is overwritten.
+   *
+   * @param base is the name of the first segment.
+   * @param from is the lowest segment number wanted.
+   * @return the number of the first free segment or MAX_SEGMENT + 1, if
+   * all are used.
+   */
+  public static int nextFreeSegment(String base, int from) {
+    int index;
+    for (index = from; index <= MAX_SEGMENT; ++index) {
+      if (locate(segmentName(base, index)) == null) {
+        break;
+      }
+    }
+    return index;
+  }
+
+  /**
+   * opens a segment for reading.
+   *
+   * @param segment is the segment file.  If its name ends in ".gz", it
+   * is uncompressed as it is read.
+   * @return a reader on the file.
+   * @throws IOException if the file cannot be opened.
+   */
+  public static BufferedReader openReader(File segment) throws IOException {
+    if (segment.getName().endsWith(COMPRESSED_SUFFIX)) {
+      return new BufferedReader(new InputStreamReader(
+          new GZIPInputStream(new FileInputStream(segment), COPY_SIZE)));
+    }
+    return new BufferedReader(new FileReader(segment));
+  }
+
+  /**
+   * compresses a closed segment in the background.  The compressed copy
+   * is written under a temporary name, then renamed and the original
+   * deleted, so that there is always a complete copy of the segment.
+   * The thread is a daemon, so it does not hold up leaving CATS; an
+   * unfinished compression leaves the original in place.
+   *
+   * @param name is the name of the segment.
+   */
+  public static void compressLater(final String name) {
+    Thread compressor = new Thread(new Runnable() {
+      public void run() {
+        try {
+          compress(name);
+        }
+        finally {
+          synchronized (Compressors) {
+            Compressors.remove(Thread.currentThread());
+          }
+        }
+      }
+    }, "Log compressor");
+    compressor.setDaemon(true);
+    compressor.setPriority(Thread.MIN_PRIORITY);
+    synchronized (Compressors) {
+      Compressors.add(compressor);
+    }
+    compressor.start();
+  }
+
+  /**
+   * waits, for at most COMPRESS_WAIT, for the segments being compressed.
+   * It is called when the log is closed.
+   */
+  public static void finishCompressing() {
+    long deadline = System.currentTimeMillis() + COMPRESS_WAIT;
+    long left;
+    List<Thread> compressors;
+    synchronized (Compressors) {
+      compressors = new ArrayList<Thread>(Compressors);
+    }
+    try {
+      for (int t = 0; t < compressors.size(); ++t) {
+        left = deadline - System.currentTimeMillis();
+        if (left <= 0) {
+          break;
+        }
+        compressors.get(t).join(left);
+      }
+    }
+    catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * compresses a segment.
+   *
+   * @param name is the name of the segment.
+   */
+  private static void compress(String name) {
+    File original = new File(name);
+    File partial = new File(name + COMPRESSED_SUFFIX + PARTIAL_SUFFIX);
+    File compressed = new File(name + COMPRESSED_SUFFIX);
+    byte[] buffer = new byte[COPY_SIZE];
+    InputStream in = null;
+    OutputStream out = null;
+    int count;
+    boolean success = false;
+    try {
+      in = new FileInputStream(original);
+      out = new GZIPOutputStream(new FileOutputStream(partial), COPY_SIZE);
+      while ((count = in.read(buffer)) > 0) {
+        out.write(buffer, 0, count);
+      }
+      out.close();
+      out = null;
+      success = partial.renameTo(compressed);
+    }
+    catch (IOException except) {
+      log.warn("Could not compress log segment " + name);
+    }
+    finally {
+      try {
+        if (in != null) {
+          in.close();
+        }
+        if (out != null) {
+          out.close();
+        }
+      }
+      catch (IOException ignore) {
+      }
+    }
+    if (success) {
+      if (!original.delete()) {
+        log.warn("Could not remove " + name + " after compressing it");
+      }
+    }
+    else if (partial.exists() && !partial.delete()) {
+      log.warn("Could not remove " + partial.getPath());
+    }
+  }
+
+  static org.apache.log4j.Logger log = org.apache.log4j.Logger.getLogger(
+      LogSegments.class.getName());
+}
+/* @(#)LogSegments.java */
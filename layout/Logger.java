@@ -6,21 +6,33 @@
  *
  * Special Considerations:
  *   To make the logging a background task, the actual writing is performed
- *   in a low priority thread.  Also, to keep the overhead down and provide
- *   some reliability, Strings are cached and written in bunches of 10, then
- *   the file is closed and reopened.
+ *   in a low priority thread.  Also, to keep the overhead down, the file
+ *   is held open and Strings are accumulated in a buffer, which is written
+ *   when it fills, after a second, or when the application ends.
+ *   The log can be split into segment files by size or by time.
  */
 package cats.layout;
 
 import java.awt.Point;
+import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
 import java.util.Calendar;
 import java.text.DateFormat;
 
 import cats.common.Constants;
 import cats.common.VersionList;
+import cats.gui.CounterFactory;
+import cats.gui.LogCompression;
+import cats.gui.Sequence;
 import cats.layout.store.AbstractStoreWatcher;
+import cats.rr_events.RREvent;
 
 /**
  * is a Singleton for logging Strings to a file.  It is intended to log
@@ -28,6 +40,13 @@ import cats.layout.store.AbstractStoreWatcher;
  * when during an operating session.  The results of this record can be
  * used for identifying bottlenecks in the schedule and improving the
  * schedule.
+ * <p>
+ * A long session can be split into segments.  When the current segment
+ * reaches the size or age set in the Adjustments menu, it is closed
+ * (and, optionally, compressed) and the next is opened.  Each segment
+ * starts with the same creation record as the first and a copy of the
+ * Stores, so that it can be replayed by itself.  LogSegments describes
+ * how the segments are named.
  * <p>Title: CATS - Crandic Automated Traffic System</p>
  * <p>Description: A program for dispatching trains on Pat Lana's
  * Crandic model railroad.
@@ -44,12 +63,25 @@ public class Logger
    */
   private static Logger Singleton;
   
+  /**
+   * is the number of Strings that can be waiting to be written before
+   * the producers are paused.
+   */
+  private static final int LOG_CAPACITY = 2048;
+
   /**
    * a FIFO for holding Strings, waiting to be written to disk.  Strings
    * are buffered so that there are fewer performance hits due to disk
    * activity.
    */
-  private static Queue LogQue = new Queue();
+  private static RingQueue LogQue = new RingQueue(LOG_CAPACITY,
+      RingQueue.BLOCK);
+
+  /**
+   * is placed in LogQue, ahead of the copy of the Stores, to tell the
+   * log thread to start a new segment.
+   */
+  private static final Object ROTATE = new Object();
 
   /**
    * is the update filter
@@ -94,15 +126,112 @@ public class Logger
   public static final String TRACK_MARKER = "{}";
 
   /**
-   * are the number of messages to accumulate before writing.
+   * is the size of the buffer between the queue and the file.
+   */
+  private final static int BUFFER_SIZE = 64 * 1024;
+
+  /**
+   * is the number of bytes accumulated that triggers a write.
+   */
+  private final static int COMMIT_SIZE = 16 * 1024;
+
+  /**
+   * is the longest (in milliseconds) a String waits in the buffer
+   * before being written.
+   */
+  private final static long COMMIT_INTERVAL = 1000;
+
+  /**
+   * is the fsync policy for never forcing the log to disk.  The
+   * operating system decides when it is written.
+   */
+  public static final int SYNC_NEVER = 0;
+
+  /**
+   * is the fsync policy for forcing the log to disk on every write.
    */
-  private final static int CACHE_SIZE = 10;
+  public static final int SYNC_ON_COMMIT = 1;
 
   /**
-   * is the OS name of the file.
+   * is the fsync policy for forcing the log to disk when the session ends.
+   */
+  public static final int SYNC_ON_CLOSE = 2;
+
+  /**
+   * is the number of bytes in a megabyte.
+   */
+  private static final long MEGABYTE = 1024 * 1024;
+
+  /**
+   * is the number of milliseconds in a minute.
+   */
+  private static final long MINUTE = 60 * 1000;
+
+  /**
+   * is the OS name of the file being written.
    */
   private String FileName;
 
+  /**
+   * is the OS name of the first segment.
+   */
+  private String BaseName;
+
+  /**
+   * is the number of the segment being written.  The first is 0.
+   */
+  private int SegmentIndex;
+
+  /**
+   * is the number of bytes written to the segment.
+   */
+  private long SegmentBytes;
+
+  /**
+   * is when (in milliseconds) the segment was opened.
+   */
+  private long SegmentStart;
+
+  /**
+   * is true from the time a new segment is asked for until it is opened.
+   */
+  private boolean RotationRequested;
+
+  /**
+   * are the segment limits from the Adjustments menu.
+   */
+  private Sequence SegmentSize;
+  private Sequence SegmentTime;
+
+  /**
+   * is the open log file.  It stays open for the whole session.
+   */
+  private volatile FileChannel LogChannel;
+
+  /**
+   * holds Strings that have been encoded, but not written.  It is
+   * allocated once and reused for every write.
+   */
+  private final ByteBuffer Pending = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+  /**
+   * converts Strings to bytes, in the same way as String.getBytes().
+   */
+  private final CharsetEncoder Encoder = Charset.defaultCharset().newEncoder().
+      onMalformedInput(CodingErrorAction.REPLACE).
+      onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+  /**
+   * is when (in milliseconds) the oldest String in Pending was placed
+   * there.
+   */
+  private long FirstPending;
+
+  /**
+   * is the fsync policy.
+   */
+  private volatile int SyncPolicy = SYNC_ON_CLOSE;
+
   /**
    * is end of line delmiter.
    */
@@ -140,94 +269,297 @@ public class Logger
    *   None
    *
    * Special Considerations:
+   *   Strings are encoded into a buffer, which is written when it
+   *   holds COMMIT_SIZE bytes, when its oldest String has waited
+   *   COMMIT_INTERVAL or when the application ends - whichever is
+   *   first.
    */
   public void run() {
-    String buffer[] = new String[CACHE_SIZE];
-    FileOutputStream outFile = null;
-    int count;
-    int i;
-    boolean doit;
+    Object line;
+    long wait;
     while (true) {
-      for (count = 0; count < CACHE_SIZE; ++count) {
-        buffer[count] = (String) LogQue.get();
-        if (buffer[count] == null) {
-          break;
+      if (Pending.position() == 0) {
+        wait = COMMIT_INTERVAL;
+      }
+      else {
+        wait = Math.max(1, FirstPending + COMMIT_INTERVAL -
+            System.currentTimeMillis());
+      }
+      line = LogQue.get(wait * 1000000L);
+      if (line == ROTATE) {
+        rotate();
+      }
+      else if (line != null) {
+        buffer((String) line);
+        if (Pending.position() >= COMMIT_SIZE) {
+          commit(false);
         }
       }
-      doit = true;
-      if (FileName != null) {
-        try {
-          outFile = new FileOutputStream(FileName, true);
+      else if (LogQue.isFlushed()) {
+        // If quitting, write the final timestamp.
+        buffer(new String(FINISH_TAG + Constants.FS +
+            Calendar.getInstance().getTime()));
+        commit(true);
+        close();
+        break;
+      }
+      if ((Pending.position() != 0) &&
+          ((System.currentTimeMillis() - FirstPending) >= COMMIT_INTERVAL)) {
+        commit(false);
+      }
+      if (!RotationRequested && (LogChannel != null) && isSegmentFull()) {
+        requestRotation();
+      }
+    }
+  }
+
+  /**
+   * checks if the segment being written has reached the limits set in
+   * the Adjustments menu.
+   *
+   * @return true if a new segment should be started.
+   */
+  private boolean isSegmentFull() {
+    long limit;
+    if ((SegmentSize == null) && (CounterFactory.CountKeeper != null)) {
+      SegmentSize = CounterFactory.CountKeeper.findSequence(
+          CounterFactory.LOGSIZETAG);
+      SegmentTime = CounterFactory.CountKeeper.findSequence(
+          CounterFactory.LOGTIMETAG);
+    }
+    if ((SegmentSize == null) || (SegmentIndex >= LogSegments.MAX_SEGMENT)) {
+      return false;
+    }
+    limit = SegmentSize.getAdjustment() * MEGABYTE;
+    if ((limit > 0) && ((SegmentBytes + Pending.position()) >= limit)) {
+      return true;
+    }
+    limit = SegmentTime.getAdjustment() * MINUTE;
+    return (limit > 0) &&
+    ((System.currentTimeMillis() - SegmentStart) >= limit);
+  }
+
+  /**
+   * asks for a new segment.  The Stores are changed by the RREvent
+   * thread, so the request is an RREvent, which places the ROTATE
+   * marker in LogQue, followed by a copy of the Stores.  Everything
+   * logged before the marker goes in the current segment.
+   */
+  private void requestRotation() {
+    RotationRequested = true;
+    new RREvent() {
+      @Override
+      public int getLane() {
+        return BULK_LANE;
+      }
+
+      @Override
+      public void doIt() {
+        LogQue.append(ROTATE);
+        if (Filter != null) {
+          Filter.dumpAllStores();
         }
-        catch (IOException except) {
-          doit = false;
-          System.out.println("Problem opening " + FileName);
-          log.info("Problem opening " + FileName);
+      }
+    }.queUp();
+  }
+
+  /**
+   * closes the current segment and opens the next.  It is run by the
+   * log thread when it finds the ROTATE marker.
+   */
+  private void rotate() {
+    String closed = FileName;
+    int next = LogSegments.nextFreeSegment(BaseName, SegmentIndex + 1);
+    if (LogChannel == null) {
+      return;
+    }
+    if (next > LogSegments.MAX_SEGMENT) {
+      // no segment is free, so keep writing this one and stop asking
+      SegmentIndex = LogSegments.MAX_SEGMENT;
+      RotationRequested = false;
+      return;
+    }
+    commit(true);
+    close();
+    if ((LogCompression.TheLogCompression != null) &&
+        LogCompression.TheLogCompression.getFlagValue()) {
+      LogSegments.compressLater(closed);
+    }
+    // segments left by an earlier session are skipped, not replaced
+    SegmentIndex = next;
+    openSegment(LogSegments.segmentName(BaseName, SegmentIndex), false);
+    RotationRequested = false;
+  }
+
+  /**
+   * encodes a String and EOL into the buffer, writing the buffer
+   * if it fills.  If the log file has not been opened, the String
+   * is discarded.
+   *
+   * @param line is the String.
+   */
+  private void buffer(String line) {
+    CharBuffer chars;
+    if (LogChannel == null) {
+      return;
+    }
+    if (Pending.position() == 0) {
+      FirstPending = System.currentTimeMillis();
+    }
+    chars = CharBuffer.wrap(line);
+    Encoder.reset();
+    while (Encoder.encode(chars, Pending, true).isOverflow()) {
+      commit(false);
+    }
+    while (Encoder.flush(Pending).isOverflow()) {
+      commit(false);
+    }
+    if (Pending.remaining() < EOL.length) {
+      commit(false);
+    }
+    Pending.put(EOL);
+  }
+
+  /**
+   * writes the buffer to the log file.
+   *
+   * @param closing is true if the session is ending.
+   */
+  private synchronized void commit(boolean closing) {
+    Pending.flip();
+    try {
+      if (LogChannel != null) {
+        SegmentBytes += Pending.remaining();
+        while (Pending.hasRemaining()) {
+          LogChannel.write(Pending);
         }
-        if (doit && (outFile != null)) {
-          try {
-            for (i = 0; i < count; ++i) {
-              outFile.write(buffer[i].getBytes());
-              outFile.write(EOL);
-              buffer[i] = null;
-            }
-            // If quitting, write the final timestamp.
-            if (count < (CACHE_SIZE - 1)) {
-              outFile.write(new String(FINISH_TAG + Constants.FS +
-                                       Calendar.getInstance().getTime()
-                                       ).getBytes());
-              outFile.write(EOL);
-            }
-            outFile.close();
-          }
-          catch (IOException except) {
-            System.out.println("Write error on " + FileName);
-            log.info("Write error on " + FileName);
-          }
+        if ((SyncPolicy == SYNC_ON_COMMIT) ||
+            (closing && (SyncPolicy == SYNC_ON_CLOSE))) {
+          LogChannel.force(false);
         }
       }
-      if (count < (CACHE_SIZE - 1)) {
-        break;
+    }
+    catch (IOException except) {
+      System.out.println("Write error on " + FileName);
+      log.info("Write error on " + FileName);
+    }
+    Pending.clear();
+    FirstPending = System.currentTimeMillis();
+  }
+
+  /**
+   * closes the log file.
+   */
+  private synchronized void close() {
+    if (LogChannel != null) {
+      try {
+        LogChannel.close();
       }
+      catch (IOException except) {
+        System.out.println("Problem closing " + FileName);
+        log.info("Problem closing " + FileName);
+      }
+      LogChannel = null;
     }
   }
 
   /**
    * is a method for assigning the file name to the log file.  The caller
-   * is responsible for ensuring that the name is good.
+   * is responsible for ensuring that the name is good.  The file is
+   * opened and stays open until the application ends or the segment
+   * is full.
+   * <p>
+   * Nothing written by an earlier session with the same name is removed.
+   * If that session did not fill its first segment, the new session is
+   * appended to it, as before segments existed.  Otherwise, the new
+   * session starts in the next free segment, so the segments of both
+   * sessions are replayed in the order they were written.
    *
    * @param name is the name of the file.
    */
   public void setFileName(String name) {
-    FileOutputStream outFile = null;
+    int next = LogSegments.nextFreeSegment(name, 0);
+    boolean append;
+    BaseName = name;
+    if (next > LogSegments.MAX_SEGMENT) {
+      // every segment is used, so add to the last one
+      SegmentIndex = LogSegments.MAX_SEGMENT;
+      append = true;
+    }
+    else if ((next == 1) && new File(name).isFile()) {
+      // the earlier session is in an uncompressed first segment
+      SegmentIndex = 0;
+      append = true;
+    }
+    else {
+      SegmentIndex = next;
+      append = false;
+    }
+    if (openSegment(LogSegments.segmentName(name, SegmentIndex), append)) {
+      Filter = new LogStoreWatcher();
+      Filter.dumpAllStores();
+      Filter.register();
+    }
+  }
+
+  /**
+   * opens a segment of the log and writes the creation record.
+   *
+   * @param name is the name of the segment.
+   * @param append is true to add to the file if it exists and false to
+   * replace it.
+   * @return true if the segment was opened.
+   */
+  private boolean openSegment(String name, boolean append) {
+    FileChannel channel = null;
+    ByteBuffer header;
     FileName = name;
     boolean success = true;
 
     try {
-      outFile = new FileOutputStream(FileName, true);
+      channel = new FileOutputStream(FileName, append).getChannel();
     }
     catch (IOException except) {
       success = false;
       System.out.println("Problem creating " + FileName);
       log.info("Problem creating " + FileName);
     }
-    if (success && (outFile != null)) {
+    if (success && (channel != null)) {
       try {
-        outFile.write(new String(CREATE_TAG + Constants.FS +
-            DateFormat.getInstance().format(Calendar.getInstance().getTime())
-            + Constants.FS + VERSION_TAG + Constants.FS + VERSION + Constants.FS +
-            Constants.CATS_TAG + Constants.FS_STRING + VersionList.CATS_VERSION).getBytes());
-        outFile.write(EOL);
-        outFile.close();
-        Filter = new LogStoreWatcher();
-        Filter.dumpAllStores();
-        Filter.register();
+        synchronized (this) {
+          header = ByteBuffer.wrap(new String(CREATE_TAG + Constants.FS +
+              DateFormat.getInstance().format(Calendar.getInstance().getTime())
+              + Constants.FS + VERSION_TAG + Constants.FS + VERSION + Constants.FS +
+              Constants.CATS_TAG + Constants.FS_STRING + VersionList.CATS_VERSION).getBytes());
+          // an appended segment already holds what earlier sessions wrote
+          SegmentBytes = channel.size() + header.remaining() + EOL.length;
+          channel.write(header);
+          channel.write(ByteBuffer.wrap(EOL));
+          SegmentStart = System.currentTimeMillis();
+          LogChannel = channel;
+        }
+        return true;
       }
       catch (IOException except) {
         System.out.println("Write error on " + FileName);
         log.info("Write error on " + FileName);
+        try {
+          channel.close();
+        }
+        catch (IOException ignore) {
+        }
       }
     }
+    return false;
+  }
+
+  /**
+   * selects when the log file is forced to disk.
+   *
+   * @param policy is SYNC_NEVER, SYNC_ON_COMMIT or SYNC_ON_CLOSE.
+   */
+  public void setSyncPolicy(int policy) {
+    SyncPolicy = policy;
   }
 
   /**
@@ -252,6 +584,7 @@ public class Logger
       catch (InterruptedException ie) {
       }
     }
+    LogSegments.finishCompressing();
   }
 
   /**
@@ -275,10 +608,7 @@ public class Logger
    * @return a time stamped String constructed from the two parameters
    */
   public static String timeStamp(String tag, String message) {
-    String now = DateFormat.getTimeInstance().format(FastClock.TheClock.getTOD());
-    String clkSource = (FastClock.TheClock.isFastTime()) ? "*" : " ";
-//    LogQue.append(new String(tag + FS + now + clkSource + FS + message));
-    return new String(tag + Constants.FS + now + clkSource + Constants.FS + message);
+    return LogRecord.start(tag).append(message).finish();
   }
 
   /**
@@ -300,9 +630,18 @@ public class Logger
    * @param message is the message being reccorded.
    */
   public static void realTimeStamp(String tag, String message) {
-    String now = DateFormat.getTimeInstance().format(Calendar.getInstance().
-        getTime());
-    LogQue.append(new String(tag + Constants.FS + now + Constants.FS + message));
+    LogQue.append(LogRecord.startRealTime(tag).append(message).finish());
+  }
+
+  /**
+   * writes a completed LogRecord to the log.  It is for records
+   * built a piece at a time, rather than from a single message.
+   *
+   * @param rec is the record, started with one of the LogRecord start
+   * methods.  It is finished by this method.
+   */
+  public static void logRecord(LogRecord rec) {
+    LogQue.append(rec.finish());
   }
 
   /**
@@ -13,8 +13,9 @@
 package cats.layout;
 
 import cats.jmri.MeterLnTrafficController;
-import cats.rr_events.LoconetEvent;
-import cats.rr_events.RREventManager;
+import cats.jmri.MeterLnSensorManager;
+import cats.rr_events.EventCoalescer;
+import cats.rr_events.RREvent;
 import java.util.Enumeration;
 import java.util.Vector;
 import jmri.jmrix.loconet.LnConstants;
@@ -53,6 +54,12 @@ import jmri.jmrix.loconet.LocoNetMessage;
  *     processing small, which should provide better user response.
  *     The RREvents are based on the Command pattern and specific RREvents
  *     are generated using a Factory pattern.
+ * <li>
+ *     The RREvents pass through the EventCoalescer, so a report for an
+ *     address that already has one waiting in the queue replaces the
+ *     waiting report, rather than being queued behind it.  Reports
+ *     that arrive while the layout is being read back wait in the bulk
+ *     lane, so they do not hold up the dispatcher.
  * </ul>
  *
  * <p>Title: CATS - Crandic Automated Traffic System</p>
@@ -109,13 +116,15 @@ implements LocoNetListener {
     
     int opCode = msg.getOpCode();
     int addr;
+    int lane = MeterLnSensorManager.isReadingBack() ? RREvent.BULK_LANE :
+      RREvent.SAFETY_LANE;
     
     if (opCode == LnConstants.OPC_INPUT_REP) {
       addr = msg.sensorAddr();
       for (Enumeration<Observer> e = OPC_INPUT_REP_Observers.elements(); e.hasMoreElements();) {
         obs = (e.nextElement());
         if (obs.isAddressMatch(addr)) {
-          RREventManager.EventQue.append(new LoconetEvent(obs.Client, msg));
+          EventCoalescer.queUp(obs.Client, opCode, addr, msg, lane);
         }
       }
     }
@@ -124,7 +133,7 @@ implements LocoNetListener {
       for (Enumeration<Observer> e = OPC_SW_REP_Observers.elements(); e.hasMoreElements();) {
         obs = (e.nextElement());
         if (obs.isAddressMatch(addr)) {
-          RREventManager.EventQue.append(new LoconetEvent(obs.Client, msg));
+          EventCoalescer.queUp(obs.Client, opCode, addr, msg, lane);
         }
       }
     }
@@ -133,7 +142,7 @@ implements LocoNetListener {
       for (Enumeration<Observer> e = OPC_SW_REQ_Observers.elements(); e.hasMoreElements();) {
         obs = (e.nextElement());
         if (obs.isAddressMatch(addr)) {
-          RREventManager.EventQue.append(new LoconetEvent(obs.Client, msg));
+          EventCoalescer.queUp(obs.Client, opCode, addr, msg, lane);
         }
       }
     }
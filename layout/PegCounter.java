@@ -71,6 +71,21 @@ public class PegCounter {
     }
   }
   
+  /**
+   * sets the counter to a value.  It is for counters which hold
+   * a measurement, rather than a count of events.
+   *
+   * @param count is the new value
+   */
+  public void setCount(int count) {
+    try {
+      Counter.setState(count);
+    } catch (JmriException e) {
+      log.warn("JMRI exception on Peg Counter " + ObjectName);
+      e.printStackTrace();
+    }
+  }
+
   /**
    * zeros the counter
    */
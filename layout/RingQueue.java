@@ -0,0 +1,647 @@
+/* Name: RingQueue.java
+ *
+ * What:
+ *   This class defines a bounded Queue of Objects which can be filled by
+ *   multiple threads and emptied by one thread, without locking.
+ *
+ * Special Considerations:
+ *   This class is application independent.  It is a drop in replacement
+ *   for Queue, as long as only one thread calls get().
+ */
+package cats.layout;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ *   This class defines a bounded Queue of Objects which can be filled by
+ *   multiple threads and emptied by one thread, without locking.
+ *   <p>
+ *   The Objects are held in a ring buffer.  Each slot in the ring has a
+ *   sequence number which tells producers when the slot is free and the
+ *   consumer when the slot has been filled, so the only contention between
+ *   threads is a compare and set on the producer (or consumer) index.  No
+ *   Element is allocated per append.
+ *   <p>
+ *   The consumer parks when the ring is empty and a producer unparks it
+ *   only if it is parked, so a busy consumer is never notified.
+ *   <p>
+ *   When the ring is full, the backpressure policy decides what happens:
+ *   <ul>
+ *   <li>BLOCK - the producer pauses until the consumer frees a slot.  If
+ *       the consumer itself is the producer, the Object is held in an
+ *       unbounded overflow list so that the consumer cannot deadlock.
+ *       Every entry is kept, even if the same Object is appended twice.
+ *   <li>DROP_OLDEST - the oldest Object in the ring is discarded to make
+ *       room.
+ *   <li>COALESCE - the Object is held in an overflow list.  If it is
+ *       Coalescable and an Object with the same key is already in the
+ *       overflow list, the new one replaces the old one, keeping the old
+ *       one's place in line.
+ *   </ul>
+ *   The overflow list holds entries that arrived after everything in the
+ *   ring, so the consumer empties the ring before the overflow list.  To
+ *   keep that true, while the overflow list is not empty, no producer
+ *   puts anything in the ring: the consumer and COALESCE producers add to
+ *   the overflow list and BLOCK producers pause until it is empty.
+ * <p>Title: CATS - Crandic Automated Traffic System</p>
+ * <p>Description: A program for dispatching trains on Pat Lana's
+ * Crandic model railroad.
+ * <p>Copyright: Copyright (c) 2019</p>
+ * <p>Company: </p>
+ * @author Rodney Black
+ * @version $Revision$
+ */
+public class RingQueue extends Queue {
+
+  /**
+   * is the backpressure policy that pauses the producer while the ring
+   * is full.
+   */
+  public static final int BLOCK = 0;
+
+  /**
+   * is the backpressure policy that discards the oldest entry in the ring
+   * when the ring is full.
+   */
+  public static final int DROP_OLDEST = 1;
+
+  /**
+   * is the backpressure policy that merges entries with the same key when
+   * the ring is full.
+   */
+  public static final int COALESCE = 2;
+
+  /**
+   * are the names of the policies, for reporting.
+   */
+  public static final String[] POLICY_NAMES = {
+    "block",
+    "drop oldest",
+    "coalesce"
+  };
+
+  /**
+   * is the default number of slots in the ring.
+   */
+  public static final int DEFAULT_CAPACITY = 1024;
+
+  /**
+   * is how long (in nanoseconds) a blocked producer waits before checking
+   * for a free slot again.
+   */
+  private static final long BLOCK_PAUSE = 100000L;
+
+  /**
+   * is the interface an Object implements if entries in the overflow list
+   * can be merged.
+   */
+  public interface Coalescable {
+
+    /**
+     * is the key for identifying entries which can be merged.  When two
+     * entries have equal keys, only the later is kept.
+     *
+     * @return the key.  It must implement equals() and hashCode().
+     */
+    public Object getCoalesceKey();
+  }
+
+  /**
+   * is the ring.
+   */
+  private final AtomicReferenceArray<Object> Ring;
+
+  /**
+   * are the sequence numbers of the slots in the ring.
+   */
+  private final AtomicLongArray Sequence;
+
+  /**
+   * is the mask for converting an index into a slot.
+   */
+  private final int Mask;
+
+  /**
+   * is the index of the next slot to be filled.
+   */
+  private final AtomicLong Tail = new AtomicLong();
+
+  /**
+   * is the index of the next slot to be emptied.
+   */
+  private final AtomicLong Head = new AtomicLong();
+
+  /**
+   * is the backpressure policy.
+   */
+  private volatile int Policy;
+
+  /**
+   * holds entries which did not fit in the ring, in arrival order.  An
+   * entry that can be merged is held in a Pending, so that a later entry
+   * with the same key can replace it in place.
+   */
+  private final ArrayDeque<Object> Overflow = new ArrayDeque<Object>();
+
+  /**
+   * finds the Pending in Overflow holding each key, for COALESCE.
+   */
+  private final HashMap<Object, Pending> Merging = new HashMap<Object, Pending>();
+
+  /**
+   * is the number of entries in Overflow.  It is read without a lock,
+   * so that the fast path never touches the Overflow monitor.
+   */
+  private volatile int OverflowCount;
+
+  /**
+   * is the thread emptying the Queue.
+   */
+  private volatile Thread Consumer;
+
+  /**
+   * is true while the consumer is parked (or about to park).
+   */
+  private volatile boolean Waiting;
+
+  /**
+   * is set when the consumer should stop once the Queue is empty.
+   */
+  private volatile boolean Done;
+
+  /**
+   * is the number of entries discarded by DROP_OLDEST.
+   */
+  private final AtomicLong Dropped = new AtomicLong();
+
+  /**
+   * is the number of entries merged by COALESCE.
+   */
+  private final AtomicLong Coalesced = new AtomicLong();
+
+  /**
+   * is the largest number of entries seen waiting.
+   */
+  private volatile int HighWater;
+
+  /**
+   * is the constructor.
+   *
+   * @param capacity is the number of slots in the ring.  It is rounded
+   * up to a power of 2.
+   * @param policy is the backpressure policy (BLOCK, DROP_OLDEST or
+   * COALESCE).
+   */
+  public RingQueue(int capacity, int policy) {
+    int size = 2;
+    while (size < capacity) {
+      size <<= 1;
+    }
+    Ring = new AtomicReferenceArray<Object>(size);
+    Sequence = new AtomicLongArray(size);
+    for (int slot = 0; slot < size; ++slot) {
+      Sequence.set(slot, slot);
+    }
+    Mask = size - 1;
+    setPolicy(policy);
+  }
+
+  /**
+   * is the constructor for a Queue with the default capacity which
+   * blocks producers when full.
+   */
+  public RingQueue() {
+    this(DEFAULT_CAPACITY, BLOCK);
+  }
+
+  /**
+   * changes the backpressure policy.
+   *
+   * @param policy is the new policy.  If it is not recognized, BLOCK
+   * is used.
+   */
+  public void setPolicy(int policy) {
+    if ((policy < BLOCK) || (policy > COALESCE)) {
+      log.warn("Unknown queue policy " + policy + "; using block");
+      policy = BLOCK;
+    }
+    Policy = policy;
+  }
+
+  /**
+   * retrieves the backpressure policy.
+   *
+   * @return the policy.
+   */
+  public int getPolicy() {
+    return Policy;
+  }
+
+  /**
+   * retrieves the number of slots in the ring.
+   *
+   * @return the capacity.
+   */
+  public int getCapacity() {
+    return Mask + 1;
+  }
+
+  /**
+   *  This method adds an Object to the Queue.  It does not wait for
+   *  a lock, though it may pause if the ring is full and the policy
+   *  is BLOCK.
+   *
+   * @param s is the Object to be added to the Queue.  Because get()
+   * returns null when the Queue is flushed, null is ignored.
+   */
+  @Override
+  public void append(Object s) {
+    if (s == null) {
+      return;
+    }
+    switch (Policy) {
+    case DROP_OLDEST:
+      if (OverflowCount != 0) {
+        // left from another policy, so this follows it
+        spill(s);
+        break;
+      }
+      while (!offer(s)) {
+        if (poll() != null) {
+          Dropped.incrementAndGet();
+        }
+      }
+      break;
+
+    case COALESCE:
+      if ((OverflowCount != 0) || !offer(s)) {
+        spill(s);
+      }
+      break;
+
+    default:
+      if (Thread.currentThread() == Consumer) {
+        if ((OverflowCount != 0) || !offer(s)) {
+          spill(s);
+        }
+      }
+      else {
+        // nothing passes what the consumer has spilled
+        while ((OverflowCount != 0) || !offer(s)) {
+          if (Done) {
+            Dropped.incrementAndGet();
+            return;
+          }
+          wakeUp();
+          LockSupport.parkNanos(this, BLOCK_PAUSE);
+        }
+      }
+    }
+    wakeUp();
+  }
+
+  /**
+   * This method pulls the oldest Object off the Queue, waiting if the
+   * Queue is empty.  Only one thread may call it.
+   *
+   * @return The oldest Object on the Queue or null if the Queue was
+   * flushed or the consumer was interrupted.
+   */
+  @Override
+  public Object get() {
+    Object item;
+    Consumer = Thread.currentThread();
+    while (true) {
+      if ((item = poll()) != null) {
+        return item;
+      }
+      if ((OverflowCount != 0) && ((item = unspill()) != null)) {
+        return item;
+      }
+      if (Done) {
+        return null;
+      }
+      Waiting = true;
+      if (isEmpty() && !Done) {
+        LockSupport.park(this);
+      }
+      Waiting = false;
+      if (Thread.interrupted()) {
+        return null;
+      }
+    }
+  }
+
+  /**
+   * This method pulls the oldest Object off the Queue, waiting a limited
+   * time if the Queue is empty.  Only one thread may call it.
+   *
+   * @param timeout is the longest to wait, in nanoseconds.
+   *
+   * @return The oldest Object on the Queue or null if nothing arrived in
+   * time, the Queue was flushed or the consumer was interrupted.
+   * isFlushed() tells the first two apart.
+   */
+  public Object get(long timeout) {
+    Object item;
+    long deadline = System.nanoTime() + timeout;
+    long remaining = timeout;
+    Consumer = Thread.currentThread();
+    while (true) {
+      if ((item = poll()) != null) {
+        return item;
+      }
+      if ((OverflowCount != 0) && ((item = unspill()) != null)) {
+        return item;
+      }
+      if (Done || (remaining <= 0)) {
+        return null;
+      }
+      Waiting = true;
+      if (isEmpty() && !Done) {
+        LockSupport.parkNanos(this, remaining);
+      }
+      Waiting = false;
+      if (Thread.interrupted()) {
+        return null;
+      }
+      remaining = deadline - System.nanoTime();
+    }
+  }
+
+  /**
+   * tells if flush() has been called.
+   *
+   * @return true if the consumer has been told to stop once the Queue
+   * is empty.
+   */
+  public boolean isFlushed() {
+    return Done;
+  }
+
+  /**
+   * pulls the oldest Object off the Queue without waiting.  It is for
+   * a consumer which waits on something else, such as a group of
+   * Queues.  Only the consumer may call it.
+   *
+   * @return the oldest Object or null if the Queue is empty.
+   */
+  public Object tryGet() {
+    Object item;
+    Consumer = Thread.currentThread();
+    if (((item = poll()) == null) && (OverflowCount != 0)) {
+      item = unspill();
+    }
+    return item;
+  }
+
+  /**
+   * waits for at least one Object to be added to the Queue, then
+   * moves it and as many others as are waiting (up to a limit) into
+   * an array.  Only the consumer may call it.
+   *
+   * @param batch is where the Objects are placed, oldest first.
+   * @param max is the most Objects to move.
+   *
+   * @return the number of Objects moved.  It is 0 if the Queue was
+   * flushed or the consumer was interrupted.
+   */
+  public int drain(Object[] batch, int max) {
+    int count = 0;
+    int limit = Math.min(max, batch.length);
+    Object item = get();
+    while (item != null) {
+      batch[count++] = item;
+      if (count >= limit) {
+        break;
+      }
+      if (((item = poll()) == null) && (OverflowCount != 0)) {
+        item = unspill();
+      }
+    }
+    return count;
+  }
+
+  /**
+   *  This method notifies the Queue consumer that the Queue
+   *  should be flushed.  The consumer receives what is in the Queue,
+   *  then null.
+   */
+  @Override
+  public void flush() {
+    Done = true;
+    Flushed = true;
+    Thread t = Consumer;
+    if (t != null) {
+      LockSupport.unpark(t);
+    }
+  }
+
+  /**
+   * tests if anything is waiting to be pulled off the Queue.
+   *
+   * @return true if nothing is waiting.
+   */
+  public boolean isEmpty() {
+    return (OverflowCount == 0) && (Head.get() == Tail.get());
+  }
+
+  /**
+   * estimates how many entries are waiting.  Because producers may be
+   * adding entries at the same time, it is only a snapshot.
+   *
+   * @return the number of entries in the ring and in overflow.
+   */
+  public int size() {
+    long depth = Tail.get() - Head.get();
+    if (depth < 0) {
+      depth = 0;
+    }
+    return (int) depth + OverflowCount;
+  }
+
+  /**
+   * retrieves the largest number of entries seen waiting.
+   *
+   * @return the high water mark.
+   */
+  public int getHighWater() {
+    return HighWater;
+  }
+
+  /**
+   * retrieves the number of entries discarded because the ring was full.
+   *
+   * @return the count of dropped entries.
+   */
+  public long getDropped() {
+    return Dropped.get();
+  }
+
+  /**
+   * retrieves the number of entries merged because the ring was full.
+   *
+   * @return the count of coalesced entries.
+   */
+  public long getCoalesced() {
+    return Coalesced.get();
+  }
+
+  /**
+   * tries to put an Object in the ring.
+   *
+   * @param s is the Object.
+   * @return true if it was placed in the ring and false if the ring
+   * is full.
+   */
+  private boolean offer(Object s) {
+    long pos;
+    long diff;
+    int slot;
+    while (true) {
+      pos = Tail.get();
+      slot = (int) pos & Mask;
+      diff = Sequence.get(slot) - pos;
+      if (diff == 0) {
+        if (Tail.compareAndSet(pos, pos + 1)) {
+          Ring.set(slot, s);
+          // a volatile store, so that it is ordered before the read
+          // of Waiting in wakeUp()
+          Sequence.set(slot, pos + 1);
+          if ((pos + 1 - Head.get()) > HighWater) {
+            HighWater = (int) (pos + 1 - Head.get());
+          }
+          return true;
+        }
+      }
+      else if (diff < 0) {
+        return false;
+      }
+    }
+  }
+
+  /**
+   * tries to remove the oldest Object from the ring.  It is called by
+   * the consumer and by producers discarding the oldest entry, so it
+   * claims the slot with a compare and set.
+   *
+   * @return the oldest Object or null if the ring is empty.
+   */
+  private Object poll() {
+    long pos;
+    long diff;
+    int slot;
+    Object item;
+    while (true) {
+      pos = Head.get();
+      slot = (int) pos & Mask;
+      diff = Sequence.get(slot) - (pos + 1);
+      if (diff == 0) {
+        if (Head.compareAndSet(pos, pos + 1)) {
+          item = Ring.get(slot);
+          Ring.set(slot, null);
+          Sequence.lazySet(slot, pos + Mask + 1);
+          return item;
+        }
+      }
+      else if (diff < 0) {
+        return null;
+      }
+    }
+  }
+
+  /**
+   * places an Object in the overflow list.
+   *
+   * @param s is the Object.
+   */
+  private void spill(Object s) {
+    Object key;
+    Pending held;
+    synchronized (Overflow) {
+      if ((s instanceof Coalescable) && (Policy == COALESCE)) {
+        key = ((Coalescable) s).getCoalesceKey();
+        if ((held = Merging.get(key)) != null) {
+          held.Item = s;
+          Coalesced.incrementAndGet();
+        }
+        else {
+          held = new Pending(key, s);
+          Merging.put(key, held);
+          Overflow.addLast(held);
+        }
+      }
+      else {
+        Overflow.addLast(s);
+      }
+      OverflowCount = Overflow.size();
+    }
+  }
+
+  /**
+   * removes the oldest Object from the overflow list.
+   *
+   * @return the oldest Object or null if the list is empty.
+   */
+  private Object unspill() {
+    Object item;
+    Pending held;
+    synchronized (Overflow) {
+      item = Overflow.pollFirst();
+      if (item instanceof Pending) {
+        held = (Pending) item;
+        Merging.remove(held.Key);
+        item = held.Item;
+      }
+      OverflowCount = Overflow.size();
+    }
+    return item;
+  }
+
+  /**
+   * unparks the consumer, if it is waiting.
+   */
+  private void wakeUp() {
+    Thread t;
+    if (Waiting && ((t = Consumer) != null)) {
+      LockSupport.unpark(t);
+    }
+  }
+
+  /**
+   * is an entry in the overflow list that later entries with the same
+   * key replace.
+   */
+  private static class Pending {
+
+    /**
+     * is the key of the entry.
+     */
+    final Object Key;
+
+    /**
+     * is the latest Object with the key.
+     */
+    Object Item;
+
+    /**
+     * is the constructor.
+     *
+     * @param key is the key.
+     * @param item is the first Object with the key.
+     */
+    Pending(Object key, Object item) {
+      Key = key;
+      Item = item;
+    }
+  }
+
+  static org.apache.log4j.Logger log = org.apache.log4j.Logger.getLogger(
+      RingQueue.class.getName());
+}
+/* @(#)RingQueue.java */
@@ -420,6 +420,16 @@ public class SecEdge
     return null;
   }
 
+  /**
+   * tells if the XML file names the SecEdge this one is joined to,
+   * rather than it being joined to its geographic neighbor.
+   *
+   * @return true if the joint is described in the XML file.
+   */
+  public boolean isDescribed() {
+    return DescribeEdge != null;
+  }
+
   /**
    * binds this SecEdge to its mate.
    * <p>
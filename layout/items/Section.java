@@ -337,6 +337,24 @@ public class Section
     }
   }
 
+  /**
+   * links some of the SecEdges in the Section to their mates.  A SecEdge
+   * joined to the adjacent Section changes only this Section and that
+   * neighbor, so Sections at least two columns apart can be linked
+   * at the same time.  A SecEdge whose mate is named in the XML file
+   * can change any Section.
+   *
+   * @param described is true to link the SecEdges whose mates are named
+   * in the XML file and false to link those joined to the adjacent Section.
+   */
+  public void linkEdges(boolean described) {
+    for (int edge = 0; edge < MyEdge.length; ++edge) {
+      if ((MyEdge[edge] != null) && (MyEdge[edge].isDescribed() == described)) {
+        MyEdge[edge].bind();
+      }
+    }
+  }
+
   /**
    * determines if the Section contains anything to put on the Screen.  If
    * so, then a GridTile is allocated and given to all the sub-components.
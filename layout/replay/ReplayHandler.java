@@ -20,8 +20,8 @@ import java.awt.Component;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
+import java.util.Iterator;
 import java.util.NoSuchElementException;
 import java.util.StringTokenizer;
 
@@ -29,6 +29,7 @@ import javax.swing.JOptionPane;
 
 import cats.common.Constants;
 import cats.layout.FastClock;
+import cats.layout.LogSegments;
 import cats.layout.Logger;
 import cats.layout.store.FieldPair;
 import cats.layout.store.GenericRecord;
@@ -78,7 +79,9 @@ public class ReplayHandler {
   static private ReplayStrategy CurrentStrategy;
   
   /**
-   * reads a log file and replays the events logged.
+   * reads a log file and replays the events logged.  If the log file
+   * is one segment of a session that was split into segments, all the
+   * segments are replayed, in order.
    * @param recording is the log file
    * @return null if the playback had no problems or an
    * error message if there was a problem.
@@ -86,20 +89,63 @@ public class ReplayHandler {
   static public String playback(File recording) {
     String resultMsg = null;
     BufferedReader reader;
+    boolean first = true;
+    File segment = recording;
+    adjustClock = true;
+    try {
+      for (Iterator<File> iter = LogSegments.listSegments(recording).iterator();
+      iter.hasNext(); ) {
+        segment = iter.next();
+        reader = LogSegments.openReader(segment);
+        try {
+          resultMsg = playSegment(reader, first);
+        }
+        finally {
+          reader.close();
+        }
+        first = false;
+        if ((resultMsg != null) || (CurrentStrategy == null)) {
+          break;
+        }
+      }
+      if (CurrentStrategy != null) {
+        processFinish();
+      }
+    }
+    catch (FileNotFoundException nfne) {
+      resultMsg = segment + " was not found";
+    }
+    catch (IOException ie) {
+      resultMsg = segment + " could not be read.";
+    }
+    return resultMsg;
+  }
+
+  /**
+   * replays the events in one segment of a log.  Every segment starts
+   * with a creation record.  The first selects the parser; the
+   * others are skipped, so that the segments replay as one log.
+   * @param reader reads the segment
+   * @param first is true for the first segment
+   * @return null if the playback had no problems or an
+   * error message if there was a problem.
+   * @throws IOException if the segment could not be read
+   */
+  static private String playSegment(BufferedReader reader, boolean first)
+  throws IOException {
+    String resultMsg = null;
     String line;
     String tag;
     String errMsg = null;
     StringTokenizer tokens;
-    adjustClock = true;
-    try {
-      reader = new BufferedReader(new FileReader(recording));
-      while ((line = reader.readLine()) != null) {
-        tokens = new StringTokenizer(line, Constants.FS_STRING);
-        if (Debug) {
-          System.out.println(line);
-        }
-        tag = tokens.nextToken();
-        if (tag.startsWith(Logger.CREATE_TAG)) {
+    while ((line = reader.readLine()) != null) {
+      tokens = new StringTokenizer(line, Constants.FS_STRING);
+      if (Debug) {
+        System.out.println(line);
+      }
+      tag = tokens.nextToken();
+      if (tag.startsWith(Logger.CREATE_TAG)) {
+        if (first || (CurrentStrategy == null)) {
           resultMsg = processCreate(tokens);
           if (resultMsg != null) {
             if (resultMsg == CANCEL) {
@@ -108,63 +154,53 @@ public class ReplayHandler {
             break;
           }
         }
-        else if (null == CurrentStrategy) {
-          log.info("Missing create event - cannot select a parser");
-          break;
+      }
+      else if (null == CurrentStrategy) {
+        log.info("Missing create event - cannot select a parser");
+        break;
+      }
+      else {
+        if (Constants.ASSIGN_TAG.equals(tag)) {
+          errMsg = CurrentStrategy.processAssign(tokens);
+        }
+        else if (Logger.FINISH_TAG.equals(tag)) {
+          CurrentStrategy.processFinish();
+        }
+        else if (Constants.MOVE_TAG.equals(tag)) {
+          errMsg = CurrentStrategy.processMove(tokens);
+        }
+        else if (Constants.RERUN_TAG.equals(tag)) {
+          errMsg = CurrentStrategy.processRerun(tokens);
+        }
+        else if (Constants.TERMINATED_TAG.equals(tag)) {
+          errMsg = CurrentStrategy.processTerminated(tokens, Constants.TERMINATED_TAG);
+        }
+        else if (Constants.TIEDDOWN_TAG.equals(tag)) {
+          errMsg = CurrentStrategy.processTerminated(tokens, Constants.TIEDDOWN_TAG);
+        }
+        else if (Constants.OOS_TAG.equals(tag)) {
+          errMsg = CurrentStrategy.processOOS(tokens);
+        }
+        else if (Constants.TNT_TAG.equals(tag)) {
+          errMsg = CurrentStrategy.processTNT(tokens);
+        }
+        else if (Constants.ADD_TO_STORE.equals(tag)) {
+          errMsg = CurrentStrategy.processAddRecord(tokens);
+        }
+        else if (Constants.CHANGE_STORE.equals(tag)) {
+          errMsg = CurrentStrategy.processChangeRecord(tokens);
+        }
+        else if (Constants.REMOVE_FROM_STORE.equals(tag)) {
+          errMsg = CurrentStrategy.processDeleteRecord(tokens);
         }
         else {
-          if (Constants.ASSIGN_TAG.equals(tag)) {
-            errMsg = CurrentStrategy.processAssign(tokens);
-          }
-          else if (Logger.FINISH_TAG.equals(tag)) {
-            CurrentStrategy.processFinish();
-          }
-          else if (Constants.MOVE_TAG.equals(tag)) {
-            errMsg = CurrentStrategy.processMove(tokens);
-          }
-          else if (Constants.RERUN_TAG.equals(tag)) {
-            errMsg = CurrentStrategy.processRerun(tokens);
-          }
-          else if (Constants.TERMINATED_TAG.equals(tag)) {
-            errMsg = CurrentStrategy.processTerminated(tokens, Constants.TERMINATED_TAG);
-          }
-          else if (Constants.TIEDDOWN_TAG.equals(tag)) {
-            errMsg = CurrentStrategy.processTerminated(tokens, Constants.TIEDDOWN_TAG);
-          }
-          else if (Constants.OOS_TAG.equals(tag)) {
-            errMsg = CurrentStrategy.processOOS(tokens);
-          }
-          else if (Constants.TNT_TAG.equals(tag)) {
-            errMsg = CurrentStrategy.processTNT(tokens);
-          }
-          else if (Constants.ADD_TO_STORE.equals(tag)) {
-            errMsg = CurrentStrategy.processAddRecord(tokens);
-          }
-          else if (Constants.CHANGE_STORE.equals(tag)) {
-            errMsg = CurrentStrategy.processChangeRecord(tokens);
-          }
-          else if (Constants.REMOVE_FROM_STORE.equals(tag)) {
-            errMsg = CurrentStrategy.processDeleteRecord(tokens);
-          }
-          else {
-            errMsg = new String("Unrecognized log entry: \"" + line + Constants.QUOTE);
-          }
-          if (null != errMsg) {
-            System.out.println(errMsg);
-            log.info(errMsg);
-          }
+          errMsg = new String("Unrecognized log entry: \"" + line + Constants.QUOTE);
+        }
+        if (null != errMsg) {
+          System.out.println(errMsg);
+          log.info(errMsg);
         }
       }
-      if (CurrentStrategy != null) {
-        processFinish();
-      }
-      reader.close();
-    }
-    catch (FileNotFoundException nfne) {
-      resultMsg = recording + " was not found";
-    }
-    catch (IOException ie) {
-      resultMsg = recording + " could not be read.";
     }
     return resultMsg;
   }
@@ -36,9 +36,11 @@ import java.util.Enumeration;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Vector;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import cats.common.Constants;
 import cats.gui.store.CatsTableModel;
+import cats.layout.LogRecord;
 import cats.layout.Logger;
 import cats.layout.xml.XMLEleFactory;
 import cats.layout.xml.XMLEleObject;
@@ -72,6 +74,17 @@ import cats.layout.xml.XMLReader;
  * DataStore is written next, one record per XML element.  The fields
  * in the records are written as attributes with the field identifiers
  * being the attribute tags.
+ * <p>
+ * Records are changed from the Swing thread (the editors), the RREvent
+ * thread and the threads reading network requests.  A change to a single
+ * record (changeRecord(), addTrustedRecord() and delRecord()) holds the
+ * lock for the stripe its key falls in, so finding the record and
+ * changing it, or adding it when it is not found, is one step.  Changes
+ * to keys in different stripes proceed in parallel.  A change to the
+ * whole store (updateRecords()) holds StoreLock exclusively, so it does
+ * not interleave with single record changes, which hold it shared.
+ * Readers, such as the JTable, take neither lock; they see each field
+ * through the locks of the RecordVector and GenericRecord.
  * <p>Title: CATS - Crandic Automated Traffic System</p>
  * <p>Description: A program for dispatching trains on Pat Lana's
  * Crandic model railroad.
@@ -120,6 +133,27 @@ public abstract class AbstractStore
    */
   private LinkedList<AbstractStoreWatcher> Observers;
   
+  /**
+   * is the encoded form of the records, for sending to network clients.
+   */
+  private final StoreImage Image = new StoreImage(this);
+
+  /**
+   * is the number of locks the keys of the records are spread over.
+   */
+  private static final int KEY_STRIPES = 16;
+
+  /**
+   * are the locks on changes to the records, by the hash of their keys.
+   */
+  private final Object[] KeyLocks = new Object[KEY_STRIPES];
+
+  /**
+   * is held shared by changes to single records and exclusively by
+   * changes to the whole store.
+   */
+  protected final ReentrantReadWriteLock StoreLock = new ReentrantReadWriteLock();
+  
   /**
    * is the constructor.
    *
@@ -136,6 +170,9 @@ public abstract class AbstractStore
 	  //    Data = new RecordVector<GenericRecord>();
 	  //    Fields.loadFields(prop);
 	  Observers = new  LinkedList<AbstractStoreWatcher>();
+	  for (int stripe = 0; stripe < KEY_STRIPES; ++stripe) {
+	    KeyLocks[stripe] = new Object();
+	  }
 	  DEFAULT_ATTRIBUTES = prop;
 	  XML_TAG = sTag;
 	  REC_TAG = rTag;
@@ -296,16 +333,39 @@ public abstract class AbstractStore
     String removeEntry;
     if (record != null) {
       pair = record.getRecordKeyPair();
-      if (pair != null) {
-        removeEntry = AbstractStoreWatcher.buildRemoveString(DataStore.getTag() + Constants.FS + pair.toString());
-        for (Iterator<AbstractStoreWatcher> iter = Observers.iterator(); iter.hasNext(); ) {
-          iter.next().broadcast(removeEntry);
+      StoreLock.readLock().lock();
+      try {
+        synchronized (keyLock(pair)) {
+          forget(record);
+          if (pair != null) {
+            removeEntry = AbstractStoreWatcher.buildRemoveString(DataStore.getTag() + Constants.FS + pair.toString());
+            for (Iterator<AbstractStoreWatcher> iter = Observers.iterator(); iter.hasNext(); ) {
+              iter.next().broadcast(removeEntry);
+            }
+          }
+          DataStore.remove(record);
         }
       }
-      DataStore.remove(record);
+      finally {
+        StoreLock.readLock().unlock();
+      }
     }
   }
 
+  /**
+   * finds the lock on changes to the records with a key.
+   *
+   * @param key is the key field of a record.  It may be null.
+   *
+   * @return the lock for the stripe the key falls in.
+   */
+  private Object keyLock(FieldPair key) {
+    if ((key == null) || (key.FieldValue == null)) {
+      return KeyLocks[0];
+    }
+    return KeyLocks[(key.FieldValue.hashCode() & Integer.MAX_VALUE) % KEY_STRIPES];
+  }
+
   /**
    * changes the contents of an existing GenericRecord.  If a record with the same
    * key exists, then the fields in the request replace those in the existing
@@ -322,17 +382,25 @@ public abstract class AbstractStore
     GenericRecord rec;
     StoredObject so;
     if ((null != keyTag) && (null != (keyValue = changes.findPair(keyTag)))) {
-      if (null == (rec = DataStore.search(keyValue, null))) {
-        addUntrustedRecord(changes);
-        broadcastAdd(changes);
+      StoreLock.readLock().lock();
+      try {
+        synchronized (keyLock(keyValue)) {
+          if (null == (rec = DataStore.search(keyValue, null))) {
+            addUntrustedRecord(changes);
+            broadcastAdd(changes);
+          }
+          else {
+            so = rec.getActiveReference();
+            if (so != null) {
+              FieldInfoStore.cleanseRecord(changes);
+              so.updateDescription(changes);
+            }
+//            broadcastChange(changes);
+          }
+        }
       }
-      else {
-    	  so = rec.getActiveReference();
-    	  if (so != null) {
-    		  FieldInfoStore.cleanseRecord(changes);
-    		  so.updateDescription(changes);
-    	  }
-//        broadcastChange(changes);
+      finally {
+        StoreLock.readLock().unlock();
       }
 //      changes.checkValues(FieldInfoStore);
 //      FieldInfoStore.recordFromXML(changes);
@@ -447,42 +515,50 @@ public abstract class AbstractStore
     StoredObject so;
     FieldPair keyPair;
     String keyTag = FieldInfoStore.getKeyField();
-    RecordVector<GenericRecord> tempStore = DataStore.duplicate();
+    RecordVector<GenericRecord> tempStore;
     String status;
     
-    // preserve the order of records from the edit
-    DataStore.clear();
-    for (Enumeration<GenericRecord> e = trial.elements(); e.hasMoreElements(); ) {
-      edit = e.nextElement();
-      status = edit.getStatus();
-      keyPair = edit.findPair(keyTag);
-      master = tempStore.search(keyPair, null);
-      so = edit.getActiveReference();
-      
-      if (master == null) {
-        // the record was just created, so if it was not also just deleted,
-        // add it to the Store
-        if (!status.equals(GenericRecord.DELETED)) {
-          edit.setStatus(GenericRecord.UNCHANGED);
-          addTrustedRecord(edit);
-        }
-      }
-      else {
-        // determine results of edit
-        if (status.equals(GenericRecord.DELETED)) {
-          so.destructor();
-        }
-        else if (status.equals(GenericRecord.CHANGED)) {
-          edit.setStatus(GenericRecord.UNCHANGED);
-          DataStore.add(master);
-          removeSpecialPairs(edit);
-          so.updateDescription(edit);
+    StoreLock.writeLock().lock();
+    try {
+      tempStore = DataStore.duplicate();
+      // preserve the order of records from the edit
+      forgetImage();
+      DataStore.clear();
+      for (Enumeration<GenericRecord> e = trial.elements(); e.hasMoreElements(); ) {
+        edit = e.nextElement();
+        status = edit.getStatus();
+        keyPair = edit.findPair(keyTag);
+        master = tempStore.search(keyPair, null);
+        so = edit.getActiveReference();
+
+        if (master == null) {
+          // the record was just created, so if it was not also just deleted,
+          // add it to the Store
+          if (!status.equals(GenericRecord.DELETED)) {
+            edit.setStatus(GenericRecord.UNCHANGED);
+            addTrustedRecord(edit);
+          }
         }
-        else if (status.equals(GenericRecord.UNCHANGED)) {
-          DataStore.add(master);
+        else {
+          // determine results of edit
+          if (status.equals(GenericRecord.DELETED)) {
+            so.destructor();
+          }
+          else if (status.equals(GenericRecord.CHANGED)) {
+            edit.setStatus(GenericRecord.UNCHANGED);
+            DataStore.add(master);
+            removeSpecialPairs(edit);
+            so.updateDescription(edit);
+          }
+          else if (status.equals(GenericRecord.UNCHANGED)) {
+            DataStore.add(master);
+          }
         }
       }
     }
+    finally {
+      StoreLock.writeLock().unlock();
+    }
   }
   
   /**
@@ -613,14 +689,22 @@ public abstract class AbstractStore
         log.warn("A " + getDataID() + " record has a blank key");
       }
       else {
-        if ((existing = DataStore.search(recKey, null)) == null) {
-          // no record with the same key exists, so add it
-          rec.getActiveReference().linkDescription(rec);
-          DataStore.add(rec);
-          broadcastAdd(rec);
+        StoreLock.readLock().lock();
+        try {
+          synchronized (keyLock(recKey)) {
+            if ((existing = DataStore.search(recKey, null)) == null) {
+              // no record with the same key exists, so add it
+              rec.getActiveReference().linkDescription(rec);
+              DataStore.add(rec);
+              broadcastAdd(rec);
+            }
+            else {
+              existing.getActiveReference().updateDescription(rec);
+            }
+          }
         }
-        else {
-          existing.getActiveReference().updateDescription(rec);
+        finally {
+          StoreLock.readLock().unlock();
         }
       }
     }
@@ -655,6 +739,16 @@ public abstract class AbstractStore
   public void reNew() {
       FieldInfoStore = new FieldVector(DEFAULT_ATTRIBUTES, FIELD_TAG);
       DataStore = new RecordVector<GenericRecord>(REC_TAG);
+      indexFields();
+      Image.forget(null);
+  }
+
+  /**
+   * indexes the key field of the DataStore, which is what the stores
+   * search on.
+   */
+  private void indexFields() {
+    DataStore.addIndex(FieldInfoStore.getKeyField());
   }
 
   /**
@@ -685,6 +779,31 @@ public abstract class AbstractStore
     return FieldInfoStore.dumpFieldContents();
   }
   
+  /**
+   * locates the tag of a field in the format store from its name in a
+   * String, without copying the name.
+   * @param text is the String holding the name
+   * @param start is the index of the first character of the name
+   * @param end is the index after the last character of the name
+   * @return the tag, as held in the format store, or null if the
+   * format store has no such field
+   */
+  public String findFieldTag(String text, int start, int end) {
+    return FieldInfoStore.findTag(text, start, end);
+  }
+
+  /**
+   * constructs a list of the tags of the fields in the format store.
+   * @return the tags, in the order of the format store
+   */
+  public ArrayList<String> listFieldTags() {
+    ArrayList<String> tags = new ArrayList<String>(FieldInfoStore.size());
+    for (int i = 0; i < FieldInfoStore.size(); ++i) {
+      tags.add(FieldInfoStore.get(i).getKeyField());
+    }
+    return tags;
+  }
+
   /**
    * constructs a list containing the contents of the AbstractStore,
    * one record per line.  The fields in each record are separated by
@@ -695,6 +814,49 @@ public abstract class AbstractStore
     return dumpStore(DataStore);
   }
 
+  /**
+   * is called to retrieve the encoded form of the store, which is kept
+   * up to date as the records change.
+   * @return the StoreImage
+   */
+  public StoreImage getImage() {
+    return Image;
+  }
+
+  /**
+   * forgets the encoded form of a record, because it has changed.
+   * @param record is the record or the part of it that changed.  It must
+   * contain the key field.
+   */
+  private void forget(GenericRecord record) {
+    String keyTag = getKeyTag();
+    Object key = (keyTag == null) ? null : record.findValue(keyTag);
+    if (key instanceof String) {
+      Image.forget((String) key);
+    }
+    else {
+      Image.forget(null);
+    }
+  }
+
+  /**
+   * forgets the encoded form of all the records, because they may have
+   * changed without being announced one at a time (for example, by the
+   * editor).
+   */
+  protected void forgetImage() {
+    Image.forget(null);
+  }
+
+  /**
+   * forgets the encoded form of one record, because what it shows
+   * changed after the change was announced.
+   * @param key is the key of the record
+   */
+  public void forgetImage(String key) {
+    Image.forget(key);
+  }
+
   /**
    * returns the XML id of the DataStore
    * @return the XML id of the data
@@ -736,7 +898,11 @@ public abstract class AbstractStore
    * @param record is the GenericRecord that was (possibly) changed
    */
   public void broadcastChange(GenericRecord record) {
-    String change = AbstractStoreWatcher.buildChangeString(DataStore.getTag() + Constants.FS + record.valueString());
+    forget(record);
+    LogRecord rec = LogRecord.start(Constants.CHANGE_STORE);
+    rec.append(DataStore.getTag()).append(Constants.FS);
+    record.appendValues(rec.getBuffer());
+    String change = rec.finish();
     for (Iterator<AbstractStoreWatcher> iter = Observers.iterator(); iter.hasNext(); ) {
       iter.next().broadcast(change);
     }    
@@ -747,7 +913,11 @@ public abstract class AbstractStore
    * @param record is the GenericRecord that was added
    */
   public void broadcastAdd(GenericRecord record) {
-    String addEntry = AbstractStoreWatcher.buildAddString(getDataID() + Constants.FS + record.valueString());
+    forget(record);
+    LogRecord rec = LogRecord.start(Constants.ADD_TO_STORE);
+    rec.append(getDataID()).append(Constants.FS);
+    record.appendValues(rec.getBuffer());
+    String addEntry = rec.finish();
     for (Iterator<AbstractStoreWatcher> iter = Observers.iterator(); iter.hasNext(); ) {
       iter.next().broadcast(addEntry);
     }    
@@ -759,7 +929,40 @@ public abstract class AbstractStore
    * @param message is the contents of the message
    */
   public void broadcastTimestamp(String tag, String message) {
-    String update = Logger.timeStamp(tag, message);
+    broadcastRecord(Logger.timeStamp(tag, message));
+  }
+
+  /**
+   * constructs a timestamped message about one record and sends it to
+   * all listeners.
+   * @param key is the key of the record the message is about
+   * @param tag is the identity on the message
+   * @param message is the contents of the message
+   */
+  public void broadcastTimestamp(String key, String tag, String message) {
+    broadcastRecord(key, Logger.timeStamp(tag, message));
+  }
+
+  /**
+   * sends a message that has already been timestamped (for example,
+   * by a LogRecord) to all listeners.
+   * @param update is the timestamped message
+   */
+  public void broadcastRecord(String update) {
+    Image.forget(null);
+    for (Iterator<AbstractStoreWatcher> iter = Observers.iterator(); iter.hasNext(); ) {
+      iter.next().broadcast(update);
+    }           
+  }
+
+  /**
+   * sends a message about one record that has already been timestamped
+   * to all listeners.
+   * @param key is the key of the record the message is about
+   * @param update is the timestamped message
+   */
+  public void broadcastRecord(String key, String update) {
+    Image.forget(key);
     for (Iterator<AbstractStoreWatcher> iter = Observers.iterator(); iter.hasNext(); ) {
       iter.next().broadcast(update);
     }           
@@ -809,6 +1012,8 @@ public String setObject(String objName, Object objValue) {
         for (Enumeration<GenericRecord> element = DataStore.elements(); element.hasMoreElements(); ) {
           FieldInfoStore.recordFromXML(element.nextElement());
         }
+        indexFields();
+        DataStore.reindex();
       }
     }
     else if ( (DataStore != null) && (DataStore.getTag() != null) &&
@@ -182,15 +182,28 @@ public class FieldPair {
    * @return the FieldPair as a String
    */
   public String toString() {
+    StringBuilder sb = new StringBuilder();
+    appendTo(sb);
+    return sb.toString();
+  }
+
+  /**
+   * adds the FieldPair to a StringBuilder, in the form produced by
+   * toString(), without creating an intermediate String.
+   * 
+   * @param sb is where the FieldPair is added
+   */
+  public void appendTo(StringBuilder sb) {
     String value;
+    sb.append(FieldTag).append(SEP).append(Constants.QUOTE);
     if (FieldValue != null) {
       value = FieldValue.toString();
       if (Class.class.isInstance(FieldValue)) {
         value = ClassSpec.normalizeClassName(value);
       }
-      return FieldTag + SEP + Constants.QUOTE + value + Constants.QUOTE;
+      sb.append(value);
     }
-    return FieldTag+SEP+"\"\"";
+    sb.append(Constants.QUOTE);
   }
 }
 /* @(#)FieldPair.java */
\ No newline at end of file
@@ -0,0 +1,98 @@
+/* Name: FieldSlot.java
+ *
+ * What;
+ *  This file contains a reference to a field of a GenericRecord by its
+ *  position, so that reading the field does not search the record for
+ *  the field's tag.
+ *
+ * Special Considerations:
+ */
+package cats.layout.store;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ *  This file contains a reference to a field of a GenericRecord by its
+ *  position, so that reading the field does not search the record for
+ *  the field's tag.
+ *  <p>
+ *  The records in a store are laid out in the order of the fields in the
+ *  store's FieldVector (see FieldVector.recordFromXML()), so the position
+ *  of a field (its slot) is the same in all of them.  A FieldSlot does
+ *  not hold a position itself, because the same field may be in a
+ *  different place in another store or after the format is changed.
+ *  Instead, each FieldVector finds the position of a FieldSlot the first
+ *  time it is asked and remembers it until its fields change.  A record
+ *  remembers the FieldVector that laid it out, so
+ *  GenericRecord.findPair(FieldSlot) looks only at that position.  A
+ *  record that was not laid out by a FieldVector (such as a copy for an
+ *  editor) or that has been rearranged since is searched by tag.
+ *  <p>
+ *  A FieldSlot never changes, so one can be shared by all the records
+ *  and threads.
+ *
+ * <p>Title: CATS - Crandic Automated Traffic System</p>
+ * <p>Description: A program for dispatching trains on Pat Lana's
+ * Crandic model railroad.
+ * <p>Copyright: Copyright (c) 2019</p>
+ * <p>Company: </p>
+ * @author Rodney Black
+ * @version $Revision$
+ */
+public final class FieldSlot {
+
+  /**
+   * is the number given to the next FieldSlot created.
+   */
+  private static final AtomicInteger NextId = new AtomicInteger();
+
+  /**
+   * is the tag of the field.
+   */
+  private final String Tag;
+
+  /**
+   * is the number of the FieldSlot, which the FieldVectors use to find
+   * the positions they have resolved.
+   */
+  private final int Id;
+
+  /**
+   * is the constructor.
+   *
+   * @param tag is the tag of the field.
+   */
+  public FieldSlot(String tag) {
+    Tag = tag;
+    Id = NextId.getAndIncrement();
+  }
+
+  /**
+   * retrieves the tag of the field.
+   *
+   * @return the tag.
+   */
+  public String getTag() {
+    return Tag;
+  }
+
+  /**
+   * retrieves the number of the FieldSlot.
+   *
+   * @return the number, which is unique to this FieldSlot.
+   */
+  int getId() {
+    return Id;
+  }
+
+  /**
+   * determines if a tag is the tag of the field.
+   *
+   * @param tag is the tag.
+   * @return true if it is.
+   */
+  boolean matches(String tag) {
+    return (tag == Tag) || Tag.equals(tag);
+  }
+}
+/* @(#)FieldSlot.java */
@@ -7,6 +7,7 @@
 package cats.layout.store;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.Iterator;
 import java.util.Vector;
@@ -40,6 +41,13 @@ public class FieldVector
    * is the tag in the XML file for identifying Vector components
    */
   private String RecordTag;
+
+  /**
+   * is the tag of each FieldInfo, for finding a FieldInfo without
+   * creating Strings.  It is rebuilt when FieldInfos are added or
+   * removed.
+   */
+  private transient volatile TagIndex Index;
   
   /**
    * is the no-argument constructor
@@ -181,16 +189,142 @@ public class FieldVector
 //    if (index >= 0) {
 //      return elementAt(index);
 //    }
+    TagIndex index = getIndex();
     String fieldName;
-    for (FieldInfo element : this) {
-      fieldName = element.getKeyField();
-      if ((fieldName != null) && fieldName.equals(match)) {
-        return element;
+    for (int i = 0; i < index.Tags.length; ++i) {
+      fieldName = index.Tags[i];
+      if ((fieldName == match) || ((fieldName != null) && fieldName.equals(match))) {
+        return index.Infos[i];
       }
     }
     return null;
   }
 
+  /**
+   * searches the FieldInfos for one whose name is part of a String,
+   * without copying the part.
+   *
+   * @param text is the String holding the name.
+   * @param start is the index of the first character of the name.
+   * @param end is the index after the last character of the name.
+   *
+   * @return the name of the FieldInfo (which can be compared to other
+   * names from the FieldInfo by identity) or null, if there is none.
+   */
+  public String findTag(String text, int start, int end) {
+    TagIndex index = getIndex();
+    String fieldName;
+    int length = end - start;
+    for (int i = 0; i < index.Tags.length; ++i) {
+      fieldName = index.Tags[i];
+      if ((fieldName != null) && (fieldName.length() == length) &&
+          text.regionMatches(start, fieldName, 0, length)) {
+        return fieldName;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * retrieves the names of the FieldInfos, building them if FieldInfos
+   * have been added or removed since they were last built.
+   *
+   * @return the names.
+   */
+  private TagIndex getIndex() {
+    TagIndex index = Index;
+    if ((index == null) || (index.Mod != modCount)) {
+      synchronized (this) {
+        index = new TagIndex(modCount, size());
+        for (int i = 0; i < index.Infos.length; ++i) {
+          index.Infos[i] = get(i);
+          index.Tags[i] = index.Infos[i].getKeyField();
+        }
+        Index = index;
+      }
+    }
+    return index;
+  }
+
+  /**
+   * is the name of each FieldInfo, as of a change to the FieldVector.
+   */
+  private static class TagIndex {
+
+    /**
+     * is the modification count of the FieldVector when the names were
+     * built.
+     */
+    final int Mod;
+
+    /**
+     * are the FieldInfos.
+     */
+    final FieldInfo[] Infos;
+
+    /**
+     * are their names.
+     */
+    final String[] Tags;
+
+    /**
+     * marks a FieldSlot whose position has not been looked for.
+     */
+    static final int UNRESOLVED = Integer.MIN_VALUE;
+
+    /**
+     * are the positions of the FieldSlots that have been resolved, by
+     * FieldSlot number.  It is replaced, never changed, so it can be read
+     * without a lock.
+     */
+    volatile int[] Positions = new int[0];
+
+    /**
+     * is the ctor.
+     *
+     * @param mod is the modification count of the FieldVector.
+     * @param size is the number of FieldInfos.
+     */
+    TagIndex(int mod, int size) {
+      Mod = mod;
+      Infos = new FieldInfo[size];
+      Tags = new String[size];
+    }
+
+    /**
+     * looks for the position of a FieldSlot and remembers it.
+     *
+     * @param slot identifies the field.
+     *
+     * @return the position or -1, if there is no such field.
+     */
+    synchronized int resolve(FieldSlot slot) {
+      int id = slot.getId();
+      int[] positions = Positions;
+      int position = -1;
+      if ((id < positions.length) && (positions[id] != UNRESOLVED)) {
+        return positions[id];
+      }
+      for (int i = 0; i < Tags.length; ++i) {
+        if ((Tags[i] != null) && slot.matches(Tags[i])) {
+          position = i;
+          break;
+        }
+      }
+      int known = positions.length;
+      if (id >= known) {
+        positions = Arrays.copyOf(positions, id + 1);
+        Arrays.fill(positions, known, positions.length, UNRESOLVED);
+      }
+      else {
+        positions = positions.clone();
+      }
+      positions[id] = position;
+      Positions = positions;
+      return position;
+    }
+  }
+
   /**
    * locates the index of the key field.
    *
@@ -259,6 +393,7 @@ public class FieldVector
 //        ((StoredObject) pair.FieldValue).linkDescription(rec);
 //      }
     }
+    rec.setLayout(this);
 //    if (keyIndex >= 0) {
 //      rec.elementAt(keyIndex).FieldValue = key;
 //    }
@@ -423,14 +558,51 @@ public class FieldVector
       // of the value to the actual value.
       cleanseRecord(rec);
       
-      // The second phase adds fields that are missing
-      for (Iterator<FieldInfo> element = iterator(); element.hasNext(); ) {
-          desc = element.next();
+      // The second phase adds fields that are missing and puts the fields
+      // in slot order
+      FieldPair[] arranged = new FieldPair[size()];
+      boolean inOrder = (rec.size() == arranged.length);
+      for (int slot = 0; slot < arranged.length; ++slot) {
+          desc = get(slot);
           pair = rec.findPair(desc.getKeyField());
           if (pair == null) {
-              rec.add(desc.createPair());
+              pair = desc.createPair();
+              inOrder = false;
+          }
+          else if (inOrder && (rec.get(slot) != pair)) {
+              inOrder = false;
+          }
+          arranged[slot] = pair;
+      }
+      if (!inOrder) {
+          synchronized (rec) {
+              rec.clear();
+              for (int slot = 0; slot < arranged.length; ++slot) {
+                  rec.add(arranged[slot]);
+              }
           }
       }
+      rec.setLayout(this);
+  }
+
+  /**
+   * finds the position of a field in the records laid out by this
+   * FieldVector.  The position is resolved the first time a FieldSlot is
+   * asked about and kept until FieldInfos are added or removed.
+   *
+   * @param slot identifies the field.
+   *
+   * @return the position or -1, if there is no such field.
+   */
+  int slotOf(FieldSlot slot) {
+    TagIndex index = getIndex();
+    int[] positions = index.Positions;
+    int id = slot.getId();
+    int position;
+    if ((id < positions.length) && ((position = positions[id]) != TagIndex.UNRESOLVED)) {
+      return position;
+    }
+    return index.resolve(slot);
   }
 
   /**
@@ -45,6 +45,20 @@ public class GenericRecord
    * is the TAG in the XML file for identifying this kind of Record.
    */
   protected String XmlTag;
+
+  /**
+   * is the indexed RecordVector holding the GenericRecord, which is told
+   * when a value is replaced.  It is null if the GenericRecord is not in
+   * an indexed RecordVector.
+   */
+  private transient RecordVector<?> Owner;
+
+  /**
+   * is the FieldVector that put the fields in its order, so that
+   * findPair(FieldSlot) can look only at the field's position.  It is
+   * null if the fields are in no known order.
+   */
+  private transient volatile FieldVector Layout;
   
   /**
    * is the tag on the StoredObject reference field.  This field
@@ -85,6 +99,16 @@ public class GenericRecord
    * the GenericRecord was just created
    */
   public static final String CREATED = "CREATED";
+
+  /**
+   * identifies the StoredObject reference field, for finding it by slot.
+   */
+  private static final FieldSlot STORED_OBJECT_SLOT = new FieldSlot(STORED_OBJECT);
+
+  /**
+   * identifies the status field, for finding it by slot.
+   */
+  private static final FieldSlot STATUS_SLOT = new FieldSlot(STATUS);
   
   /**
    * is another constructor.
@@ -132,8 +156,13 @@ public class GenericRecord
 //        match = true;
 //      }
 //    }
+    Object oldValue;
     if (oldPair != null) {
+      oldValue = oldPair.FieldValue;
       oldPair.FieldValue = newPair.FieldValue;
+      if (Owner != null) {
+        Owner.valueChanged(this, oldPair.FieldTag, oldValue);
+      }
     }
   }
 
@@ -149,13 +178,18 @@ public class GenericRecord
   public boolean replaceValue(String tag, Object value) {
     FieldPair pair = findPair(tag);
     boolean changed = true;
+    Object oldValue = null;
     if (pair == null) {
       add(new FieldPair(tag, value));
     }
     else {
       changed = !value.equals(pair.FieldValue);
+      oldValue = pair.FieldValue;
       pair.FieldValue = value;
     }
+    if (changed && (Owner != null)) {
+      Owner.valueChanged(this, tag, oldValue);
+    }
     // This is the place to broadcast the change
     return changed;
   }
@@ -199,6 +233,62 @@ public class GenericRecord
     return null;
   }
 
+  /**
+   * retrieves the FieldPair in a slot.  If the GenericRecord was laid out
+   * by a FieldVector, only the slot's position in that FieldVector is
+   * looked at.  Otherwise, or if the FieldPair there does not have the
+   * slot's tag, the GenericRecord is searched for the tag.
+   *
+   * @param slot is the slot of the FieldPair being requested.
+   *
+   * @return the FieldPair with the slot's tag or null, if none is found.
+   */
+  public FieldPair findPair(FieldSlot slot) {
+    FieldVector layout = Layout;
+    // resolved outside the lock on the record, so that the FieldVector
+    // lock is never taken while holding it
+    int index = (layout == null) ? -1 : layout.slotOf(slot);
+    FieldPair pair;
+    synchronized (this) {
+      if ((index >= 0) && (index < elementCount) &&
+          slot.matches((pair = (FieldPair) elementData[index]).FieldTag)) {
+        return pair;
+      }
+      for (index = 0; index < elementCount; ++index) {
+        pair = (FieldPair) elementData[index];
+        if (slot.matches(pair.FieldTag)) {
+          return pair;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * remembers the FieldVector that put the fields in its order.
+   *
+   * @param layout is the FieldVector.
+   */
+  void setLayout(FieldVector layout) {
+    Layout = layout;
+  }
+
+  /**
+   * retrieves the value of the FieldPair in a slot.
+   *
+   * @param slot is the slot of the desired Field.
+   *
+   * @return the Value of the Field or null, if the GenericRecord does not
+   * have it.
+   */
+  public Object findValue(FieldSlot slot) {
+    FieldPair pair = findPair(slot);
+    if (pair != null) {
+      return pair.FieldValue;
+    }
+    return null;
+  }
+
   /**
    * searches for a FieldPair with a particular Tag, then returns the value
    * Field from the pair.
@@ -221,7 +311,7 @@ public class GenericRecord
    * @return the active object.
    */
   public StoredObject getActiveReference() {
-    return (StoredObject) findValue(STORED_OBJECT);
+    return (StoredObject) findValue(STORED_OBJECT_SLOT);
   }
 
   /**
@@ -230,7 +320,7 @@ public class GenericRecord
    * @param status describes the status of the GenericRecord due to editing
    */
   public void setStatus(String status) {
-    findPair(STATUS).FieldValue = status;
+    findPair(STATUS_SLOT).FieldValue = status;
   }
 
   /**
@@ -239,7 +329,7 @@ public class GenericRecord
    * @return the edit status
    */
   public String getStatus() {
-    return (String) findValue(STATUS);
+    return (String) findValue(STATUS_SLOT);
   }
 
   /**
@@ -329,19 +419,29 @@ public class GenericRecord
    * @return the GenericRecord as a String
    */
   public String valueString() {
-    String result = new String();
+    StringBuilder result = new StringBuilder();
+    appendValues(result);
+    return result.toString();
+  }
+
+  /**
+   * adds the record to a StringBuilder, in the form produced by
+   * valueString(), without creating intermediate Strings.
+   * 
+   * @param sb is where the record is added
+   */
+  public void appendValues(StringBuilder sb) {
     FieldPair pair;
     for (Iterator<FieldPair> iter = iterator(); ;){
       pair = iter.next();
       if (!FieldInfo.KEY_TAG.equals(STORED_OBJECT)) {
-        result = result.concat(pair.toString());
+        pair.appendTo(sb);
       }
       if (!iter.hasNext()) {
         break;
       }
-      result = result.concat(Constants.FS_STRING);
+      sb.append(Constants.FS);
     }   
-    return result;
   }
 
   /**
@@ -457,6 +557,27 @@ public class GenericRecord
     return result;
   }
   
+  /**
+   * is called by an indexed RecordVector when the GenericRecord is added
+   * to it.
+   * @param owner is the RecordVector
+   */
+  void setOwner(RecordVector<?> owner) {
+    Owner = owner;
+  }
+
+  /**
+   * is called by an indexed RecordVector when the GenericRecord is removed
+   * from it.
+   * @param owner is the RecordVector.  If the GenericRecord has been
+   * added to another since, the other is kept.
+   */
+  void releaseOwner(RecordVector<?> owner) {
+    if (Owner == owner) {
+      Owner = null;
+    }
+  }
+
   /**
    * makes a copy of this GenericRecord, except Saved is false.
    * The copy is intended to be used by the editor.
@@ -4,10 +4,16 @@
  *  This file is a specialized class derived from Vector, that is a Vector
  *  of Vectors.  Each member Vector contains FieldPairs, where the Tag is
  *  the name of a Field and the Value piece is the Value of the Field.
+ *
+ *  Fields can be indexed, so that searching for a record by the value
+ *  of an indexed field does not examine every record.
  */
 package cats.layout.store;
 
+import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Vector;
 import cats.layout.store.FieldPair;
 import cats.layout.xml.XMLEleFactory;
@@ -18,6 +24,18 @@ import cats.layout.xml.XMLReader;
  *  This file is a specialized class derived from Vector, that is a Vector
  *  of Vectors.  Each member Vector contains FieldPairs, where the Tag is
  *  the name of a Field and the Value piece is the Value of the Field.
+ * <p>
+ *  A field can be indexed by addIndex().  The index of a field maps each
+ *  value to the records holding it, so search() on an indexed field
+ *  looks at only those records.  The index is kept up to date as records
+ *  are added to and removed from the RecordVector.  Other changes to the
+ *  Vector (such as inserting in the middle) are caught through modCount
+ *  and cause the indexes to be rebuilt when next used.  A record in an
+ *  indexed RecordVector tells the RecordVector when the value of one of
+ *  its fields is replaced (replacePair() and replaceValue()), so the
+ *  indexes follow changes to the records.  A record can be in only one
+ *  indexed RecordVector; copies made for editing (makeCopy() and
+ *  duplicate()) are not indexed.
  * <p>Title: CATS - Computer Automated Traffic System</p>
  * <p>Description: A program for dispatching trains on Pat Lana's
  * Crandic model railroad.
@@ -50,6 +68,19 @@ public class RecordVector<T extends GenericRecord>
    * the StoreTableModel.
    */
   protected SelectionStrategy MyFilter;
+
+  /**
+   * are the indexes, by field tag.  Each maps a value to the records
+   * holding that value in the field, in the order they were added.  It
+   * is null if no fields are indexed.
+   */
+  private HashMap<String, HashMap<Object, ArrayList<GenericRecord>>> Indexes;
+
+  /**
+   * is the modCount of the Vector when the indexes were last brought up
+   * to date.
+   */
+  private int IndexedMod;
   
   /**
    * constructor with known size.
@@ -144,8 +175,25 @@ public class RecordVector<T extends GenericRecord>
   @SuppressWarnings("unchecked")
 public T search(FieldPair request, GenericRecord start) {
     T first;
-    Enumeration<GenericRecord> e = elements();
+    Enumeration<GenericRecord> e;
+    if ((start == null) && (request.FieldValue != null)) {
+      synchronized (this) {
+        HashMap<Object, ArrayList<GenericRecord>> index = getIndex(request.FieldTag);
+        if (index != null) {
+          ArrayList<GenericRecord> holders = index.get(request.FieldValue);
+          if (holders != null) {
+            for (GenericRecord rec : holders) {
+              if (rec.doesInclude(request)) {
+                return (T) rec;
+              }
+            }
+          }
+          return null;
+        }
+      }
+    }
 
+    e = elements();
     if (start != null) {
       while (e.hasMoreElements()) {
         first = (T) e.nextElement();
@@ -163,6 +211,252 @@ public T search(FieldPair request, GenericRecord start) {
     return null;
   }
 
+  /**
+   * indexes a field.  Indexing a field that is already indexed does
+   * nothing.
+   * 
+   * @param tag is the tag of the field.  If it is null, nothing is done.
+   */
+  public synchronized void addIndex(String tag) {
+    if (tag != null) {
+      if (Indexes == null) {
+        Indexes = new HashMap<String, HashMap<Object, ArrayList<GenericRecord>>>();
+      }
+      if (!Indexes.containsKey(tag)) {
+        Indexes.put(tag, new HashMap<Object, ArrayList<GenericRecord>>());
+        IndexedMod = modCount - 1;
+      }
+    }
+  }
+
+  /**
+   * rebuilds the indexes when next used.  This is needed after the values
+   * in the records have been changed other than through replacePair() or
+   * replaceValue().
+   */
+  public synchronized void reindex() {
+    IndexedMod = modCount - 1;
+  }
+
+  /**
+   * is called to determine if a field is indexed.
+   * 
+   * @param tag is the tag of the field
+   * @return true if it is
+   */
+  public synchronized boolean isIndexed(String tag) {
+    return (Indexes != null) && Indexes.containsKey(tag);
+  }
+
+  /**
+   * retrieves the index on a field, rebuilding the indexes if the Vector
+   * has changed in a way they did not follow.
+   * 
+   * @param tag is the tag on the field
+   * @return the index or null, if the field is not indexed
+   */
+  private HashMap<Object, ArrayList<GenericRecord>> getIndex(String tag) {
+    if (Indexes == null) {
+      return null;
+    }
+    if (IndexedMod != modCount) {
+      for (Iterator<HashMap<Object, ArrayList<GenericRecord>>> iter =
+        Indexes.values().iterator(); iter.hasNext(); ) {
+        iter.next().clear();
+      }
+      for (GenericRecord rec : this) {
+        file(rec);
+      }
+      IndexedMod = modCount;
+    }
+    return Indexes.get(tag);
+  }
+
+  /**
+   * is called to determine if the indexes are up to date.
+   * 
+   * @return true if there are indexes and the Vector has not changed
+   * since they were brought up to date.
+   */
+  private boolean isCurrent() {
+    return (Indexes != null) && (IndexedMod == modCount);
+  }
+
+  /**
+   * adds a record to the indexes and claims it, so that it reports
+   * changes to its values.
+   * 
+   * @param rec is the record
+   */
+  private void file(GenericRecord rec) {
+    FieldPair pair;
+    for (Iterator<String> iter = Indexes.keySet().iterator(); iter.hasNext(); ) {
+      String tag = iter.next();
+      if (((pair = rec.findPair(tag)) != null) && (pair.FieldValue != null)) {
+        fileValue(Indexes.get(tag), pair.FieldValue, rec);
+      }
+    }
+    rec.setOwner(this);
+  }
+
+  /**
+   * removes a record from the indexes and releases it.
+   * 
+   * @param rec is the record
+   */
+  private void unfile(GenericRecord rec) {
+    FieldPair pair;
+    for (Iterator<String> iter = Indexes.keySet().iterator(); iter.hasNext(); ) {
+      String tag = iter.next();
+      if (((pair = rec.findPair(tag)) != null) && (pair.FieldValue != null)) {
+        unfileValue(Indexes.get(tag), pair.FieldValue, rec);
+      }
+    }
+    rec.releaseOwner(this);
+  }
+
+  /**
+   * adds a record to the list for a value in an index.
+   * 
+   * @param index is the index
+   * @param value is the value
+   * @param rec is the record
+   */
+  private static void fileValue(HashMap<Object, ArrayList<GenericRecord>> index,
+      Object value, GenericRecord rec) {
+    ArrayList<GenericRecord> holders = index.get(value);
+    if (holders == null) {
+      holders = new ArrayList<GenericRecord>(1);
+      index.put(value, holders);
+    }
+    holders.add(rec);
+  }
+
+  /**
+   * removes a record from the list for a value in an index.
+   * 
+   * @param index is the index
+   * @param value is the value
+   * @param rec is the record
+   * @return true if the record was in the list
+   */
+  private static boolean unfileValue(HashMap<Object, ArrayList<GenericRecord>> index,
+      Object value, GenericRecord rec) {
+    ArrayList<GenericRecord> holders = index.get(value);
+    if (holders != null) {
+      for (int i = 0; i < holders.size(); ++i) {
+        if (holders.get(i) == rec) {
+          holders.remove(i);
+          if (holders.isEmpty()) {
+            index.remove(value);
+          }
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * is called by a record in the RecordVector when the value of one of
+   * its fields has been replaced.
+   * 
+   * @param rec is the record
+   * @param tag is the tag of the field
+   * @param oldValue is the value before it was replaced
+   */
+  synchronized void valueChanged(GenericRecord rec, String tag, Object oldValue) {
+    HashMap<Object, ArrayList<GenericRecord>> index;
+    Object newValue;
+    if (isCurrent() && ((index = Indexes.get(tag)) != null)) {
+      newValue = rec.findValue(tag);
+      if ((oldValue == null) ? (newValue == null) : oldValue.equals(newValue)) {
+        return;
+      }
+      if ((oldValue == null) ? contains(rec) : unfileValue(index, oldValue, rec)) {
+        if (newValue != null) {
+          fileValue(index, newValue, rec);
+        }
+      }
+    }
+  }
+
+  /*
+   * adds a record to the end of the RecordVector and to the indexes.
+   */
+  public synchronized boolean add(GenericRecord rec) {
+    boolean current = isCurrent();
+    super.add(rec);
+    if (current) {
+      file(rec);
+      IndexedMod = modCount;
+    }
+    return true;
+  }
+
+  /*
+   * adds a record to the end of the RecordVector and to the indexes.
+   */
+  public synchronized void addElement(GenericRecord rec) {
+    boolean current = isCurrent();
+    super.addElement(rec);
+    if (current) {
+      file(rec);
+      IndexedMod = modCount;
+    }
+  }
+
+  /*
+   * removes a record from the RecordVector and the indexes.  remove(Object)
+   * comes through here.
+   */
+  public synchronized boolean removeElement(Object obj) {
+    boolean current = isCurrent();
+    boolean removed = super.removeElement(obj);
+    if (removed && current) {
+      unfile((GenericRecord) obj);
+      IndexedMod = modCount;
+    }
+    return removed;
+  }
+
+  /*
+   * removes all records from the RecordVector and empties the indexes.
+   * clear() comes through here.
+   */
+  public synchronized void removeAllElements() {
+    if (Indexes != null) {
+      for (GenericRecord rec : this) {
+        rec.releaseOwner(this);
+      }
+      for (Iterator<HashMap<Object, ArrayList<GenericRecord>>> iter =
+        Indexes.values().iterator(); iter.hasNext(); ) {
+        iter.next().clear();
+      }
+    }
+    super.removeAllElements();
+    IndexedMod = modCount;
+  }
+
+  /*
+   * replaces a record.  It does not change modCount, so the indexes are
+   * marked as needing to be rebuilt.
+   */
+  public synchronized GenericRecord set(int index, GenericRecord rec) {
+    GenericRecord old = super.set(index, rec);
+    IndexedMod = modCount - 1;
+    return old;
+  }
+
+  /*
+   * replaces a record.  It does not change modCount, so the indexes are
+   * marked as needing to be rebuilt.
+   */
+  public synchronized void setElementAt(GenericRecord rec, int index) {
+    super.setElementAt(rec, index);
+    IndexedMod = modCount - 1;
+  }
+
   /**
    * is called by the TableModel to query if a GenericRecord should be
    * displayed or not.
@@ -0,0 +1,143 @@
+/* Name: StoreImage.java
+ *
+ * What:
+ *  This file contains the encoded form of each record in an AbstractStore,
+ *  as sent to the network clients, so that the contents of the store can
+ *  be sent to a client without formatting every record each time.
+ *
+ * Special Considerations:
+ */
+package cats.layout.store;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+
+import cats.common.Constants;
+
+/**
+ *  This file contains the encoded form of each record in an AbstractStore,
+ *  as sent to the network clients, so that the contents of the store can
+ *  be sent to a client without formatting every record each time.
+ *  <p>
+ *  The records are remembered by key.  When the store announces a change
+ *  to a record, the record is forgotten and encoded again the next time
+ *  it is written.  Announcements that do not identify a record forget
+ *  all the records.  The order of the records is always that of the
+ *  store, and the field descriptions are not cached, because they are
+ *  few.
+ * <p>Title: CATS - Crandic Automated Traffic System</p>
+ * <p>Description: A program for dispatching trains on Pat Lana's
+ * Crandic model railroad.
+ * <p>Copyright: Copyright (c) 2019</p>
+ * <p>Company: </p>
+ * @author Rodney Black
+ * @version $Revision$
+ */
+public class StoreImage {
+
+  /**
+   * is the store.
+   */
+  private final AbstractStore Store;
+
+  /**
+   * are the encoded records, by key.  An encoded record is the data
+   * identifier, a field separator and the record's tag=value pairs.
+   */
+  private final HashMap<String, byte[]> Records =
+    new HashMap<String, byte[]>();
+
+  /**
+   * is the number of times records have been forgotten.  It changes
+   * whenever the contents of the store may have changed.
+   */
+  private long Version;
+
+  /**
+   * is the ctor.
+   *
+   * @param store is the store whose records are cached.
+   */
+  StoreImage(AbstractStore store) {
+    Store = store;
+  }
+
+  /**
+   * forgets the encoded form of a record.
+   *
+   * @param key is the key of the record, or null to forget all of them.
+   */
+  synchronized void forget(String key) {
+    ++Version;
+    if (key == null) {
+      Records.clear();
+    }
+    else {
+      Records.remove(key);
+    }
+  }
+
+  /**
+   * is called to learn if the store may have changed.
+   *
+   * @return a number that is different after every change.
+   */
+  public synchronized long getVersion() {
+    return Version;
+  }
+
+  /**
+   * writes the store, one line per field description and one per
+   * record, in the form sent by TrainStatServer.dumpAllStores().
+   *
+   * @param out is where the lines are written.
+   * @param prefix is the encoded tag and time stamp that start each line.
+   * @param terminator is the encoded line terminator.
+   */
+  public synchronized void write(ByteArrayOutputStream out, byte[] prefix,
+      byte[] terminator) {
+    String storeId = Store.getFieldID() + Constants.FS;
+    String keyTag = Store.getKeyTag();
+    RecordVector<GenericRecord> data = Store.DataStore;
+    ArrayList<String> fields = Store.dumpFieldContents();
+    GenericRecord rec;
+    Object key;
+    byte[] image;
+    for (Iterator<String> iter = fields.iterator(); iter.hasNext(); ) {
+      writeLine(out, prefix, (storeId + iter.next()).getBytes(), terminator);
+    }
+    storeId = Store.getDataID() + Constants.FS_STRING;
+    for (int r = 0; r < data.size(); ++r) {
+      rec = data.get(r);
+      key = (keyTag == null) ? null : rec.findValue(keyTag);
+      if (key instanceof String) {
+        if ((image = Records.get(key)) == null) {
+          image = (storeId + rec.toString()).getBytes();
+          Records.put((String) key, image);
+        }
+      }
+      else {
+        image = (storeId + rec.toString()).getBytes();
+      }
+      writeLine(out, prefix, image, terminator);
+    }
+  }
+
+  /**
+   * writes one line.
+   *
+   * @param out is where the line is written.
+   * @param prefix is the start of the line.
+   * @param body is the encoded record.
+   * @param terminator is the end of the line.
+   */
+  private static void writeLine(ByteArrayOutputStream out, byte[] prefix,
+      byte[] body, byte[] terminator) {
+    out.write(prefix, 0, prefix.length);
+    out.write(body, 0, body.length);
+    out.write(terminator, 0, terminator.length);
+  }
+}
+/* @(#)StoreImage.java */
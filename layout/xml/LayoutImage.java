@@ -0,0 +1,539 @@
+/*
+ * Name: LayoutImage.java
+ *
+ * What:
+ *   This class is a compact binary copy of a parsed XML layout
+ *   description, which can be fed to the XMLReader faster than the
+ *   XML file can be parsed.
+ */
+package cats.layout.xml;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * is a compact binary copy of a parsed XML layout description.  It
+ * records what the SAX parser told the XMLReader: the Elements, their
+ * attributes and their text, in order, with the line each came from.
+ * When the layout is loaded again and the XML file has not changed (its
+ * SHA-256 digest is the same as the one in the image), the image is
+ * played back through the XMLReader instead of parsing the XML.  The
+ * factories see exactly the same calls, so they build the same objects.
+ * <p>
+ * The image does not hold the objects themselves; they refer to JMRI,
+ * Swing and each other in ways that cannot be saved.  What it saves is
+ * reading, tokenizing and decoding the XML file.  Every name and value
+ * is stored once, in a table of Strings, and the Elements refer to the
+ * table by number.
+ * <p>
+ * The image is kept next to the XML file, with ".cache" added to its
+ * name.  An image that cannot be read, is for another version of this
+ * format, or was made from different XML is ignored.
+ * <p>Title: CATS - Crandic Automated Traffic System</p>
+ * <p>Description: A program for dispatching trains on Pat Lana's
+ * Crandic model railroad.
+ * <p>Copyright: Copyright (c) 2019</p>
+ * <p>Company: </p>
+ * @author Rodney Black
+ * @version $Revision$
+ */
+public class LayoutImage {
+
+  /**
+   * is added to the name of the XML file to name its image.
+   */
+  public static final String SUFFIX = ".cache";
+
+  /**
+   * identifies an image file ("CATS").
+   */
+  private static final int MAGIC = 0x43415453;
+
+  /**
+   * is the version of the image format.
+   */
+  private static final int FORMAT = 1;
+
+  /**
+   * are the kinds of records in an image.
+   */
+  private static final int START = 1;
+  private static final int TEXT = 2;
+  private static final int END = 3;
+
+  /**
+   * is the digest of the XML file.
+   */
+  private final byte[] Digest;
+
+  /**
+   * are the Strings in the image.
+   */
+  private final ArrayList<String> Strings = new ArrayList<String>();
+
+  /**
+   * locates a String in Strings, while recording.
+   */
+  private HashMap<String, Integer> Index;
+
+  /**
+   * are the records, while recording.
+   */
+  private ByteArrayOutputStream Records;
+
+  /**
+   * are the records, after being read.
+   */
+  private byte[] Events;
+
+  /**
+   * is the text of the current Element, while recording.
+   */
+  private StringBuilder Text;
+
+  /**
+   * is the constructor for recording a parse.
+   *
+   * @param digest is the digest of the XML file being parsed.
+   */
+  LayoutImage(byte[] digest) {
+    Digest = digest;
+    Index = new HashMap<String, Integer>();
+    Records = new ByteArrayOutputStream(64 * 1024);
+    Text = new StringBuilder();
+  }
+
+  /**
+   * is the constructor for an image read from a file.
+   *
+   * @param digest is the digest of the XML file.
+   * @param strings are the Strings.
+   * @param events are the records.
+   */
+  private LayoutImage(byte[] digest, ArrayList<String> strings,
+      byte[] events) {
+    Digest = digest;
+    Strings.addAll(strings);
+    Events = events;
+  }
+
+  /**
+   * computes the SHA-256 digest of a file.
+   *
+   * @param file is the file.
+   * @return the digest or null, if it could not be computed.
+   */
+  static byte[] digest(File file) {
+    byte[] buffer = new byte[64 * 1024];
+    InputStream in = null;
+    MessageDigest md;
+    int count;
+    try {
+      md = MessageDigest.getInstance("SHA-256");
+      in = new FileInputStream(file);
+      while ((count = in.read(buffer)) > 0) {
+        md.update(buffer, 0, count);
+      }
+      return md.digest();
+    }
+    catch (NoSuchAlgorithmException nsae) {
+      return null;
+    }
+    catch (IOException ioe) {
+      return null;
+    }
+    finally {
+      if (in != null) {
+        try {
+          in.close();
+        }
+        catch (IOException ignore) {
+        }
+      }
+    }
+  }
+
+  /**
+   * constructs the name of the image of an XML file.
+   *
+   * @param xml is the XML file.
+   * @return the image file.
+   */
+  static File imageFile(File xml) {
+    return new File(xml.getPath() + SUFFIX);
+  }
+
+  /**
+   * records the start of an Element.
+   *
+   * @param qualifiedName is the Element's name.
+   * @param attributes are its attributes.
+   * @param line is the line it is on.
+   */
+  void startElement(String qualifiedName, Attributes attributes, int line) {
+    int count = (attributes == null) ? 0 : attributes.getLength();
+    flushText(line);
+    Records.write(START);
+    writeNumber(line);
+    writeNumber(intern(qualifiedName));
+    writeNumber(count);
+    for (int a = 0; a < count; ++a) {
+      writeNumber(intern(attributes.getQName(a)));
+      writeNumber(intern(attributes.getValue(a)));
+    }
+  }
+
+  /**
+   * records some of the text of an Element.
+   *
+   * @param textChars holds the text.
+   * @param textStart is where the text starts.
+   * @param textLength is how many characters there are.
+   */
+  void characters(char textChars[], int textStart, int textLength) {
+    Text.append(textChars, textStart, textLength);
+  }
+
+  /**
+   * records the end of an Element.
+   *
+   * @param qualifiedName is the Element's name.
+   * @param line is the line it is on.
+   */
+  void endElement(String qualifiedName, int line) {
+    flushText(line);
+    Records.write(END);
+    writeNumber(line);
+    writeNumber(intern(qualifiedName));
+  }
+
+  /**
+   * records the text collected since the last Element started or ended.
+   * The XMLReader trims text and ignores it if it is blank, so only
+   * the trimmed text is kept.
+   *
+   * @param line is the line the text ended on.
+   */
+  private void flushText(int line) {
+    String text = Text.toString().trim();
+    Text.setLength(0);
+    if (text.length() > 0) {
+      Records.write(TEXT);
+      writeNumber(line);
+      writeNumber(intern(text));
+    }
+  }
+
+  /**
+   * finds the number of a String in the String table, adding it if it
+   * is not there.
+   *
+   * @param s is the String.
+   * @return its number.
+   */
+  private int intern(String s) {
+    Integer number = Index.get(s);
+    if (number == null) {
+      number = Integer.valueOf(Strings.size());
+      Strings.add(s);
+      Index.put(s, number);
+    }
+    return number.intValue();
+  }
+
+  /**
+   * writes a non-negative number, 7 bits to a byte, with the high bit
+   * set on all but the last byte.
+   *
+   * @param n is the number.
+   */
+  private void writeNumber(int n) {
+    while ((n & ~0x7f) != 0) {
+      Records.write((n & 0x7f) | 0x80);
+      n >>>= 7;
+    }
+    Records.write(n);
+  }
+
+  /**
+   * writes the image to a file.  It is written under a temporary name
+   * and renamed, so a partial image is never found.
+   *
+   * @param image is the file.
+   * @return true if it was written.
+   */
+  boolean write(File image) {
+    File partial = new File(image.getPath() + ".part");
+    DataOutputStream out = null;
+    byte[] events = Records.toByteArray();
+    byte[] chars;
+    boolean success = false;
+    try {
+      out = new DataOutputStream(new BufferedOutputStream(
+          new FileOutputStream(partial), 64 * 1024));
+      out.writeInt(MAGIC);
+      out.writeInt(FORMAT);
+      out.writeInt(Digest.length);
+      out.write(Digest);
+      out.writeInt(Strings.size());
+      for (int s = 0; s < Strings.size(); ++s) {
+        chars = Strings.get(s).getBytes("UTF-8");
+        out.writeInt(chars.length);
+        out.write(chars);
+      }
+      out.writeInt(events.length);
+      out.write(events);
+      out.close();
+      out = null;
+      if (image.exists() && !image.delete()) {
+        log.info("Could not replace " + image);
+      }
+      else {
+        success = partial.renameTo(image);
+      }
+    }
+    catch (IOException ioe) {
+      log.info("Could not write " + image + ": " + ioe.getMessage());
+    }
+    finally {
+      if (out != null) {
+        try {
+          out.close();
+        }
+        catch (IOException ignore) {
+        }
+      }
+    }
+    if (!success && partial.exists() && !partial.delete()) {
+      log.info("Could not remove " + partial);
+    }
+    return success;
+  }
+
+  /**
+   * reads an image from a file.  The whole image is read and checked
+   * before any of it is used, so that a damaged image does not leave
+   * the layout half built.
+   *
+   * @param image is the file.
+   * @param digest is the digest of the XML file it should be an image of.
+   * @return the image, or null if there is none or it is not usable.
+   */
+  static LayoutImage read(File image, byte[] digest) {
+    DataInputStream in = null;
+    ArrayList<String> strings;
+    byte[] recorded;
+    byte[] chars;
+    byte[] events;
+    int count;
+    LayoutImage result;
+    if ((digest == null) || !image.isFile()) {
+      return null;
+    }
+    try {
+      in = new DataInputStream(new BufferedInputStream(
+          new FileInputStream(image), 64 * 1024));
+      if ((in.readInt() != MAGIC) || (in.readInt() != FORMAT)) {
+        return null;
+      }
+      count = in.readInt();
+      if ((count < 0) || (count > 1024)) {
+        return null;
+      }
+      recorded = new byte[count];
+      in.readFully(recorded);
+      if (!Arrays.equals(recorded, digest)) {
+        return null;
+      }
+      count = in.readInt();
+      if (count < 0) {
+        return null;
+      }
+      strings = new ArrayList<String>(count);
+      for (int s = 0; s < count; ++s) {
+        chars = new byte[in.readInt()];
+        in.readFully(chars);
+        strings.add(new String(chars, "UTF-8"));
+      }
+      events = new byte[in.readInt()];
+      in.readFully(events);
+      if (in.read() != -1) {
+        return null;
+      }
+      result = new LayoutImage(digest, strings, events);
+      if (result.isValid()) {
+        return result;
+      }
+      log.info(image + " is damaged");
+      return null;
+    }
+    catch (EOFException eofe) {
+      log.info(image + " is truncated");
+    }
+    catch (IOException ioe) {
+      log.info("Could not read " + image + ": " + ioe.getMessage());
+    }
+    catch (NegativeArraySizeException nase) {
+      log.info(image + " is damaged");
+    }
+    catch (OutOfMemoryError oome) {
+      log.info(image + " is damaged");
+    }
+    finally {
+      if (in != null) {
+        try {
+          in.close();
+        }
+        catch (IOException ignore) {
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * walks through the records, checking that they are complete and
+   * refer only to Strings in the table.
+   *
+   * @return true if the records can be played back.
+   */
+  private boolean isValid() {
+    int[] position = new int[1];
+    int count;
+    try {
+      while (position[0] < Events.length) {
+        switch (Events[position[0]++]) {
+        case START:
+          readNumber(position);
+          readString(position);
+          count = readNumber(position) * 2;
+          for (int s = 0; s < count; ++s) {
+            readString(position);
+          }
+          break;
+
+        case TEXT:
+        case END:
+          readNumber(position);
+          readString(position);
+          break;
+
+        default:
+          return false;
+        }
+      }
+    }
+    catch (IndexOutOfBoundsException ioobe) {
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * reads the number of a String and checks that it is in the table.
+   *
+   * @param position holds the index of the number.  It is advanced
+   * past the number.
+   * @return the number of the String.
+   */
+  private int readString(int[] position) {
+    int n = readNumber(position);
+    if ((n < 0) || (n >= Strings.size())) {
+      throw new IndexOutOfBoundsException();
+    }
+    return n;
+  }
+
+  /**
+   * feeds the image to an XMLReader, as if the XML file were being parsed.
+   *
+   * @param handler is the XMLReader.
+   * @return true if the whole image was played back, false if it was
+   * damaged.  The image is checked when it is read, so this should
+   * not happen.
+   */
+  boolean playback(XMLReader handler) {
+    AttributesImpl attributes = new AttributesImpl();
+    int[] position = new int[1];
+    String text;
+    String name;
+    int kind;
+    int count;
+    try {
+      handler.startDocument();
+      while (position[0] < Events.length) {
+        kind = Events[position[0]++];
+        XMLReader.setLine(readNumber(position));
+        switch (kind) {
+        case START:
+          name = Strings.get(readNumber(position));
+          count = readNumber(position);
+          attributes.clear();
+          for (int a = 0; a < count; ++a) {
+            attributes.addAttribute("", "", Strings.get(readNumber(position)),
+                "CDATA", Strings.get(readNumber(position)));
+          }
+          handler.startElement("", "", name, attributes);
+          break;
+
+        case TEXT:
+          text = Strings.get(readNumber(position));
+          handler.characters(text.toCharArray(), 0, text.length());
+          break;
+
+        case END:
+          handler.endElement("", "", Strings.get(readNumber(position)));
+          break;
+
+        default:
+          return false;
+        }
+      }
+      handler.endDocument();
+    }
+    catch (IndexOutOfBoundsException ioobe) {
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * reads a number written by writeNumber().
+   *
+   * @param position holds the index of the first byte of the number.  It
+   * is advanced past the number.
+   * @return the number.
+   */
+  private int readNumber(int[] position) {
+    int n = 0;
+    int shift = 0;
+    int b;
+    do {
+      b = Events[position[0]++];
+      n |= (b & 0x7f) << shift;
+      shift += 7;
+    } while ((b & 0x80) != 0);
+    return n;
+  }
+
+  static org.apache.log4j.Logger log = org.apache.log4j.Logger.getLogger(
+      LayoutImage.class.getName());
+}
+/* @(#)LayoutImage.java */
@@ -70,8 +70,13 @@ public class XMLReader
   static private int LastLine = 0;  // last line located in document.
   private Stack<XMLEleObject> EleStack = new Stack<XMLEleObject>(); // Stack of Elements being constructed
   private XMLEleObject Rcvr; // The current Element being constructed
-  private static Hashtable<String, XMLEleFactory> Factories; // The collection of Element factories
-  private String TextVal = new String(); // The text value being constructed.
+  // The collection of Element factories.  Factories are registered and
+  // looked up by the thread loading the layout, so it is not synchronized.
+  private static HashMap<String, XMLEleFactory> Factories;
+  private StringBuilder TextVal = new StringBuilder(); // The text value being constructed.
+  private LayoutImage Recorder; // The binary image being recorded, if any.
+  static private LayoutImage NewImage; // An image waiting to be saved.
+  static private File NewImageFile; // Where NewImage is saved.
 
   /**
    * creates the parser and gets it rolling.
@@ -82,7 +87,72 @@ public class XMLReader
    *         a String describing the error.
    */
   public static String parseDocument(File file) {
+    return parse(file, new XMLReader());
+  }
+
+  /**
+   * reads a layout description, from its binary image if the XML file
+   * has not changed since the image was made.  Otherwise, it parses the
+   * XML file and makes a new image, which can be saved with saveImage()
+   * once the layout has been built successfully.
+   *
+   * @param file is the file containing the XML description.
+   *
+   * @return null if the file was read successfully; otherwise, return
+   *         a String describing the error.
+   *
+   * @see LayoutImage
+   */
+  public static String parseCachedDocument(File file) {
     XMLReader SAXEventHandler = new XMLReader();
+    byte[] digest = LayoutImage.digest(file);
+    File imageFile = LayoutImage.imageFile(file);
+    LayoutImage image = LayoutImage.read(imageFile, digest);
+    String result;
+    NewImage = null;
+    if (image != null) {
+      MyLocator = null;
+      if (image.playback(SAXEventHandler)) {
+        log.info("Layout read from " + imageFile);
+        return ErrorMsg;
+      }
+      return new String(imageFile + " is damaged.  Delete it and try again.");
+    }
+    if (digest != null) {
+      SAXEventHandler.Recorder = new LayoutImage(digest);
+    }
+    result = parse(file, SAXEventHandler);
+    if (result == null) {
+      NewImage = SAXEventHandler.Recorder;
+      NewImageFile = imageFile;
+    }
+    return result;
+  }
+
+  /**
+   * saves the binary image made by the last parseCachedDocument(), so that
+   * the next time the same layout is read, the XML need not be parsed.
+   */
+  public static void saveImage() {
+    if (NewImage != null) {
+      if (NewImage.write(NewImageFile)) {
+        log.info("Layout image saved in " + NewImageFile);
+      }
+      NewImage = null;
+      NewImageFile = null;
+    }
+  }
+
+  /**
+   * runs the SAX parser over a file.
+   *
+   * @param file is the file containing the XML description.
+   * @param SAXEventHandler receives the SAX events.
+   *
+   * @return null if the file was parsed successfully; otherwise, return
+   *         a String describing the error.
+   */
+  private static String parse(File file, XMLReader SAXEventHandler) {
     SAXParserFactory parserFactory = SAXParserFactory.newInstance();
     org.xml.sax.XMLReader xmlReader = null;
 
@@ -133,8 +203,11 @@ public class XMLReader
     if (MyLocator != null) {
       LastLine = MyLocator.getLineNumber();
     }
-    if (Factories.containsKey(qualifiedName)) {
-      XMLEleFactory fac = Factories.get(qualifiedName);
+    if (Recorder != null) {
+      Recorder.startElement(qualifiedName, attributes, LastLine);
+    }
+    XMLEleFactory fac = Factories.get(qualifiedName);
+    if (fac != null) {
 
       // Tell the XMLEleFactory that a new XMLEleObject is being parsed.
       fac.newElement();
@@ -166,14 +239,22 @@ public class XMLReader
     if (MyLocator != null) {
       LastLine = MyLocator.getLineNumber();
     }
-    TextVal = TextVal.concat(new String(textChars, textStart, textLength));
+    TextVal.append(textChars, textStart, textLength);
+    if (Recorder != null) {
+      Recorder.characters(textChars, textStart, textLength);
+    }
   }
 
   public void endElement(String filename, String localName,
                          String qualifiedName) {
     String str;
-    String resultMsg = sendValue();
-    XMLEleObject oldRcvr = EleStack.pop();
+    String resultMsg;
+    XMLEleObject oldRcvr;
+    if (Recorder != null) {
+      Recorder.endElement(qualifiedName, LastLine);
+    }
+    resultMsg = sendValue();
+    oldRcvr = EleStack.pop();
     str = Rcvr.doneXML();
     if (str != null) {
     	resultMsg = str;
@@ -193,6 +274,16 @@ public class XMLReader
     }
   }
 
+  /**
+   * sets the line number reported in error messages.  It is used when
+   * a LayoutImage is played back, because there is no Locator.
+   *
+   * @param line is the line in the XML file.
+   */
+  static void setLine(int line) {
+    LastLine = line;
+  }
+
   public void endDocument() {
     if (ErrorMsg == null) {
 //      Ctc.RootCTC.getLayout().showMe();
@@ -201,11 +292,19 @@ public class XMLReader
 
   private String sendValue() {
 	  String result = null;
-	  TextVal = TextVal.trim();
-	  if (TextVal.length() > 0) {
-		  result = Rcvr.setValue(TextVal);
-		  TextVal = new String();
-	  }	
+	  int start = 0;
+	  int end = TextVal.length();
+	  // trim the way String.trim() does, without copying the untrimmed text
+	  while ((start < end) && (TextVal.charAt(start) <= ' ')) {
+		  ++start;
+	  }
+	  while ((end > start) && (TextVal.charAt(end - 1) <= ' ')) {
+		  --end;
+	  }
+	  if (start < end) {
+		  result = Rcvr.setValue(TextVal.substring(start, end));
+	  }
+	  TextVal.setLength(0);
 	  return result;
   }
   
@@ -235,7 +334,7 @@ public class XMLReader
    */
   public static void registerFactory(String tag, XMLEleFactory factory) {
     if (Factories == null) {
-      Factories = new Hashtable<String, XMLEleFactory>();
+      Factories = new HashMap<String, XMLEleFactory>();
     }
     if (Factories.containsKey(tag)) {
       System.out.println("Line " + LastLine +": XML Element name " + tag
@@ -245,4 +344,7 @@ public class XMLReader
       Factories.put(tag, factory);
     }
   }
+
+  static org.apache.log4j.Logger log = org.apache.log4j.Logger.getLogger(
+      XMLReader.class.getName());
 }
@@ -13,11 +13,13 @@
  */
 package cats.network;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.PrintStream;
+import java.io.OutputStream;
 import java.net.Socket;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedList;
 
@@ -60,11 +62,34 @@ implements NetworkProtocol {
    */
   private static final String CONNECTION_DROP = "Connection reset";
   
+  /**
+   * is the size of the buffer between the sender and the socket.
+   */
+  private static final int OUT_BUFFER_SIZE = 8192;
+  
+  /**
+   * is the encoded line terminator.
+   */
+  private static final byte[] EOL_BYTES = EOL.getBytes();
+  
   /**
    * is the queue by which objects on the application queue up messages
-   * for the remote end.
+   * for the remote end.  The messages are encoded, with the line
+   * terminator, and must not be changed once queued, because the same
+   * message may be queued to many connections.
+   */
+  private LinkedList<byte[]> MsgQueue;
+  
+  /**
+   * is true after MsgQueue has overflowed, until the application
+   * sends a snapshot.  Messages are discarded while it is true.
+   */
+  private boolean Overflowed;
+  
+  /**
+   * is the number of messages discarded because MsgQueue overflowed.
    */
-  private LinkedList<String> MsgQueue;
+  private int Dropped;
 
   /**
    * is the list of objects listening to the connection
@@ -92,7 +117,7 @@ implements NetworkProtocol {
    * is the stream over which the application sends messages to
    * the remote end.
    */
-  private PrintStream OutStream;
+  private OutputStream OutStream;
     
   /**
    * the ctor
@@ -101,7 +126,7 @@ implements NetworkProtocol {
   public AbstractConnection (Socket s) {
     Sock = s;
     Listeners = new LinkedList<ConnectionListener>();
-    MsgQueue = new LinkedList<String>();
+    MsgQueue = new LinkedList<byte[]>();
     setDaemon(true);
     start();
   }
@@ -131,6 +156,26 @@ implements NetworkProtocol {
    */
   protected abstract void processMessage(String msg);
   
+  /**
+   * is called to retrieve the most messages that can be waiting to be
+   * sent.  By default, there is no limit.
+   * @return the limit on the length of the message queue or 0, for
+   * no limit.
+   */
+  protected int getQueueLimit() {
+    return 0;
+  }
+  
+  /**
+   * is called (without any locks held) when the message queue reaches
+   * its limit.  The queue has been emptied and further messages are
+   * discarded until sendSnapshot() is called.  By default, nothing is
+   * done.
+   * @param discarded is the number of messages thrown away
+   */
+  protected void queueOverflowed(int discarded) {
+  }
+  
   /**
    * An asynchronous thread that waits for something from the remote end
    * and processes it.
@@ -139,7 +184,8 @@ implements NetworkProtocol {
     log.info("Connection established from " + Sock);
     try {
       InStream = new BufferedReader(new InputStreamReader(Sock.getInputStream()));
-      OutStream = new PrintStream(Sock.getOutputStream(), true);
+      OutStream = new BufferedOutputStream(Sock.getOutputStream(),
+          OUT_BUFFER_SIZE);
       TxThread = new Thread(new ClientTxHandler(this));
       TxThread.setDaemon(true);
       TxThread.setName(CLIENT_NAME + ":" +
@@ -187,11 +233,11 @@ implements NetworkProtocol {
   
   /**
    * is an inner class for receiving messages from the application
-   * and sending them to the remote end.
+   * and sending them to the remote end.  All the messages waiting when
+   * it wakes up are written together and the socket flushed once.
    */
   class ClientTxHandler implements Runnable {
-    String  msg;
-    StringBuffer outBuf = new StringBuffer();
+    ArrayList<byte[]> batch = new ArrayList<byte[]>();
     Thread parentThread;
 
     /**
@@ -209,26 +255,25 @@ implements NetworkProtocol {
 
       try {
         while (!isInterrupted()) {
-          msg = null;
-
           synchronized (MsgQueue) {
             if(MsgQueue.isEmpty()) {
               MsgQueue.wait();
             }
-
-            if (!MsgQueue.isEmpty()) {
-                msg = MsgQueue.removeFirst();
-            }
+            batch.addAll(MsgQueue);
+            MsgQueue.clear();
           }
 
-          if (msg != null) {
-            outBuf.setLength(0);
-//            outBuf.append("RECEIVE ");
-            outBuf.append(msg.toString());
-            log.debug(CLIENT_NAME + ": Send: " + outBuf.toString());
-            outBuf.append(EOL);
-            OutStream.write(outBuf.toString().getBytes());
+          if (!batch.isEmpty()) {
+            for (Iterator<byte[]> iter = batch.iterator(); iter.hasNext(); ) {
+              byte[] line = iter.next();
+              if (log.isDebugEnabled()) {
+                log.debug(CLIENT_NAME + ": Send: " +
+                    new String(line, 0, line.length - EOL_BYTES.length));
+              }
+              OutStream.write(line);
+            }
             OutStream.flush();
+            batch.clear();
           }
         }
       }
@@ -243,8 +288,7 @@ implements NetworkProtocol {
       parentThread.interrupt();
 
       parentThread = null;
-      msg = null;
-      outBuf = null;
+      batch = null;
       log.info(CLIENT_NAME + ": Exiting" );
     }
   }
@@ -254,12 +298,108 @@ implements NetworkProtocol {
    * @param msg is the message to send
    */
   public void sendMessage(String msg){
+    sendEncoded(encode(msg));
+  }
+
+  /**
+   * queues a message that has already been encoded.  This is how a
+   * message going to many connections is encoded only once.
+   * @param line is the message, encoded by encode().  It must not be
+   * changed after being queued.
+   */
+  public void sendEncoded(byte[] line) {
+    int discarded = 0;
+    int limit = getQueueLimit();
+    synchronized(MsgQueue)
+    {
+      if (Overflowed) {
+        ++Dropped;
+        return;
+      }
+      if ((limit > 0) && (MsgQueue.size() >= limit)) {
+        discarded = MsgQueue.size() + 1;
+        Dropped += discarded;
+        MsgQueue.clear();
+        Overflowed = true;
+      }
+      else {
+        MsgQueue.add(line);
+        MsgQueue.notify();
+      }
+    }
+    if (discarded != 0) {
+      queueOverflowed(discarded);
+    }
+  }
+  
+  /**
+   * queues a block of lines, regardless of the limit on the queue, and
+   * resumes accepting messages if the queue had overflowed.  The block
+   * counts as one entry in the queue.
+   * @param lines are encoded messages.  They must not be changed after
+   * being queued.
+   */
+  public void sendSnapshot(byte[] lines) {
     synchronized(MsgQueue)
     {
-      MsgQueue.add(msg);
+      Overflowed = false;
+      MsgQueue.add(lines);
       MsgQueue.notify();
     }
   }
+  
+  /**
+   * is called to retrieve the number of messages waiting to be sent.
+   * @return the length of the message queue
+   */
+  public int getQueueDepth() {
+    synchronized(MsgQueue) {
+      return MsgQueue.size();
+    }
+  }
+  
+  /**
+   * is called to retrieve the number of messages discarded because the
+   * message queue overflowed.
+   * @return the number of messages discarded
+   */
+  public int getDroppedCount() {
+    synchronized(MsgQueue) {
+      return Dropped;
+    }
+  }
+  
+  /**
+   * is called to retrieve the address of the far end.
+   * @return the address of the far end
+   */
+  public String getRemoteName() {
+    return String.valueOf(Sock.getRemoteSocketAddress());
+  }
+  
+  /**
+   * takes down the connection by closing the socket, which stops the
+   * thread reading it.  The listeners are told as usual.
+   */
+  public void disconnect() {
+    try {
+      Sock.close();
+    }
+    catch (IOException ex) {}
+  }
+
+  /**
+   * converts a message to the bytes sent over the socket.
+   * @param msg is the message
+   * @return the message and line terminator, encoded
+   */
+  static byte[] encode(String msg) {
+    byte[] text = msg.getBytes();
+    byte[] line = new byte[text.length + EOL_BYTES.length];
+    System.arraycopy(text, 0, line, 0, text.length);
+    System.arraycopy(EOL_BYTES, 0, line, text.length, EOL_BYTES.length);
+    return line;
+  }
 
 static org.apache.log4j.Logger log = org.apache.log4j.Logger.getLogger(
     AbstractConnection.class.getName());
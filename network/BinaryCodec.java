@@ -0,0 +1,584 @@
+/*
+ * Name: BinaryCodec.java
+ *
+ * What:
+ *   This file contains the encoder for the binary form of the TrainStat
+ *   protocol, which a client can ask for in place of the lines of text.
+ *
+ * Special Considerations:
+ */
+package cats.network;
+
+import java.io.ByteArrayOutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+
+import cats.common.Constants;
+import cats.crew.Callboard;
+import cats.jobs.JobStore;
+import cats.layout.store.AbstractStore;
+import cats.layout.store.AbstractStoreWatcher;
+import cats.layout.store.FieldPair;
+import cats.trains.TrainStore;
+
+/**
+ *   This file contains the encoder for the binary form of the TrainStat
+ *   protocol, which a client can ask for in place of the lines of text.
+ *   <p>
+ *   The binary form is a sequence of frames.  Every number is an unsigned
+ *   varint (seven bits to a byte, least significant first, with the high
+ *   bit set on all but the last byte) and every string is its length in
+ *   bytes followed by its UTF-8 bytes.  A frame is its length, a type
+ *   byte and the fields of the type:
+ *   <ul>
+ *   <li>TEXT: a line of the text protocol, without the line terminator.
+ *   <li>STORE: store number, data identifier of the store.
+ *   <li>FIELD: store number, field number, field tag.
+ *   <li>ADD, CHANGE: store number, time stamp, count of fields, then
+ *   the field number and value of each field.
+ *   <li>REMOVE: store number, time stamp, field number and value of the
+ *   key.
+ *   <li>SEQUENCE: epoch, sequence number of the last change.
+ *   </ul>
+ *   The field numbers of a store are its dictionary.  They start with the
+ *   fields of the store's format and grow as other tags are seen.  A
+ *   number is never reused, and a STORE or FIELD frame is sent ahead of
+ *   the first change that needs it.  A client switching to the binary
+ *   form is sent all the dictionaries.
+ *   <p>
+ *   Every change (TEXT, ADD, CHANGE or REMOVE frame) has the number one
+ *   more than the one before it; a SEQUENCE frame sets the number.  A
+ *   CHANGE frame holds the key and only the fields whose values differ
+ *   from the ones last sent for the record.  The values last sent are
+ *   forgotten whenever a binary client is sent a snapshot of the stores,
+ *   so every client has the values that are left out.
+ *   <p>
+ *   The changes are encoded once, for all the binary clients, under the
+ *   lock of the ChangeHistory, in the order they are numbered.
+ *
+ * <p>Title: CATS - Crandic Automated Traffic System</p>
+ * <p>Description: A program for dispatching trains on Pat Lana's
+ * Crandic model railroad.
+ * <p>Copyright: Copyright (c) 2019</p>
+ * <p>Company: </p>
+ * @author Rodney Black
+ * @version $Revision$
+ */
+class BinaryCodec {
+
+  /**
+   * is the version of the binary form.
+   */
+  static final int VERSION = 1;
+
+  /**
+   * are the frame types.
+   */
+  static final int TEXT = 0;
+  static final int STORE = 1;
+  static final int FIELD = 2;
+  static final int ADD = 3;
+  static final int CHANGE = 4;
+  static final int REMOVE = 5;
+  static final int SEQUENCE = 6;
+
+  /**
+   * is the character set of the strings.
+   */
+  private static final String CHARSET = "UTF-8";
+
+  /**
+   * is true once a client has asked for the binary form.  Until then,
+   * the changes are not encoded.
+   */
+  private volatile boolean Active;
+
+  /**
+   * are the store numbers, by data identifier.
+   */
+  private final HashMap<String, StoreDictionary> Stores =
+    new HashMap<String, StoreDictionary>();
+
+  /**
+   * are the dictionaries, by store number.
+   */
+  private final ArrayList<StoreDictionary> Dictionaries =
+    new ArrayList<StoreDictionary>();
+
+  /**
+   * is where a frame is assembled, before its length is known.
+   */
+  private final ByteArrayOutputStream Frame = new ByteArrayOutputStream();
+
+  /**
+   * is the ctor.
+   */
+  BinaryCodec() {
+  }
+
+  /**
+   * is called when a client asks for the binary form.
+   */
+  synchronized void activate() {
+    Active = true;
+  }
+
+  /**
+   * is called to learn if the changes are being encoded.
+   *
+   * @return true if a client has asked for the binary form.
+   */
+  boolean isActive() {
+    return Active;
+  }
+
+  /**
+   * forgets the values last sent.  The next change to each record is
+   * sent with all its fields.
+   */
+  synchronized void reset() {
+    for (Iterator<StoreDictionary> iter = Dictionaries.iterator(); iter.hasNext(); ) {
+      iter.next().Sent.clear();
+    }
+  }
+
+  /**
+   * encodes a change.
+   *
+   * @param msg is the change, as sent to the text clients.
+   * @return the frames for the change.
+   */
+  synchronized byte[] encode(String msg) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(msg.length());
+    String[] tokens = msg.split(Constants.FS_STRING, -1);
+    int type = findType(tokens);
+    StoreDictionary store;
+    if (type == TEXT) {
+      writeText(out, msg);
+    }
+    else {
+      store = findStore(tokens[2]);
+      writeRecord(out, type, store, tokens, true);
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * encodes the contents of a store, for a snapshot.  The store's
+   * dictionary is written first; the field descriptions are sent as
+   * TEXT frames, since they are few.  The values last sent are not
+   * changed.
+   *
+   * @param out is where the frames are written.
+   * @param store is the store.
+   */
+  synchronized void writeStore(ByteArrayOutputStream out,
+      AbstractStore store) {
+    String add = AbstractStoreWatcher.buildAddString("");
+    String time = add.split(Constants.FS_STRING, -1)[1];
+    String fieldId = store.getFieldID() + Constants.FS;
+    StoreDictionary dictionary = findStore(store.getDataID());
+    String[] tokens;
+    writeDictionary(out, dictionary);
+    for (Iterator<String> iter = store.dumpFieldContents().iterator(); iter.hasNext(); ) {
+      writeText(out, add + fieldId + iter.next());
+    }
+    for (Iterator<String> iter = store.dumpStoreContents().iterator(); iter.hasNext(); ) {
+      tokens = (Constants.ADD_TO_STORE + Constants.FS + time + Constants.FS +
+          store.getDataID() + Constants.FS + iter.next()).split(
+              Constants.FS_STRING, -1);
+      writeRecord(out, ADD, dictionary, tokens, false);
+    }
+  }
+
+  /**
+   * encodes a line of the text protocol as a TEXT frame.
+   *
+   * @param line is the line.
+   * @return the frame.
+   */
+  static byte[] encodeText(String line) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(line.length() + 4);
+    byte[] text = toBytes(line);
+    writeVarint(out, text.length + 1);
+    out.write(TEXT);
+    out.write(text, 0, text.length);
+    return out.toByteArray();
+  }
+
+  /**
+   * encodes all the dictionaries, for a client switching to the binary
+   * form.
+   *
+   * @return the frames.
+   */
+  synchronized byte[] encodeDictionaries() {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for (Iterator<StoreDictionary> iter = Dictionaries.iterator(); iter.hasNext(); ) {
+      writeDictionary(out, iter.next());
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * encodes the position of a client in the changes.
+   *
+   * @param epoch is the epoch of the ChangeHistory.
+   * @param sequence is the number of the last change accounted for.
+   * @return the SEQUENCE frame.
+   */
+  synchronized byte[] encodeSequence(long epoch, long sequence) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(24);
+    writeVarint(Frame, epoch);
+    writeVarint(Frame, sequence);
+    endFrame(out, SEQUENCE);
+    return out.toByteArray();
+  }
+
+  /**
+   * determines how a change is encoded.
+   *
+   * @param tokens are the fields of the change.
+   * @return ADD, CHANGE or REMOVE, if the change is to a record in a
+   * store, or TEXT.
+   */
+  private static int findType(String[] tokens) {
+    int type;
+    if (tokens.length < 4) {
+      return TEXT;
+    }
+    if (Constants.ADD_TO_STORE.equals(tokens[0])) {
+      type = ADD;
+    }
+    else if (Constants.CHANGE_STORE.equals(tokens[0])) {
+      type = CHANGE;
+    }
+    else if (Constants.REMOVE_FROM_STORE.equals(tokens[0])) {
+      type = REMOVE;
+    }
+    else {
+      return TEXT;
+    }
+    for (int t = 3; t < tokens.length; ++t) {
+      if (tokens[t].indexOf(FieldPair.SEP) <= 0) {
+        return TEXT;
+      }
+    }
+    return type;
+  }
+
+  /**
+   * locates the dictionary of a store, creating it if it is new.
+   *
+   * @param dataId is the data identifier of the store.
+   * @return the dictionary.
+   */
+  private StoreDictionary findStore(String dataId) {
+    StoreDictionary dictionary = Stores.get(dataId);
+    AbstractStore store = null;
+    AbstractStore[] candidates = {
+        TrainStore.TrainKeeper,
+        JobStore.JobsKeeper,
+        Callboard.Crews
+    };
+    if (dictionary == null) {
+      for (int s = 0; s < candidates.length; ++s) {
+        if ((candidates[s] != null) && dataId.equals(candidates[s].getDataID())) {
+          store = candidates[s];
+        }
+      }
+      dictionary = new StoreDictionary(Dictionaries.size(), dataId);
+      Stores.put(dataId, dictionary);
+      Dictionaries.add(dictionary);
+      if (store != null) {
+        dictionary.KeyTag = store.getKeyTag();
+        for (Iterator<String> iter = store.listFieldTags().iterator(); iter.hasNext(); ) {
+          dictionary.findField(iter.next());
+        }
+      }
+    }
+    return dictionary;
+  }
+
+  /**
+   * writes the parts of a store's dictionary that have not been sent
+   * with the changes.  The parts added for a snapshot are sent only to
+   * the client receiving it, so are announced with the next change that
+   * could use them.
+   *
+   * @param out is where the frames are written.
+   * @param dictionary is the dictionary.
+   */
+  private void announce(ByteArrayOutputStream out,
+      StoreDictionary dictionary) {
+    if (dictionary.Announced < 0) {
+      writeVarint(Frame, dictionary.Number);
+      writeString(Frame, dictionary.DataId);
+      endFrame(out, STORE);
+      dictionary.Announced = 0;
+    }
+    while (dictionary.Announced < dictionary.Tags.size()) {
+      writeFieldDefinition(out, dictionary, dictionary.Announced++);
+    }
+  }
+
+  /**
+   * writes a store's dictionary.
+   *
+   * @param out is where the frames are written.
+   * @param dictionary is the dictionary.
+   */
+  private void writeDictionary(ByteArrayOutputStream out,
+      StoreDictionary dictionary) {
+    writeVarint(Frame, dictionary.Number);
+    writeString(Frame, dictionary.DataId);
+    endFrame(out, STORE);
+    for (int f = 0; f < dictionary.Tags.size(); ++f) {
+      writeFieldDefinition(out, dictionary, f);
+    }
+  }
+
+  /**
+   * writes the definition of a field number.
+   *
+   * @param out is where the frame is written.
+   * @param dictionary is the store's dictionary.
+   * @param field is the field number.
+   */
+  private void writeFieldDefinition(ByteArrayOutputStream out,
+      StoreDictionary dictionary, int field) {
+    writeVarint(Frame, dictionary.Number);
+    writeVarint(Frame, field);
+    writeString(Frame, dictionary.Tags.get(field));
+    endFrame(out, FIELD);
+  }
+
+  /**
+   * writes a line of the text protocol as a frame.
+   *
+   * @param out is where the frame is written.
+   * @param line is the line.
+   */
+  private void writeText(ByteArrayOutputStream out, String line) {
+    byte[] text = toBytes(line);
+    Frame.write(text, 0, text.length);
+    endFrame(out, TEXT);
+  }
+
+  /**
+   * writes a change to a record.
+   *
+   * @param out is where the frames are written.
+   * @param type is ADD, CHANGE or REMOVE.
+   * @param dictionary is the store's dictionary.
+   * @param tokens are the fields of the change: tag, time stamp, data
+   * identifier, then tag="value" pairs.
+   * @param stream is true if the change is one of the numbered changes,
+   * so the values last sent are used and updated; false if it is part
+   * of a snapshot.
+   */
+  private void writeRecord(ByteArrayOutputStream out, int type,
+      StoreDictionary dictionary, String[] tokens, boolean stream) {
+    int count = tokens.length - 3;
+    int[] fields = new int[count];
+    String[] values = new String[count];
+    String key = null;
+    int keyIndex = -1;
+    HashMap<Integer, String> sent = null;
+    int sep;
+    int send = 0;
+    Integer field;
+    for (int t = 0; t < count; ++t) {
+      sep = tokens[t + 3].indexOf(FieldPair.SEP);
+      fields[t] = dictionary.findField(tokens[t + 3].substring(0, sep));
+      values[t] = unquote(tokens[t + 3].substring(sep + 1));
+      if (tokens[t + 3].substring(0, sep).equals(dictionary.KeyTag)) {
+        key = values[t];
+        keyIndex = t;
+      }
+    }
+    if (stream) {
+      announce(out, dictionary);
+    }
+    if (stream && (key != null)) {
+      if (type == REMOVE) {
+        dictionary.Sent.remove(key);
+      }
+      else if ((type == ADD) ||
+          ((sent = dictionary.Sent.get(key)) == null)) {
+        dictionary.Sent.put(key, sent = new HashMap<Integer, String>());
+      }
+    }
+    // With a record of the values sent, a CHANGE leaves out the values
+    // the clients already have, except the key.
+    for (int t = 0; t < count; ++t) {
+      field = Integer.valueOf(fields[t]);
+      if ((type == CHANGE) && (sent != null) && (t != keyIndex) &&
+          values[t].equals(sent.get(field))) {
+        fields[t] = -1;
+      }
+      else {
+        ++send;
+        if (sent != null) {
+          sent.put(field, values[t]);
+        }
+      }
+    }
+    writeVarint(Frame, dictionary.Number);
+    writeString(Frame, tokens[1]);
+    if (type != REMOVE) {
+      writeVarint(Frame, send);
+    }
+    for (int t = 0; t < count; ++t) {
+      if (fields[t] >= 0) {
+        writeVarint(Frame, fields[t]);
+        writeString(Frame, values[t]);
+      }
+    }
+    endFrame(out, type);
+  }
+
+  /**
+   * removes the quotes the text protocol puts around a value.
+   *
+   * @param value is the value, possibly quoted.
+   * @return the value without the quotes.
+   */
+  private static String unquote(String value) {
+    int len = value.length();
+    if ((len >= 2) && value.startsWith(Constants.QUOTE) &&
+        value.endsWith(Constants.QUOTE)) {
+      return value.substring(1, len - 1);
+    }
+    return value;
+  }
+
+  /**
+   * completes the frame assembled in Frame.
+   *
+   * @param out is where the frame is written.
+   * @param type is the type of the frame.
+   */
+  private void endFrame(ByteArrayOutputStream out, int type) {
+    writeVarint(out, Frame.size() + 1);
+    out.write(type);
+    Frame.writeTo(out);
+    Frame.reset();
+  }
+
+  /**
+   * writes a number as a varint.
+   *
+   * @param out is where the number is written.
+   * @param value is the number.  It must not be negative.
+   */
+  private static void writeVarint(ByteArrayOutputStream out, long value) {
+    while ((value & ~0x7FL) != 0) {
+      out.write((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    out.write((int) value);
+  }
+
+  /**
+   * writes a string, preceded by its length.
+   *
+   * @param out is where the string is written.
+   * @param s is the string.
+   */
+  private static void writeString(ByteArrayOutputStream out, String s) {
+    byte[] bytes = toBytes(s);
+    writeVarint(out, bytes.length);
+    out.write(bytes, 0, bytes.length);
+  }
+
+  /**
+   * converts a string to the bytes sent.
+   *
+   * @param s is the string.
+   * @return its UTF-8 bytes.
+   */
+  private static byte[] toBytes(String s) {
+    try {
+      return s.getBytes(CHARSET);
+    }
+    catch (UnsupportedEncodingException uee) {
+      return s.getBytes();
+    }
+  }
+
+  /**
+   * is the dictionary of a store and the values last sent for each of
+   * its records.
+   */
+  private static class StoreDictionary {
+
+    /**
+     * is the number of the store.
+     */
+    final int Number;
+
+    /**
+     * is the data identifier of the store.
+     */
+    final String DataId;
+
+    /**
+     * is the tag of the key field, if known.
+     */
+    String KeyTag;
+
+    /**
+     * are the field tags, by field number.
+     */
+    final ArrayList<String> Tags = new ArrayList<String>();
+
+    /**
+     * are the field numbers, by tag.
+     */
+    final HashMap<String, Integer> Numbers = new HashMap<String, Integer>();
+
+    /**
+     * is the number of fields announced with the changes, or -1 if the
+     * store has not been announced.
+     */
+    int Announced = -1;
+
+    /**
+     * are the values last sent, by record key and field number.
+     */
+    final HashMap<String, HashMap<Integer, String>> Sent =
+      new HashMap<String, HashMap<Integer, String>>();
+
+    /**
+     * is the ctor.
+     *
+     * @param number is the number of the store.
+     * @param dataId is the data identifier of the store.
+     */
+    StoreDictionary(int number, String dataId) {
+      Number = number;
+      DataId = dataId;
+    }
+
+    /**
+     * locates the number of a field, adding it to the dictionary if it
+     * is new.
+     *
+     * @param tag is the tag of the field.
+     * @return the number.
+     */
+    int findField(String tag) {
+      Integer number = Numbers.get(tag);
+      if (number == null) {
+        number = Integer.valueOf(Tags.size());
+        Tags.add(tag);
+        Numbers.put(tag, number);
+      }
+      return number.intValue();
+    }
+  }
+}
+/* @(#)BinaryCodec.java */
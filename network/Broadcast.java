@@ -0,0 +1,100 @@
+/*
+ * Name: Broadcast.java
+ *
+ * What:
+ *   This file contains one change sent to all the TrainStat clients,
+ *   with its sequence number, encoded for the clients that do and do not
+ *   track sequence numbers.
+ *
+ * Special Considerations:
+ *   A Broadcast is shared by all the clients, so it must not be changed.
+ */
+package cats.network;
+
+import cats.common.Constants;
+
+/**
+ *   This file contains one change sent to all the TrainStat clients,
+ *   with its sequence number, encoded for the clients that do and do not
+ *   track sequence numbers.
+ *   <p>
+ *   The message is encoded once, when it is created, and the bytes are
+ *   shared by the queues of all the clients.  Once a client has asked
+ *   for the binary form of the protocol, the message is also encoded in
+ *   that form.
+ *
+ * <p>Title: CATS - Crandic Automated Traffic System</p>
+ * <p>Description: A program for dispatching trains on Pat Lana's
+ * Crandic model railroad.
+ * <p>Copyright: Copyright (c) 2019</p>
+ * <p>Company: </p>
+ * @author Rodney Black
+ * @version $Revision$
+ */
+class Broadcast {
+
+  /**
+   * is the sequence number of the change.
+   */
+  final long Sequence;
+
+  /**
+   * is the message, as sent to clients that do not track sequence
+   * numbers.
+   */
+  final byte[] Plain;
+
+  /**
+   * is the message, preceded by the sequence number.
+   */
+  final byte[] Numbered;
+
+  /**
+   * is the message in the binary form, or null if no client had asked
+   * for the binary form when it was created.
+   */
+  final byte[] Binary;
+
+  /**
+   * is the message, for encoding as a TEXT frame if it has no binary
+   * form.
+   */
+  final String Message;
+
+  /**
+   * is the ctor.
+   *
+   * @param sequence is the sequence number of the change.
+   * @param msg is the message.
+   * @param codec is the encoder for the binary form.
+   */
+  Broadcast(long sequence, String msg, BinaryCodec codec) {
+    Sequence = sequence;
+    Message = msg;
+    Binary = codec.isActive() ? codec.encode(msg) : null;
+    Plain = AbstractConnection.encode(msg);
+    Numbered = AbstractConnection.encode(NetworkProtocol.SEQ_TAG + Constants.FS + sequence +
+        Constants.FS + msg);
+  }
+
+  /**
+   * selects the encoding of the message for a client.
+   *
+   * @param numbered is true if the client tracks sequence numbers.
+   * @return the encoded message.
+   */
+  byte[] getBytes(boolean numbered) {
+    return numbered ? Numbered : Plain;
+  }
+
+  /**
+   * retrieves the binary form of the message.  A message created before
+   * any client asked for the binary form is sent as a TEXT frame.
+   *
+   * @return the encoded message.
+   */
+  byte[] getBinary() {
+    return (Binary == null) ? BinaryCodec.encodeText(Message) : Binary;
+  }
+}
+/* @(#)Broadcast.java */
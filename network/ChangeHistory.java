@@ -0,0 +1,128 @@
+/*
+ * Name: ChangeHistory.java
+ *
+ * What:
+ *   This file contains the recent changes sent to the TrainStat clients,
+ *   so that a client which reconnects can be sent the changes it missed,
+ *   rather than the contents of all the stores.
+ *
+ * Special Considerations:
+ */
+package cats.network;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ *   This file contains the recent changes sent to the TrainStat clients,
+ *   so that a client which reconnects can be sent the changes it missed,
+ *   rather than the contents of all the stores.
+ *   <p>
+ *   Each change is numbered, starting from 1, and the last HISTORY_SIZE
+ *   changes are kept in a ring.  The numbers start over each time CATS
+ *   runs, so the history also has an epoch (the time it was created),
+ *   which a client must present along with the last number it received.
+ *   <p>
+ *   The encoder for the binary form of the protocol is kept here, since
+ *   the changes must be encoded in the order they are numbered.
+ *
+ * <p>Title: CATS - Crandic Automated Traffic System</p>
+ * <p>Description: A program for dispatching trains on Pat Lana's
+ * Crandic model railroad.
+ * <p>Copyright: Copyright (c) 2019</p>
+ * <p>Company: </p>
+ * @author Rodney Black
+ * @version $Revision$
+ */
+class ChangeHistory {
+
+  /**
+   * is the number of changes remembered.
+   */
+  static final int HISTORY_SIZE = 8192;
+
+  /**
+   * identifies this run of CATS.
+   */
+  private final long Epoch = System.currentTimeMillis();
+
+  /**
+   * are the recent changes, indexed by sequence number modulo
+   * HISTORY_SIZE.
+   */
+  private final Broadcast[] Ring = new Broadcast[HISTORY_SIZE];
+
+  /**
+   * is the sequence number of the last change.
+   */
+  private long Latest;
+
+  /**
+   * is the encoder for the binary form.
+   */
+  private final BinaryCodec Codec = new BinaryCodec();
+
+  /**
+   * numbers a change and remembers it.
+   *
+   * @param msg is the change.
+   * @return the numbered change.
+   */
+  synchronized Broadcast record(String msg) {
+    Broadcast change = new Broadcast(++Latest, msg, Codec);
+    Ring[(int) (Latest % HISTORY_SIZE)] = change;
+    return change;
+  }
+
+  /**
+   * is called to retrieve the identity of this run of CATS.
+   *
+   * @return the epoch.
+   */
+  long getEpoch() {
+    return Epoch;
+  }
+
+  /**
+   * is called to retrieve the encoder for the binary form.
+   *
+   * @return the encoder.
+   */
+  BinaryCodec getCodec() {
+    return Codec;
+  }
+
+  /**
+   * is called to retrieve the sequence number of the last change.
+   *
+   * @return the sequence number or 0, if there have been no changes.
+   */
+  synchronized long getLatest() {
+    return Latest;
+  }
+
+  /**
+   * collects the changes after one a client received.
+   *
+   * @param epoch is the epoch the client received with the change.
+   * @param sequence is the sequence number of the change.
+   * @param binary is true for the binary form of the changes.
+   * @return the numbered changes, encoded, or null if they are not all
+   * remembered (or the client's change is not from this run of CATS).
+   */
+  synchronized byte[] since(long epoch, long sequence, boolean binary) {
+    ByteArrayOutputStream changes;
+    byte[] line;
+    if ((epoch != Epoch) || (sequence < 0) || (sequence > Latest) ||
+        ((Latest - sequence) > HISTORY_SIZE)) {
+      return null;
+    }
+    changes = new ByteArrayOutputStream();
+    for (long s = sequence + 1; s <= Latest; ++s) {
+      line = binary ? Ring[(int) (s % HISTORY_SIZE)].getBinary() :
+        Ring[(int) (s % HISTORY_SIZE)].Numbered;
+      changes.write(line, 0, line.length);
+    }
+    return changes.toByteArray();
+  }
+}
+/* @(#)ChangeHistory.java */
@@ -0,0 +1,200 @@
+/*
+ * Name: ClientStream.java
+ *
+ * What:
+ *   This file contains where a TrainStat client is in the stream of
+ *   changes: whether it has been sent the stores yet, whether it wants
+ *   sequence numbers and the number of the last change it was sent.
+ *
+ * Special Considerations:
+ */
+package cats.network;
+
+import cats.common.Constants;
+
+/**
+ *   This file contains where a TrainStat client is in the stream of
+ *   changes: whether it has been sent the stores yet, whether it wants
+ *   sequence numbers and the number of the last change it was sent.
+ *   <p>
+ *   A new client is held (its changes are not queued) until it either
+ *   asks to resume from a change it received on an earlier connection
+ *   or is sent a snapshot of the stores.  Either way, the client is then
+ *   sent only the changes numbered after the ones it has accounted for,
+ *   so no change is lost, no matter which thread sends the snapshot.
+ *   <p>
+ *   A change can be sent twice, though.  The stores are changed on the
+ *   GUI and network threads before the change is numbered, so a snapshot
+ *   taken in between already holds the change and the client receives
+ *   it again as the next numbered change.  Changes replace whole records
+ *   or values, so applying one twice leaves the client's copy the same;
+ *   only a time stamped message (such as a train being tied down)
+ *   appears twice.
+ *
+ * <p>Title: CATS - Crandic Automated Traffic System</p>
+ * <p>Description: A program for dispatching trains on Pat Lana's
+ * Crandic model railroad.
+ * <p>Copyright: Copyright (c) 2019</p>
+ * <p>Company: </p>
+ * @author Rodney Black
+ * @version $Revision$
+ */
+class ClientStream {
+
+  /**
+   * is the client.
+   */
+  private final TrainStatClient Client;
+
+  /**
+   * is true until the client has been sent the stores or the changes
+   * it missed.
+   */
+  private boolean Waiting = true;
+
+  /**
+   * is true if the client asked for sequence numbers.
+   */
+  private boolean Numbered;
+
+  /**
+   * is true if the client asked for the binary form of the protocol.
+   * A binary client always receives sequence numbers.
+   */
+  private boolean Binary;
+
+  /**
+   * is the sequence number of the last change accounted for.
+   */
+  private long Last;
+
+  /**
+   * is the ctor.
+   *
+   * @param client is the client.
+   */
+  ClientStream(TrainStatClient client) {
+    Client = client;
+  }
+
+  /**
+   * queues a change for the client, if it has not been accounted for.
+   *
+   * @param change is the change.
+   */
+  synchronized void deliver(Broadcast change) {
+    if (!Waiting && (change.Sequence > Last)) {
+      Last = change.Sequence;
+      Client.sendEncoded(Binary ? change.getBinary() :
+        change.getBytes(Numbered));
+    }
+  }
+
+  /**
+   * handles a request from the client for sequence numbers and the
+   * changes since one it received.
+   *
+   * @param history is the recent changes.
+   * @param epoch is the epoch of the change the client received.
+   * @param sequence is the number of the change the client received,
+   * or a negative number if it has not received any.
+   * @return true if the client has been brought up to date and false
+   * if it needs a snapshot.
+   */
+  synchronized boolean resume(ChangeHistory history, long epoch,
+      long sequence) {
+    byte[] missed;
+    Numbered = true;
+    if (!Waiting) {
+      // the client already has the stores, so needs only to be told
+      // where it is.
+      Client.sendEncoded(position(history));
+      return true;
+    }
+    synchronized (history) {
+      missed = history.since(epoch, sequence, Binary);
+      if (missed == null) {
+        return false;
+      }
+      Last = history.getLatest();
+    }
+    Waiting = false;
+    if (Binary) {
+      Client.sendSnapshot(history.getCodec().encodeDictionaries());
+    }
+    Client.sendSnapshot(missed);
+    Client.sendSnapshot(position(history));
+    return true;
+  }
+
+  /**
+   * sends the client the contents of the stores.
+   *
+   * @param history is the recent changes.
+   * @param ifWaiting is true if the snapshot should be sent only if the
+   * client has not already been brought up to date.
+   */
+  synchronized void snapshot(ChangeHistory history, boolean ifWaiting) {
+    if (ifWaiting && !Waiting) {
+      return;
+    }
+    // Every change numbered up to Last was made to the stores before
+    // the snapshot is taken, so is in the snapshot.  A change made but
+    // not yet numbered is in the snapshot too, and is sent again.  The binary changes
+    // after Last must not leave out values this client does not have.
+    synchronized (history) {
+      Last = history.getLatest();
+      if (Binary) {
+        history.getCodec().reset();
+      }
+    }
+    Waiting = false;
+    if (Binary) {
+      Client.sendSnapshot(TrainStatServer.binarySnapshot(history.getCodec()));
+    }
+    else {
+      Client.sendSnapshot(TrainStatServer.snapshot());
+    }
+    if (Numbered) {
+      Client.sendSnapshot(position(history));
+    }
+  }
+
+  /**
+   * handles a request from the client for the binary form of the
+   * protocol.  The request is acknowledged in the text form; everything
+   * after is binary.  A client that already has the stores is sent the
+   * dictionaries and its position, so it continues without a snapshot.
+   *
+   * @param history is the recent changes.
+   */
+  synchronized void useBinary(ChangeHistory history) {
+    if (Binary) {
+      return;
+    }
+    history.getCodec().activate();
+    Client.sendEncoded(AbstractConnection.encode(NetworkProtocol.BINARY_TAG +
+        Constants.FS + BinaryCodec.VERSION));
+    Binary = true;
+    Numbered = true;
+    if (!Waiting) {
+      Client.sendEncoded(history.getCodec().encodeDictionaries());
+      Client.sendEncoded(position(history));
+    }
+  }
+
+  /**
+   * constructs the message telling the client where it is in the changes.
+   *
+   * @param history is the recent changes.
+   * @return the encoded message.
+   */
+  private byte[] position(ChangeHistory history) {
+    if (Binary) {
+      return history.getCodec().encodeSequence(history.getEpoch(), Last);
+    }
+    return AbstractConnection.encode(NetworkProtocol.SEQUENCE_TAG +
+        Constants.FS + history.getEpoch() + Constants.FS + Last);
+  }
+}
+/* @(#)ClientStream.java */
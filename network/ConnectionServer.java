@@ -48,7 +48,13 @@ import java.net.Socket;
  * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
  */
 
-public class ConnectionServer extends AbstractConnection {
+public class ConnectionServer extends AbstractConnection
+implements TrainStatClient {
+  
+  /**
+   * is where the client is in the changes.
+   */
+  private final ClientStream Stream = new ClientStream(this);
 
   /**
    * is the ctor
@@ -64,9 +70,34 @@ public class ConnectionServer extends AbstractConnection {
    */
   protected void processMessage(String msg) {
 	    log.debug(msg);
-	    RequestParser.instance().parseLine(msg);
+	    TrainStatServer.instance().receive(this, msg);
+  }
+  
+  /**
+   * is called to retrieve where the client is in the changes.
+   * @return the client's position in the change stream
+   */
+  public ClientStream getStream() {
+    return Stream;
+  }
+  
+  /**
+   * is called to retrieve the most messages that can be waiting to be
+   * sent to the client.
+   * @return the TrainStat queue limit
+   */
+  protected int getQueueLimit() {
+    return TrainStatServer.getQueueLimit();
+  }
+  
+  /**
+   * is called when the client has fallen too far behind.
+   * @param discarded is the number of messages thrown away
+   */
+  protected void queueOverflowed(int discarded) {
+    TrainStatServer.instance().clientOverflowed(this, discarded);
   }
 static org.apache.log4j.Logger log = org.apache.log4j.Logger.getLogger(
     ConnectionServer.class.getName());
 }
-/* @(#)ConnectionServer.java */
+/* @(#)ConnectionServer.java */
@@ -0,0 +1,186 @@
+/*
+ * Name: JsonEncoder.java
+ *
+ * What:
+ *   This file contains the methods for converting the lines of the
+ *   NetworkProtocol into JSON, for browser clients.
+ *
+ * Special Considerations:
+ */
+package cats.network;
+
+import java.util.StringTokenizer;
+
+import cats.common.Constants;
+import cats.layout.store.FieldPair;
+
+/**
+ *   This file contains the methods for converting the lines of the
+ *   NetworkProtocol into JSON, for browser clients.
+ *   <p>
+ *   A record in a store is sent as tab separated tag="value" tokens.  It
+ *   becomes a JSON object, with a member for each token.  A status message
+ *   is a tag, a time stamp and tokens, some of which are tag="value" pairs
+ *   and some of which are plain values.  It becomes
+ *   <p>
+ *   {"type":tag,"time":time stamp,"fields":{pairs},"values":[values]}
+ *   <p>
+ *   All values are strings, without the quotes used by the protocol.
+ *
+ * <p>Title: CATS - Crandic Automated Traffic System</p>
+ * <p>Description: A program for dispatching trains on Pat Lana's
+ * Crandic model railroad.
+ * <p>Copyright: Copyright (c) 2019</p>
+ * <p>Company: </p>
+ * @author Rodney Black
+ * @version $Revision$
+ */
+class JsonEncoder {
+
+  /**
+   * adds a String to a JSON document, quoted and with the special
+   * characters escaped.
+   *
+   * @param sb is the JSON document.
+   * @param s is the String.
+   */
+  static void appendString(StringBuilder sb, String s) {
+    char c;
+    sb.append('"');
+    for (int i = 0; i < s.length(); ++i) {
+      c = s.charAt(i);
+      switch (c) {
+      case '"':
+        sb.append("\\\"");
+        break;
+      case '\\':
+        sb.append("\\\\");
+        break;
+      case '\n':
+        sb.append("\\n");
+        break;
+      case '\r':
+        sb.append("\\r");
+        break;
+      case '\t':
+        sb.append("\\t");
+        break;
+      default:
+        if (c < ' ') {
+          sb.append("\\u00");
+          sb.append(Character.forDigit(c >> 4, 16));
+          sb.append(Character.forDigit(c & 0xf, 16));
+        }
+        else {
+          sb.append(c);
+        }
+      }
+    }
+    sb.append('"');
+  }
+
+  /**
+   * removes the quotes the protocol puts around a value.
+   *
+   * @param value is the value, possibly quoted.
+   * @return the value without the quotes.
+   */
+  private static String unquote(String value) {
+    int len = value.length();
+    if ((len >= 2) && value.startsWith(Constants.QUOTE) &&
+        value.endsWith(Constants.QUOTE)) {
+      return value.substring(1, len - 1);
+    }
+    return value;
+  }
+
+  /**
+   * determines if a token is a tag="value" pair.  A quoted token is a
+   * value, even if it contains the separator.
+   *
+   * @param token is the token.
+   * @return true if it is a pair.
+   */
+  private static boolean isPair(String token) {
+    return (token.indexOf(FieldPair.SEP) > 0) &&
+      !token.startsWith(Constants.QUOTE);
+  }
+
+  /**
+   * adds one tag="value" token to a JSON object.
+   *
+   * @param sb is the JSON document.
+   * @param token is the token.
+   */
+  private static void appendPair(StringBuilder sb, String token) {
+    int sep = token.indexOf(FieldPair.SEP);
+    appendString(sb, token.substring(0, sep));
+    sb.append(':');
+    appendString(sb, unquote(token.substring(sep + 1)));
+  }
+
+  /**
+   * adds a record, as sent by the NetworkProtocol, to a JSON document as
+   * an object.
+   *
+   * @param sb is the JSON document.
+   * @param record is the tab separated tag="value" tokens.  Tokens that
+   * are not pairs are ignored.
+   */
+  static void appendRecord(StringBuilder sb, String record) {
+    StringTokenizer tokens = new StringTokenizer(record,
+        Constants.FS_STRING);
+    String token;
+    boolean first = true;
+    sb.append('{');
+    while (tokens.hasMoreTokens()) {
+      token = tokens.nextToken();
+      if (isPair(token)) {
+        if (!first) {
+          sb.append(',');
+        }
+        appendPair(sb, token);
+        first = false;
+      }
+    }
+    sb.append('}');
+  }
+
+  /**
+   * converts a status message into a JSON object.
+   *
+   * @param msg is the message, as sent to the TrainStat clients.
+   * @return the JSON object.
+   */
+  static String encodeMessage(String msg) {
+    StringBuilder sb = new StringBuilder(msg.length() + 64);
+    StringBuilder values = new StringBuilder();
+    String[] tokens = msg.split(Constants.FS_STRING, -1);
+    boolean firstPair = true;
+    sb.append("{\"type\":");
+    appendString(sb, tokens[0]);
+    if (tokens.length > 1) {
+      sb.append(",\"time\":");
+      appendString(sb, tokens[1].trim());
+    }
+    sb.append(",\"fields\":{");
+    for (int t = 2; t < tokens.length; ++t) {
+      if (isPair(tokens[t])) {
+        if (!firstPair) {
+          sb.append(',');
+        }
+        appendPair(sb, tokens[t]);
+        firstPair = false;
+      }
+      else {
+        if (values.length() != 0) {
+          values.append(',');
+        }
+        appendString(values, unquote(tokens[t]));
+      }
+    }
+    sb.append("},\"values\":[").append(values).append("]}");
+    return sb.toString();
+  }
+}
+/* @(#)JsonEncoder.java */
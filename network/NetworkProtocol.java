@@ -69,6 +69,32 @@ public interface NetworkProtocol {
    * is the String that identifies data
    */
   public static final String DATA_TAG = "Data\t";
+
+  /**
+   * is the request from a client to receive sequence numbers and,
+   * optionally, the changes since one it received earlier:
+   * Resume FS epoch FS sequence number.
+   */
+  public static final String RESUME_TAG = "Resume";
+
+  /**
+   * is the String that precedes a change sent to a client that
+   * receives sequence numbers: Seq FS sequence number FS change.
+   */
+  public static final String SEQ_TAG = "Seq";
+
+  /**
+   * is the String that tells a client that receives sequence numbers
+   * that it is current: Sequence FS epoch FS sequence number.
+   */
+  public static final String SEQUENCE_TAG = "Sequence";
+
+  /**
+   * is the request from a client to receive the binary form of the
+   * protocol (Binary FS version), the server's acknowledgement, and the
+   * last field of the server's version line, which advertises it.
+   */
+  public static final String BINARY_TAG = "Binary";
   
   /**
    * is the method invoked to send something over the network
@@ -15,7 +15,6 @@
 package cats.network;
 
 import java.util.NoSuchElementException;
-import java.util.StringTokenizer;
 
 import cats.common.Constants;
 import cats.crew.Callboard;
@@ -31,6 +30,11 @@ import cats.trains.TrainStore;
  *   from TrainStatus clients.  It parses the messages and updates the
  *   TrainStore (or any other stores) as appropriate.  The parsing is based
  *   on the CATS ReplayHandler.
+ *   <p>
+ *   A request is parsed in place: the tokens are found by their positions
+ *   in the line, field tags are the Strings held in the store's format
+ *   (found without copying them out of the line), and only the values
+ *   are copied into the record handed to the store.
  * 
  * <p>Title: CATS - Crandic Automated Traffic System</p>
  * <p>Description: A program for dispatching trains on Pat Lana's
@@ -67,9 +71,9 @@ public class RequestParser {
   private boolean Debug = false;
 
   /**
-   * are the separator characters between tokens
+   * is the separator character between tokens
    */
-  static private final String SEPARATORS = Constants.FS_STRING;
+  static private final char SEPARATOR = Constants.FS;
 
   /**
    * is a common access point for finding the Singleton.
@@ -87,37 +91,38 @@ public class RequestParser {
    * @param line is the request
    */
   public void parseLine(String line){
-    String tag;
     String result = null;
-    StringTokenizer tokens;
-    tokens = new StringTokenizer(line, SEPARATORS);
+    int start = skipSeparators(line, 0);
+    int end = findEnd(line, start);
     if (Debug) {
       System.out.println(line);
     }
     try {
-      tag = tokens.nextToken();
-      if (Constants.ADD_TRAIN_REQUEST.equals(tag)) {
+      if (start == end) {
+        throw new NoSuchElementException();
+      }
+      if (isToken(line, start, end, Constants.ADD_TRAIN_REQUEST)) {
 //        result = processAddTrain(tokens);
-        result = processAddRequest(tokens, TrainStore.TrainKeeper);
+        result = processAddRequest(line, end, TrainStore.TrainKeeper);
       }
-      else if (Constants.CHANGE_TRAIN_REQUEST.equals(tag)) {
-        result = processChangeTrain(tokens);
+      else if (isToken(line, start, end, Constants.CHANGE_TRAIN_REQUEST)) {
+        result = processChangeTrain(line, end);
       }
-      else if (Constants.ADD_CREW_REQUEST.equals(tag)) {
-        result = processAddRequest(tokens, Callboard.Crews);
+      else if (isToken(line, start, end, Constants.ADD_CREW_REQUEST)) {
+        result = processAddRequest(line, end, Callboard.Crews);
       }
-      else if (Constants.CHANGE_CREW_REQUEST.equals(tag)) {
-        result = processChangeRequest(tokens, Callboard.Crews);
+      else if (isToken(line, start, end, Constants.CHANGE_CREW_REQUEST)) {
+        result = processChangeRequest(line, end, Callboard.Crews);
       }
-      else if (Constants.DELETE_CREW_REQUEST.equals(tag)) {
-        result = processDeleteRequest(tokens, Callboard.Crews);
+      else if (isToken(line, start, end, Constants.DELETE_CREW_REQUEST)) {
+        result = processDeleteRequest(line, end, Callboard.Crews);
       }
       else {
         result = new String("Unrecognized TrainStat request " + Constants.QUOTE + line + Constants.QUOTE);
       }
       if (result != null) {
-        System.out.println(tag + " " + result);
-        log.info(tag + " " + result);
+        System.out.println(line.substring(start, end) + " " + result);
+        log.info(line.substring(start, end) + " " + result);
       }
     }
     catch (NoSuchElementException nsee) {
@@ -145,17 +150,17 @@ public class RequestParser {
    * cannot be handled like other kinds because the Status field does not exist explicitly.
    * It is synthesized from a bit set.
    * 
-   * @param tokens is the request, broken into tokens
+   * @param line is the request
+   * @param from is where the fields start in the request
    * @return null if there are no problems or an error string
    * if something is wrong
    */
-  private String processChangeTrain(StringTokenizer tokens) {
+  private String processChangeTrain(String line, int from) {
     String oldStatus = null;
     String newStatus;
     String trainName = null;
     Train oldTrain = null;
-    GenericRecord newTrain = new GenericRecord();
-    toFieldPairs(tokens, newTrain);
+    GenericRecord newTrain = toRecord(line, from, TrainStore.TrainKeeper);
     newStatus = (String) newTrain.findValue(Train.WORKING_STATUS);
     trainName = (String) newTrain.findValue(Train.TRAIN_SYMBOL);
     if (trainName != null) {
@@ -184,15 +189,14 @@ public class RequestParser {
   /**
    * handles a request to add a record to a store.  The format of the request is
    * a list of all the fields, as properties ("tag=value").
-   * @param tokens is the input received from a TrainStat client, with the request
-   * identifier stripped off
+   * @param line is the input received from a TrainStat client
+   * @param from is where the fields start in the request
    * @param store is the store that the record is being added to
    * @returns an error string if something goes wrong and the record cannot be
    * added
    */
-  private String processAddRequest(StringTokenizer tokens, AbstractStore store) {
-    GenericRecord newRecord = new GenericRecord();
-    toFieldPairs(tokens, newRecord);
+  private String processAddRequest(String line, int from, AbstractStore store) {
+    GenericRecord newRecord = toRecord(line, from, store);
     store.addUntrustedRecord(newRecord);
     return null;
   }
@@ -201,15 +205,14 @@ public class RequestParser {
    * handles a request to change the fields in a record.  The format of the request is
    * a list of all the fields, as properties ("tag=value").  The first field contains
    * the key.
-   * @param tokens is the input received from a TrainStat client, with the request
-   * identifier stripped off
+   * @param line is the input received from a TrainStat client
+   * @param from is where the fields start in the request
    * @param store is the store containing the record that is beiong changed
    * @returns an error string if something goes wrong and the record cannot be
    * changed
    */  
-  private String processChangeRequest(StringTokenizer tokens, AbstractStore store) {
-    GenericRecord changedRecord = new GenericRecord();
-    toFieldPairs(tokens, changedRecord);
+  private String processChangeRequest(String line, int from, AbstractStore store) {
+    GenericRecord changedRecord = toRecord(line, from, store);
     store.changeRecord(changedRecord);
     return null;
   }
@@ -217,16 +220,22 @@ public class RequestParser {
   /**
    * handles a request to delete a record.  The format of the request is a String
    * with the key field value as it only parameter.
-   * @param tokens is the input received from a TrainStat client, with the request
-   * identifier stripped off
+   * @param line is the input received from a TrainStat client
+   * @param from is where the key starts in the request
    * @param store is the store that the record is being added to
    * @returns an error string if something goes wrong and the record cannot be
    * added
    */  
-  private String processDeleteRequest(StringTokenizer tokens, AbstractStore store) {
+  private String processDeleteRequest(String line, int from, AbstractStore store) {
     GenericRecord delRecord;
-    String keyField = tokens.nextToken();
+    int start = skipSeparators(line, from);
+    int end = findEnd(line, start);
+    String keyField;
     StoredObject so;
+    if (start == end) {
+      throw new NoSuchElementException();
+    }
+    keyField = line.substring(start, end);
     if (keyField != null) {
       delRecord = store.findRecord(store.getKeyTag(), keyField);
       if (delRecord == null) {
@@ -243,17 +252,125 @@ public class RequestParser {
   }
   
   /**
-   * constructs an GenericRecord of FieldPairs from the tokenized String
-   * There will be one FieldPair per token.
-   * Because of the FieldPair constructor, format checking is very loose.
-   * @param tokens is the tokenized String
-   * @param rec is the blank AbstractRecord
+   * constructs an GenericRecord of FieldPairs from the fields in a
+   * request.  There will be one FieldPair per field, split as the
+   * FieldPair constructor splits "tag=value", so format checking is very
+   * loose.  A tag that is in the store's format is the format's String;
+   * others are copied from the request.
+   * @param line is the request
+   * @param from is where the fields start in the request
+   * @param store is the store the fields are for
+   * @return the record
    */
-  private void toFieldPairs(StringTokenizer tokens, GenericRecord rec) {
-      while (tokens.hasMoreTokens()) {
-          rec.add(new FieldPair(tokens.nextToken()));
+  public GenericRecord toRecord(String line, int from, AbstractStore store) {
+    GenericRecord rec = new GenericRecord("", countTokens(line, from));
+    int start = skipSeparators(line, from);
+    int end;
+    int sep;
+    String tag;
+    String value;
+    while (start < line.length()) {
+      end = findEnd(line, start);
+      sep = line.indexOf(FieldPair.SEP, start);
+      if ((sep < 0) || (sep >= end)) {
+        tag = findTag(line, start, end, store);
+        value = "";
       }
-  }  
+      else {
+        tag = findTag(line, start, sep, store);
+        value = unquote(line, sep + 1, end);
+      }
+      rec.add(new FieldPair(tag, value));
+      start = skipSeparators(line, end);
+    }
+    return rec;
+  }
+
+  /**
+   * locates the tag of a field.
+   * @param line is the request
+   * @param start is where the tag starts
+   * @param end is where the tag ends
+   * @param store is the store the field is for
+   * @return the tag from the store's format or, if the format does not
+   * have it, a copy of the tag
+   */
+  private static String findTag(String line, int start, int end,
+      AbstractStore store) {
+    String tag = store.findFieldTag(line, start, end);
+    return (tag == null) ? line.substring(start, end) : tag;
+  }
+
+  /**
+   * copies a value out of a request, without the quotes around it.
+   * @param line is the request
+   * @param start is where the value starts
+   * @param end is where the value ends
+   * @return the value
+   */
+  private static String unquote(String line, int start, int end) {
+    if ((start < end) && (line.charAt(start) == '"')) {
+      ++start;
+    }
+    if ((start < end) && (line.charAt(end - 1) == '"')) {
+      --end;
+    }
+    return line.substring(start, end);
+  }
+
+  /**
+   * skips over separators.
+   * @param line is the request
+   * @param from is where to start
+   * @return the index of the first character that is not a separator
+   */
+  private static int skipSeparators(String line, int from) {
+    while ((from < line.length()) && (line.charAt(from) == SEPARATOR)) {
+      ++from;
+    }
+    return from;
+  }
+
+  /**
+   * finds the end of a token.
+   * @param line is the request
+   * @param from is where the token starts
+   * @return the index of the separator after the token or the length
+   * of the line
+   */
+  private static int findEnd(String line, int from) {
+    int end = line.indexOf(SEPARATOR, from);
+    return (end < 0) ? line.length() : end;
+  }
+
+  /**
+   * counts the tokens in a request.
+   * @param line is the request
+   * @param from is where to start counting
+   * @return the number of tokens
+   */
+  private static int countTokens(String line, int from) {
+    int count = 0;
+    int start = skipSeparators(line, from);
+    while (start < line.length()) {
+      ++count;
+      start = skipSeparators(line, findEnd(line, start));
+    }
+    return count;
+  }
+
+  /**
+   * compares a token to a String.
+   * @param line is the request
+   * @param start is where the token starts
+   * @param end is where the token ends
+   * @param match is the String
+   * @return true if they are the same
+   */
+  private static boolean isToken(String line, int start, int end, String match) {
+    return ((end - start) == match.length()) &&
+      line.regionMatches(start, match, 0, match.length());
+  }
   
   static org.apache.log4j.Logger log = org.apache.log4j.Logger.getLogger(
       RequestParser.class.getName());
@@ -0,0 +1,636 @@
+/*
+ * Name: SelectorServer.java
+ *
+ * What:
+ *   This file contains the thread that runs the TrainStat server with
+ *   non-blocking sockets.  It accepts connections, reads requests and
+ *   writes status for all the clients, using a single Selector.
+ *
+ * Special Considerations:
+ */
+package cats.network;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ *   This file contains the thread that runs the TrainStat server with
+ *   non-blocking sockets.  It accepts connections, reads requests and
+ *   writes status for all the clients, using a single Selector.  It is
+ *   an alternative to the ConnectionServer, which needs two threads for
+ *   each client.
+ *   <p>
+ *   Messages are the lines of the NetworkProtocol.  Each client has a
+ *   buffer for collecting the bytes received until a line is complete and
+ *   a queue of encoded lines waiting for the socket to accept them.  Any
+ *   thread can queue a message for a client; the Selector thread is woken
+ *   to write it, so that only the Selector thread touches the sockets.
+ *   <p>
+ *   A message sent to all clients is encoded once.  Each client's queue
+ *   holds a view of the same read-only bytes, and all the lines waiting
+ *   for a client are handed to its socket in one gathering write, so the
+ *   cost of a broadcast grows little with the number of clients.
+ *   <p>
+ *   Requests from the clients are handed to the RequestParser on the
+ *   Selector thread, in the order received.
+ *
+ * <p>Title: CATS - Crandic Automated Traffic System</p>
+ * <p>Description: A program for dispatching trains on Pat Lana's
+ * Crandic model railroad.
+ * <p>Copyright: Copyright (c) 2019</p>
+ * <p>Company: </p>
+ * @author Rodney Black
+ * @version $Revision$
+ */
+public class SelectorServer extends Thread implements NetworkProtocol {
+
+  /**
+   * is the name of the thread.
+   */
+  private static final String SERVICENAME = "TrainStatus";
+
+  /**
+   * is the initial size of the buffer for receiving from a client.
+   */
+  private static final int READ_SIZE = 4096;
+
+  /**
+   * is the longest line accepted from a client.  A client sending
+   * anything longer is not speaking the protocol and is disconnected.
+   */
+  private static final int MAX_LINE = 64 * 1024;
+
+  /**
+   * is the most lines handed to the socket in one write.
+   */
+  private static final int MAX_GATHER = 64;
+
+  /**
+   * is the port being listened to.
+   */
+  private final int Port;
+
+  /**
+   * is the multiplexer.
+   */
+  private volatile Selector Multiplexer;
+
+  /**
+   * is the socket which accepts connections.
+   */
+  private ServerSocketChannel Acceptor;
+
+  /**
+   * are the clients.
+   */
+  private final LinkedList<SelectorConnection> Clients =
+    new LinkedList<SelectorConnection>();
+
+  /**
+   * are the clients with messages queued since the Selector thread last
+   * looked.
+   */
+  private final ConcurrentLinkedQueue<SelectorConnection> Ready =
+    new ConcurrentLinkedQueue<SelectorConnection>();
+
+  /**
+   * are the clients to be disconnected by the Selector thread.
+   */
+  private final ConcurrentLinkedQueue<SelectorConnection> Doomed =
+    new ConcurrentLinkedQueue<SelectorConnection>();
+
+  /**
+   * is false when the server has been told to stop.
+   */
+  private volatile boolean Running = true;
+
+  /**
+   * is the ctor.
+   *
+   * @param port is the TCP/IP port to listen to.
+   */
+  public SelectorServer(int port) {
+    Port = port;
+    setDaemon(true);
+    setName(SERVICENAME);
+  }
+
+  /**
+   * stops the server.  The clients are sent a DISCONNECT (if their
+   * sockets will take it) and closed by the Selector thread, which then
+   * closes the port and exits.  A caller that needs the port free must
+   * join the thread.
+   */
+  public void shutdown() {
+    Running = false;
+    if (Multiplexer != null) {
+      Multiplexer.wakeup();
+    }
+  }
+
+  /**
+   * is called to retrieve the number of TrainStat clients.
+   *
+   * @return the number of clients connected.
+   */
+  public int getClientCount() {
+    synchronized (Clients) {
+      return Clients.size();
+    }
+  }
+
+  /**
+   * copies the clients to a list.
+   *
+   * @param clients is the list receiving the clients.
+   */
+  void listClients(List<TrainStatClient> clients) {
+    synchronized (Clients) {
+      clients.addAll(Clients);
+    }
+  }
+
+  /**
+   * queues a message for all the clients, outside the change stream.
+   *
+   * @param msg is the message.
+   */
+  public void sendMessage(String msg) {
+    byte[] line = AbstractConnection.encode(msg);
+    synchronized (Clients) {
+      for (Iterator<SelectorConnection> iter = Clients.iterator();
+      iter.hasNext(); ) {
+        iter.next().sendEncoded(line);
+      }
+    }
+  }
+
+  /**
+   * queues a change for all the clients.
+   *
+   * @param change is the change.
+   */
+  void broadcast(Broadcast change) {
+    synchronized (Clients) {
+      for (Iterator<SelectorConnection> iter = Clients.iterator();
+      iter.hasNext(); ) {
+        iter.next().Stream.deliver(change);
+      }
+    }
+  }
+
+  /**
+   * is the Selector thread.
+   */
+  public void run() {
+    try {
+      Multiplexer = Selector.open();
+      Acceptor = ServerSocketChannel.open();
+      Acceptor.socket().setReuseAddress(true);
+      Acceptor.socket().bind(new InetSocketAddress(Port));
+      Acceptor.configureBlocking(false);
+      Acceptor.register(Multiplexer, SelectionKey.OP_ACCEPT);
+    }
+    catch (IOException e) {
+      log.warn("Failed to open server socket: " + e.getMessage());
+      closeAll();
+      return;
+    }
+    log.info(SERVICENAME + ": listening on port " + Port);
+    try {
+      while (Running) {
+        Multiplexer.select();
+        armWriters();
+        dropDoomed();
+        for (Iterator<SelectionKey> iter =
+          Multiplexer.selectedKeys().iterator(); iter.hasNext(); ) {
+          SelectionKey key = iter.next();
+          iter.remove();
+          if (!key.isValid()) {
+            continue;
+          }
+          if (key.isAcceptable()) {
+            accept();
+          }
+          else {
+            service(key);
+          }
+        }
+      }
+    }
+    catch (IOException ex) {
+      log.error(SERVICENAME + ": IO Exception: ", ex);
+    }
+    closeAll();
+    log.info(SERVICENAME + ": Exiting");
+  }
+
+  /**
+   * accepts a new client.
+   */
+  private void accept() {
+    SocketChannel channel;
+    SelectorConnection client;
+    try {
+      while ((channel = Acceptor.accept()) != null) {
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        client = new SelectorConnection(channel);
+        client.Key = channel.register(Multiplexer, SelectionKey.OP_READ,
+            client);
+        synchronized (Clients) {
+          Clients.add(client);
+        }
+        log.info("Connection established from " + channel.socket());
+        TrainStatServer.instance().greet(client);
+      }
+    }
+    catch (IOException ex) {
+      log.warn(SERVICENAME + ": could not accept a connection: " + ex);
+    }
+  }
+
+  /**
+   * handles a client whose socket is ready.
+   *
+   * @param key is the client's registration with the Selector.
+   */
+  private void service(SelectionKey key) {
+    SelectorConnection client = (SelectorConnection) key.attachment();
+    try {
+      if (key.isReadable()) {
+        client.read();
+      }
+      if (key.isValid() && key.isWritable()) {
+        client.write();
+      }
+    }
+    catch (IOException ex) {
+      log.debug(CLIENT_NAME + ": " + ex);
+      drop(client);
+    }
+  }
+
+  /**
+   * asks the Selector to report when the clients with queued messages
+   * can be written to.
+   */
+  private void armWriters() {
+    SelectorConnection client;
+    while ((client = Ready.poll()) != null) {
+      if ((client.Key != null) && client.Key.isValid()) {
+        client.Key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+      }
+    }
+  }
+
+  /**
+   * disconnects the clients that have been asked to leave.
+   */
+  private void dropDoomed() {
+    SelectorConnection client;
+    while ((client = Doomed.poll()) != null) {
+      if (client.Channel.isOpen()) {
+        drop(client);
+      }
+    }
+  }
+
+  /**
+   * disconnects a client.
+   *
+   * @param client is the client.
+   */
+  private void drop(SelectorConnection client) {
+    synchronized (Clients) {
+      Clients.remove(client);
+    }
+    client.close();
+    log.info("Connection from " + client.Channel.socket() + " dropped");
+  }
+
+  /**
+   * disconnects all the clients and stops listening.
+   */
+  private void closeAll() {
+    ArrayList<SelectorConnection> clients;
+    synchronized (Clients) {
+      clients = new ArrayList<SelectorConnection>(Clients);
+      Clients.clear();
+    }
+    for (Iterator<SelectorConnection> iter = clients.iterator();
+    iter.hasNext(); ) {
+      SelectorConnection client = iter.next();
+      client.sendMessage(DISCONNECT);
+      try {
+        client.write();
+      }
+      catch (IOException ex) {
+      }
+      client.close();
+    }
+    try {
+      if (Acceptor != null) {
+        Acceptor.close();
+      }
+      if (Multiplexer != null) {
+        Multiplexer.close();
+      }
+    }
+    catch (IOException ex) {
+    }
+  }
+
+  /**
+   * is the state of one client.
+   */
+  private class SelectorConnection implements TrainStatClient {
+
+    /**
+     * is the socket.
+     */
+    final SocketChannel Channel;
+
+    /**
+     * is the registration of the socket with the Selector.
+     */
+    SelectionKey Key;
+
+    /**
+     * holds the bytes received that are not yet a complete line.
+     */
+    private ByteBuffer InBuffer = ByteBuffer.allocate(READ_SIZE);
+
+    /**
+     * is where the client is in the changes.
+     */
+    final ClientStream Stream = new ClientStream(this);
+
+    /**
+     * are the encoded lines waiting to be written.
+     */
+    private final LinkedList<ByteBuffer> OutQueue =
+      new LinkedList<ByteBuffer>();
+
+    /**
+     * holds the lines for a gathering write.
+     */
+    private final ByteBuffer[] Gather = new ByteBuffer[MAX_GATHER];
+
+    /**
+     * is true while the Selector thread has been (or is about to be) asked
+     * to write OutQueue.
+     */
+    private boolean Writing;
+
+    /**
+     * is true after OutQueue has overflowed, until a snapshot is sent.
+     * Messages are discarded while it is true.
+     */
+    private boolean Overflowed;
+
+    /**
+     * is the number of messages discarded because OutQueue overflowed.
+     */
+    private int Dropped;
+
+    /**
+     * is the ctor.
+     *
+     * @param channel is the socket.
+     */
+    SelectorConnection(SocketChannel channel) {
+      Channel = channel;
+    }
+
+    /**
+     * queues a message for the client.  It can be called from any thread.
+     *
+     * @param msg is the message.
+     */
+    public void sendMessage(String msg) {
+      sendEncoded(AbstractConnection.encode(msg));
+    }
+
+    /**
+     * queues an encoded message for the client.  It can be called from
+     * any thread.
+     *
+     * @param line is the encoded message.  It may be shared with other
+     * clients, so the client writes from its own view of it.
+     */
+    public void sendEncoded(byte[] line) {
+      int limit = TrainStatServer.getQueueLimit();
+      int discarded = 0;
+      synchronized (OutQueue) {
+        if (Overflowed) {
+          ++Dropped;
+          return;
+        }
+        if ((limit > 0) && (OutQueue.size() >= limit)) {
+          discarded = OutQueue.size() + 1;
+          Dropped += discarded;
+          OutQueue.clear();
+          Overflowed = true;
+        }
+      }
+      if (discarded != 0) {
+        TrainStatServer.instance().clientOverflowed(this, discarded);
+      }
+      else {
+        enqueue(ByteBuffer.wrap(line).asReadOnlyBuffer());
+      }
+    }
+
+    /**
+     * queues a snapshot of the stores, regardless of the queue limit,
+     * and resumes accepting messages.
+     *
+     * @param lines are the encoded lines of the snapshot.
+     */
+    public void sendSnapshot(byte[] lines) {
+      synchronized (OutQueue) {
+        Overflowed = false;
+      }
+      enqueue(ByteBuffer.wrap(lines));
+    }
+
+    /**
+     * adds some bytes to the queue and has the Selector thread write them.
+     *
+     * @param line is the bytes.
+     */
+    private void enqueue(ByteBuffer line) {
+      boolean wake = false;
+      synchronized (OutQueue) {
+        OutQueue.add(line);
+        if (!Writing) {
+          Writing = true;
+          wake = true;
+        }
+      }
+      if (wake) {
+        Ready.add(this);
+        Multiplexer.wakeup();
+      }
+    }
+
+    /**
+     * reads what the socket has and passes the complete lines to the
+     * RequestParser.
+     *
+     * @throws IOException if the socket fails or the client disconnects.
+     */
+    void read() throws IOException {
+      int count = Channel.read(InBuffer);
+      int start = 0;
+      int end;
+      byte[] bytes;
+      if (count < 0) {
+        throw new ClosedChannelException();
+      }
+      bytes = InBuffer.array();
+      for (int b = 0; b < InBuffer.position(); ++b) {
+        if (bytes[b] == '\n') {
+          end = b;
+          if ((end > start) && (bytes[end - 1] == '\r')) {
+            --end;
+          }
+          String line = new String(bytes, start, end - start);
+          log.debug(CLIENT_NAME + ": Received: " + line);
+          TrainStatServer.instance().receive(this, line);
+          start = b + 1;
+        }
+      }
+      InBuffer.limit(InBuffer.position());
+      InBuffer.position(start);
+      InBuffer.compact();
+      if (!InBuffer.hasRemaining()) {
+        if (InBuffer.capacity() >= MAX_LINE) {
+          throw new IOException("line too long");
+        }
+        ByteBuffer bigger = ByteBuffer.allocate(InBuffer.capacity() * 2);
+        InBuffer.flip();
+        bigger.put(InBuffer);
+        InBuffer = bigger;
+      }
+    }
+
+    /**
+     * writes as many queued lines as the socket will take.  When all
+     * have been written, the Selector stops reporting that the socket can
+     * be written to.
+     *
+     * @throws IOException if the socket fails.
+     */
+    void write() throws IOException {
+      int count;
+      synchronized (OutQueue) {
+        while (!OutQueue.isEmpty()) {
+          count = 0;
+          for (Iterator<ByteBuffer> iter = OutQueue.iterator();
+          iter.hasNext() && (count < MAX_GATHER); ) {
+            Gather[count++] = iter.next();
+          }
+          Channel.write(Gather, 0, count);
+          for (int b = 0; b < count; ++b) {
+            Gather[b] = null;
+          }
+          while ((count > 0) && !OutQueue.getFirst().hasRemaining()) {
+            OutQueue.removeFirst();
+            --count;
+          }
+          if (count > 0) {
+            // the socket is full
+            return;
+          }
+        }
+        Writing = false;
+        if (Key.isValid()) {
+          Key.interestOps(SelectionKey.OP_READ);
+        }
+      }
+    }
+
+    /**
+     * has the Selector thread disconnect the client.
+     */
+    public void disconnect() {
+      Doomed.add(this);
+      Multiplexer.wakeup();
+    }
+
+    /**
+     * is called to retrieve the number of messages waiting to be sent.
+     *
+     * @return the length of the queue.
+     */
+    public int getQueueDepth() {
+      synchronized (OutQueue) {
+        return OutQueue.size();
+      }
+    }
+
+    /**
+     * is called to retrieve the number of messages discarded because
+     * the queue overflowed.
+     *
+     * @return the number of messages discarded.
+     */
+    public int getDroppedCount() {
+      synchronized (OutQueue) {
+        return Dropped;
+      }
+    }
+
+    /**
+     * is called to retrieve the address of the client.
+     *
+     * @return the address of the client.
+     */
+    public String getRemoteName() {
+      return String.valueOf(Channel.socket().getRemoteSocketAddress());
+    }
+
+    /**
+     * is called to retrieve where the client is in the changes.
+     *
+     * @return the client's position in the change stream.
+     */
+    public ClientStream getStream() {
+      return Stream;
+    }
+
+    /**
+     * closes the socket.
+     */
+    void close() {
+      synchronized (OutQueue) {
+        OutQueue.clear();
+      }
+      if (Key != null) {
+        Key.cancel();
+      }
+      try {
+        Channel.close();
+      }
+      catch (IOException ex) {
+      }
+    }
+  }
+
+  static org.apache.log4j.Logger log = org.apache.log4j.Logger.getLogger(
+      SelectorServer.class.getName());
+}
+/* @(#)SelectorServer.java */
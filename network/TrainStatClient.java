@@ -0,0 +1,83 @@
+/*
+ * Name: TrainStatClient.java
+ *
+ * What:
+ *   This file contains the interface that the TrainStatServer uses to
+ *   manage the connection to a TrainStat client, regardless of which
+ *   server implementation accepted it.
+ *
+ * Special Considerations:
+ */
+package cats.network;
+
+/**
+ *   This file contains the interface that the TrainStatServer uses to
+ *   manage the connection to a TrainStat client, regardless of which
+ *   server implementation accepted it.
+ *   <p>
+ *   A client's queue of messages waiting to be sent is bounded.  When
+ *   it fills, the queue is emptied and the client ignores further
+ *   messages until it is either sent a snapshot of the stores or
+ *   disconnected.
+ *
+ * <p>Title: CATS - Crandic Automated Traffic System</p>
+ * <p>Description: A program for dispatching trains on Pat Lana's
+ * Crandic model railroad.
+ * <p>Copyright: Copyright (c) 2019</p>
+ * <p>Company: </p>
+ * @author Rodney Black
+ * @version $Revision$
+ */
+interface TrainStatClient extends NetworkProtocol {
+
+  /**
+   * queues an encoded message, subject to the queue limit.
+   *
+   * @param line is the message and line terminator.  It may be shared
+   * with other clients, so must not be changed.
+   */
+  public void sendEncoded(byte[] line);
+
+  /**
+   * queues a snapshot of the stores, regardless of the queue limit, and
+   * resumes accepting messages.
+   *
+   * @param lines are the encoded lines of the snapshot.
+   */
+  public void sendSnapshot(byte[] lines);
+
+  /**
+   * closes the connection.
+   */
+  public void disconnect();
+
+  /**
+   * is called to retrieve the number of messages waiting to be sent.
+   *
+   * @return the number of queue entries.
+   */
+  public int getQueueDepth();
+
+  /**
+   * is called to retrieve the number of messages discarded because the
+   * client was too far behind.
+   *
+   * @return the number of messages.
+   */
+  public int getDroppedCount();
+
+  /**
+   * is called to retrieve the address of the client.
+   *
+   * @return a description of the other end of the connection.
+   */
+  public String getRemoteName();
+
+  /**
+   * is called to retrieve where the client is in the changes.
+   *
+   * @return the client's position in the change stream.
+   */
+  public ClientStream getStream();
+}
+/* @(#)TrainStatClient.java */
@@ -23,19 +23,29 @@
  */
 package cats.network;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.StringTokenizer;
+import java.util.Timer;
+import java.util.TimerTask;
 
 import cats.common.Constants;
 import cats.common.VersionList;
 import cats.crew.Callboard;
+import cats.gui.CounterFactory;
+import cats.gui.DropSlowClients;
+import cats.gui.Sequence;
 import cats.jobs.JobStore;
 import cats.layout.Logger;
 import cats.layout.store.AbstractStore;
 import cats.layout.store.AbstractStoreWatcher;
+import cats.rr_events.RREvent;
 import cats.trains.TrainStore;
 
 /**
@@ -48,6 +58,23 @@ import cats.trains.TrainStore;
  *   <p>
  *   The JMRI loconetovertcp code also provided a guide for the architecture
  *   of this class.
+ *   <p>
+ *   If the server is non-blocking, a SelectorServer replaces the listener,
+ *   the distributor and the ConnectionServer threads.
+ *   <p>
+ *   The number of messages waiting for a client is limited by the
+ *   "TrainStat Queue Limit" adjustment.  A client that reaches it is
+ *   either disconnected or has its backlog replaced by a fresh snapshot
+ *   of the stores.
+ *   <p>
+ *   Every change is numbered and the recent ones remembered.  A client
+ *   that sends a Resume request when it connects receives the numbers
+ *   and, if it was connected earlier, only the changes it missed.  A
+ *   client that does not is sent the stores after RESUME_WAIT.
+ *   <p>
+ *   A client can ask for the binary form of the protocol (see
+ *   BinaryCodec) before it is sent the stores.  Its requests are still
+ *   lines of text.
  * 
  * <p>Title: CATS - Crandic Automated Traffic System</p>
  * <p>Description: A program for dispatching trains on Pat Lana's
@@ -84,6 +111,18 @@ NetworkProtocol {
    */
   private static final String DISTRIBUTOR_NAME = "Distributor";
   
+  /**
+   * is how long (in milliseconds) a new client has to ask to resume
+   * before it is sent the contents of the stores.
+   */
+  private static final long RESUME_WAIT = 500;
+  
+  /**
+   * is how long (in milliseconds) disable() waits for the thread
+   * listening for clients to let go of the port.
+   */
+  private static final long SHUTDOWN_WAIT = 2000;
+  
   /**
    * is the Singleton.  It manages the connections.
    */
@@ -93,13 +132,23 @@ NetworkProtocol {
    * is the TCP/IP socket through which messages are received
    * from the clients.
    */
-  private ServerSocket serverSocket;
+  private volatile ServerSocket serverSocket;
   
   /**
    * is the queue by which objects on the application queue up messages
    * for the remote end.
    */
-  private LinkedList<String> MsgQueue;
+  private LinkedList<Broadcast> MsgQueue;
+  
+  /**
+   * is the recent changes, by sequence number.
+   */
+  private final ChangeHistory History = new ChangeHistory();
+  
+  /**
+   * sends the stores to the new clients that do not ask to resume.
+   */
+  private final Timer Greeter = new Timer("TrainStat greeter", true);
   
   /**
    * is the TCP/IP information on the TrainStat clients.
@@ -116,7 +165,7 @@ NetworkProtocol {
    * is the thread that listens to the receiver for clients
    * registering.
    */
-  private Thread SocketListener;
+  private volatile Thread SocketListener;
   
   /**
    * is the port number currently in use.
@@ -128,12 +177,29 @@ NetworkProtocol {
    */
   private NetworkStoreWatcher Eyes;
   
+  /**
+   * is true if the next time the server is enabled, it should be the
+   * non-blocking server.
+   */
+  private boolean NonBlocking;
+  
+  /**
+   * is the non-blocking server, when it is running.
+   */
+  private volatile SelectorServer Multiplexer;
+  
+  /**
+   * is the limit on the messages waiting for a client, from the
+   * Adjustments menu.
+   */
+  private static Sequence QueueLimit;
+  
   /**
    * is the ctor.
    */
   private TrainStatServer() {
     Clients = new LinkedList<ConnectionServer>() ;
-    MsgQueue = new LinkedList<String>();
+    MsgQueue = new LinkedList<Broadcast>();
     Eyes = new NetworkStoreWatcher();
   }
   
@@ -166,6 +232,16 @@ NetworkProtocol {
     PortNumber = port;
   }
   
+  /**
+   * is invoked to select which server is run.  Like the port number,
+   * it takes effect the next time the server is enabled.
+   * @param nonBlocking is true for the SelectorServer and false for
+   * a thread per client.
+   */
+  public void setNonBlocking(boolean nonBlocking) {
+    NonBlocking = nonBlocking;
+  }
+  
   /**
    * starts up the TrainStatServer
    *
@@ -176,7 +252,14 @@ NetworkProtocol {
    * starts up the TranStat server.
    */
   public void enable(){
-    if (SocketListener == null) {
+    if (NonBlocking) {
+      if ((Multiplexer == null) && (SocketListener == null)) {
+        Multiplexer = new SelectorServer(getPortNumber());
+        Multiplexer.start();
+        Eyes.register();
+      }
+    }
+    else if ((SocketListener == null) && (Multiplexer == null)) {
       MsgQueue.clear();
       SocketListener = new Thread(new ClientListener()) ;
       SocketListener.setDaemon(true);
@@ -191,19 +274,31 @@ NetworkProtocol {
   }
   
   /**
-   * stops the TrainStat service.
+   * stops the TrainStat service.  It returns when the thread listening
+   * for clients has closed the port (or SHUTDOWN_WAIT has passed), so
+   * that the server can be enabled again right away.
    */
   public void disable(){
-    if (SocketListener != null) {
+    SelectorServer multiplexer = Multiplexer;
+    Thread listener = SocketListener;
+    if (multiplexer != null) {
       Eyes.unregister();
-      SocketListener.interrupt();
+      multiplexer.shutdown();
+      Multiplexer = null;
+      waitFor(multiplexer);
+    }
+    if (listener != null) {
+      Eyes.unregister();
+      listener.interrupt();
       SocketListener = null ;
       try {
-        if( serverSocket != null )
-          serverSocket.close();
+        ServerSocket socket = serverSocket;
+        if( socket != null )
+          socket.close();
       }
       catch (IOException ex) {
       }
+      waitFor(listener);
       
       TxThread.interrupt();
       
@@ -222,12 +317,32 @@ NetworkProtocol {
     }
   }
 
+  /**
+   * waits for a server thread to exit.
+   * @param server is the thread
+   */
+  private void waitFor(Thread server) {
+    try {
+      server.join(SHUTDOWN_WAIT);
+    }
+    catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+    if (server.isAlive()) {
+      log.warn(SERVICENAME + ": " + server.getName() +
+          " did not stop in " + SHUTDOWN_WAIT + " milliseconds");
+    }
+  }
+
   /**
    * returns the connection status
    * @return true if ClientListener is listening to
    * the socket.
    */
   public boolean isConnected() {
+    if (Multiplexer != null) {
+      return Multiplexer.isAlive();
+    }
     return (SocketListener != null);
   }
   
@@ -238,13 +353,18 @@ NetworkProtocol {
   class ClientListener implements Runnable {
     
     /**
-     * is the thread that listens to the socket
+     * is the thread that listens to the socket.  When it exits, it
+     * clears SocketListener and serverSocket only if they are still its
+     * own, so it does not forget a listener started after it.
      */
     public void run(){
+      Thread self = Thread.currentThread();
+      ServerSocket socket = null;
       Socket newClientConnection;
       ConnectionServer client;
       try {
-        serverSocket = new ServerSocket(getPortNumber());
+        socket = new ServerSocket(getPortNumber());
+        serverSocket = socket;
       }
       catch (IOException e) {
         String diagnostic = "Failed to open server socket: " +
@@ -252,31 +372,193 @@ NetworkProtocol {
         log.warn(diagnostic);
       }
 //    jmri.util.SocketUtil.setReuseAddress(serverSocket, true);
-      if (serverSocket != null) {
+      if (socket != null) {
         try {
-          while (!SocketListener.isInterrupted()) {
-            newClientConnection = serverSocket.accept();
+          while (!self.isInterrupted()) {
+            newClientConnection = socket.accept();
             client = new ConnectionServer(newClientConnection);
             client.addListener(TrainStatServer.instance());
             addClient(client);
-            client.sendMessage(CLIENT_NAME + Constants.FS + "Version" +
-                Constants.FS + Logger.VERSION + Constants.FS +
-                Constants.CATS_TAG + Constants.FS_STRING + VersionList.CATS_VERSION);
-            dumpAllStores(client);
+            greet(client);
           }
-          serverSocket.close();
+          socket.close();
         }
         catch (IOException ex) {
           if (ex.toString().indexOf("socket closed") == -1) {
             log.error(SERVICENAME + ": IO Exception: ", ex);
           }
+          try {
+            socket.close();
+          }
+          catch (IOException e) {
+          }
         }
-        serverSocket = null;
+        if (serverSocket == socket) {
+          serverSocket = null;
+        }
+      }
+      if (SocketListener == self) {
+        SocketListener = null;
       }
-      SocketListener = null;
     }
   }
   
+  /**
+   * sends a new client the version and, unless it asks to resume, the
+   * contents of the stores.
+   * @param client is the client
+   */
+  void greet(final TrainStatClient client) {
+    client.sendMessage(CLIENT_NAME + Constants.FS + "Version" +
+        Constants.FS + Logger.VERSION + Constants.FS +
+        Constants.CATS_TAG + Constants.FS_STRING + VersionList.CATS_VERSION +
+        Constants.FS + BINARY_TAG + Constants.FS + BinaryCodec.VERSION);
+    Greeter.schedule(new TimerTask() {
+      public void run() {
+        sendSnapshot(client, true);
+      }
+    }, RESUME_WAIT);
+  }
+  
+  /**
+   * handles a message from a client.
+   * @param client is the client
+   * @param line is the message
+   */
+  void receive(TrainStatClient client, String line) {
+    StringTokenizer tokens;
+    long epoch = 0;
+    long sequence = -1;
+    if (line.startsWith(RESUME_TAG)) {
+      tokens = new StringTokenizer(line, Constants.FS_STRING);
+      tokens.nextToken();
+      try {
+        if (tokens.hasMoreTokens()) {
+          epoch = Long.parseLong(tokens.nextToken());
+          sequence = Long.parseLong(tokens.nextToken());
+        }
+      }
+      catch (RuntimeException e) {
+        log.warn("Bad resume request from " + client.getRemoteName() + ": " +
+            line);
+      }
+      if (!client.getStream().resume(History, epoch, sequence)) {
+        sendSnapshot(client, false);
+      }
+    }
+    else if (line.startsWith(BINARY_TAG)) {
+      tokens = new StringTokenizer(line, Constants.FS_STRING);
+      tokens.nextToken();
+      try {
+        if (Integer.parseInt(tokens.nextToken()) >= BinaryCodec.VERSION) {
+          client.getStream().useBinary(History);
+          return;
+        }
+      }
+      catch (RuntimeException e) {
+      }
+      log.warn("Bad binary request from " + client.getRemoteName() + ": " +
+          line);
+    }
+    else {
+      RequestParser.instance().parseLine(line);
+    }
+  }
+  
+  /**
+   * sends a client the contents of the stores.  The snapshot is taken on
+   * the RREvent thread, so that it is consistent with the changes
+   * numbered after it.
+   * @param client is the client
+   * @param ifWaiting is true to skip the snapshot if the client has
+   * already been brought up to date
+   */
+  private void sendSnapshot(final TrainStatClient client,
+      final boolean ifWaiting) {
+    new RREvent() {
+      @Override
+      public int getLane() {
+        return BULK_LANE;
+      }
+      
+      @Override
+      public void doIt() {
+        client.getStream().snapshot(History, ifWaiting);
+      }
+    }.queUp();
+  }
+  
+  /**
+   * is called to retrieve the most messages that can be waiting for
+   * a client.
+   * @return the limit from the Adjustments menu or 0 for no limit
+   */
+  static int getQueueLimit() {
+    if ((QueueLimit == null) && (CounterFactory.CountKeeper != null)) {
+      QueueLimit = CounterFactory.CountKeeper.findSequence(
+          CounterFactory.NETQUEUETAG);
+    }
+    if (QueueLimit == null) {
+      return 0;
+    }
+    return QueueLimit.getAdjustment();
+  }
+  
+  /**
+   * is called when a client has fallen too far behind.  Its backlog has
+   * been discarded, so it is either disconnected or sent a new snapshot
+   * of the stores.
+   * <p>
+   * It is called while a message is being queued, so the caller can be
+   * holding MsgQueue, the list of clients and the client's ClientStream.
+   * Queuing the snapshot can wait for room in the RREvent queue, whose
+   * thread needs those locks, so the client is handed to the Greeter
+   * thread, which holds none of them.
+   * @param client is the client
+   * @param discarded is the number of messages it lost
+   */
+  void clientOverflowed(final TrainStatClient client, int discarded) {
+    final boolean drop = DropSlowClients.instance().getFlagValue();
+    log.warn(CLIENT_NAME + " client " + client.getRemoteName() +
+        " fell " + discarded + " messages behind; " +
+        (drop ? "disconnecting" : "resynchronizing"));
+    Greeter.schedule(new TimerTask() {
+      public void run() {
+        if (drop) {
+          client.disconnect();
+        }
+        else {
+          sendSnapshot(client, false);
+        }
+      }
+    }, 0);
+  }
+  
+  /**
+   * describes the backlog of each client, for the network status.
+   * @return a line for each client
+   */
+  public List<String> describeClients() {
+    List<TrainStatClient> clients = new ArrayList<TrainStatClient>();
+    List<String> lines = new ArrayList<String>();
+    SelectorServer multiplexer = Multiplexer;
+    TrainStatClient client;
+    if (multiplexer != null) {
+      multiplexer.listClients(clients);
+    }
+    else {
+      synchronized (Clients) {
+        clients.addAll(Clients);
+      }
+    }
+    for (Iterator<TrainStatClient> iter = clients.iterator(); iter.hasNext(); ) {
+      client = iter.next();
+      lines.add(client.getRemoteName() + ": " + client.getQueueDepth() +
+          " queued, " + client.getDroppedCount() + " dropped");
+    }
+    return lines;
+  }
+  
   /**
    * registers a TrainStat client
    * @param handler is the client
@@ -303,6 +585,10 @@ NetworkProtocol {
    * of trains.
    */
   public int getClientCount() {
+    SelectorServer multiplexer = Multiplexer;
+    if (multiplexer != null) {
+      return multiplexer.getClientCount();
+    }
     synchronized (Clients) {
       return Clients.size() ;
     }
@@ -320,8 +606,7 @@ NetworkProtocol {
    * and sending them to the remote ends.
    */
   private class TxHandler implements Runnable {
-    String  msg;
-    StringBuffer outBuf = new StringBuffer();
+    Broadcast msg;
 
     /**
      * is the ctor
@@ -349,12 +634,11 @@ NetworkProtocol {
           }
 
           if (msg != null) {
-            outBuf.setLength(0);
-            outBuf.append(msg.toString());
-//            outBuf.append(EOL);
+            // The message was encoded once and the bytes are shared by
+            // all the clients.
             synchronized(Clients) {
               for (Iterator<ConnectionServer> iter = Clients.iterator(); iter.hasNext(); ) {
-                iter.next().sendMessage(outBuf.toString());
+                iter.next().getStream().deliver(msg);
               }
             }
           }
@@ -365,7 +649,6 @@ NetworkProtocol {
       }
         // Interrupt the Parent to let it know we are exiting for some reason
       msg = null;
-      outBuf = null;
       TxThread = null;
       log.info(DISTRIBUTOR_NAME + ": Exiting" );
     }
@@ -376,10 +659,18 @@ NetworkProtocol {
    * @param msg is the message to send
    */
   public void sendMessage(String msg){
+    SelectorServer multiplexer = Multiplexer;
     synchronized(MsgQueue)
     {
-      MsgQueue.add(msg);
-      MsgQueue.notify();
+      // Numbering and queuing under one lock keeps the changes in order.
+      Broadcast change = History.record(msg);
+      if (multiplexer != null) {
+        multiplexer.broadcast(change);
+      }
+      else {
+        MsgQueue.add(change);
+        MsgQueue.notify();
+      }
     }
   }
 
@@ -406,6 +697,39 @@ NetworkProtocol {
     }
   }
   
+  /**
+   * encodes the state of all stores, as dumpAllStores() would send it.
+   * The records come from each store's StoreImage, so only the records
+   * that changed since the last snapshot are encoded again.  All lines
+   * share one time stamp, which is encoded once.
+   * 
+   * @return the lines, with line terminators.
+   */
+  static byte[] snapshot() {
+    ByteArrayOutputStream image = new ByteArrayOutputStream();
+    byte[] prefix = AbstractStoreWatcher.buildAddString("").getBytes();
+    byte[] terminator = AbstractConnection.encode("");
+    TrainStore.TrainKeeper.getImage().write(image, prefix, terminator);
+    JobStore.JobsKeeper.getImage().write(image, prefix, terminator);
+    Callboard.Crews.getImage().write(image, prefix, terminator);
+    return image.toByteArray();
+  }
+  
+  /**
+   * encodes the state of all stores in the binary form of the protocol,
+   * in the same order as snapshot().
+   * 
+   * @param codec is the encoder for the binary form
+   * @return the frames
+   */
+  static byte[] binarySnapshot(BinaryCodec codec) {
+    ByteArrayOutputStream image = new ByteArrayOutputStream();
+    codec.writeStore(image, TrainStore.TrainKeeper);
+    codec.writeStore(image, JobStore.JobsKeeper);
+    codec.writeStore(image, Callboard.Crews);
+    return image.toByteArray();
+  }
+  
   /**
    * sends the state of all stores to the far end(s)
    * 
@@ -0,0 +1,767 @@
+/*
+ * Name: WebGateway.java
+ *
+ * What:
+ *   This file contains a singleton object that serves the contents of the
+ *   train, job and crew stores to web browsers, as JSON over HTTP, and
+ *   pushes the changes to them as Server-Sent Events.
+ *
+ * Special Considerations:
+ *   The HTTP server is the one in the JDK (com.sun.net.httpserver).
+ */
+package cats.network;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import cats.crew.Callboard;
+import cats.jobs.JobStore;
+import cats.layout.store.AbstractStore;
+import cats.layout.store.AbstractStoreWatcher;
+import cats.rr_events.RREvent;
+import cats.trains.TrainStore;
+
+/**
+ *   This file contains a singleton object that serves the contents of the
+ *   train, job and crew stores to web browsers, as JSON over HTTP, and
+ *   pushes the changes to them as Server-Sent Events.
+ *   <p>
+ *   GET /trains, /jobs and /crews return a JSON array with an object for
+ *   each record, in the form TrainStat clients receive it.  Each reply has
+ *   an ETag that changes whenever the store changes, so a browser that
+ *   polls with If-None-Match is answered "304 Not Modified" without the
+ *   store being read.  The JSON for a store is kept until the store
+ *   changes, so a store is encoded once, however many browsers ask.
+ *   <p>
+ *   GET /events opens a Server-Sent Events stream.  The first event,
+ *   named "snapshot", holds all three stores.  It is followed by an
+ *   unnamed event for every message the stores broadcast (the messages
+ *   the TrainStat clients receive), converted to JSON by the JsonEncoder.
+ *   The snapshot is taken while the changes are held back, so no change
+ *   is missed, though a change may appear in both.
+ *   <p>
+ *   The stores are read on the RREvent thread, as they are for the
+ *   TrainStat clients.  Each event stream holds a thread of the gateway.
+ *   A stream whose queue reaches the "TrainStat Queue Limit" is closed;
+ *   the browser reconnects and starts over with a fresh snapshot.
+ *
+ * <p>Title: CATS - Crandic Automated Traffic System</p>
+ * <p>Description: A program for dispatching trains on Pat Lana's
+ * Crandic model railroad.
+ * <p>Copyright: Copyright (c) 2019</p>
+ * <p>Company: </p>
+ * @author Rodney Black
+ * @version $Revision$
+ */
+public class WebGateway {
+
+  /**
+   * is the name of the threads.
+   */
+  private static final String SERVICENAME = "WebGateway";
+
+  /**
+   * is how far above the TrainStat port the gateway listens.
+   */
+  public static final int PORT_OFFSET = 1;
+
+  /**
+   * are the paths the stores are served on.  They are in the order the
+   * stores are sent to TrainStat clients.
+   */
+  private static final String[] STORE_PATHS = {
+    "trains",
+    "jobs",
+    "crews"
+  };
+
+  /**
+   * is the path of the event stream.
+   */
+  private static final String EVENTS_PATH = "events";
+
+  /**
+   * is the name of the event holding all the stores.
+   */
+  private static final String SNAPSHOT_EVENT = "snapshot";
+
+  /**
+   * is the character set of everything sent.
+   */
+  private static final String CHARSET = "UTF-8";
+
+  /**
+   * is how long (in milliseconds) a request waits for the RREvent thread
+   * to read a store.
+   */
+  private static final long READ_WAIT = 5000;
+
+  /**
+   * is how long (in milliseconds) an event stream can be idle before a
+   * comment is sent, so that a browser which has gone away is noticed.
+   */
+  private static final long KEEP_ALIVE = 15000;
+
+  /**
+   * is the comment sent on an idle event stream.
+   */
+  private static final byte[] KEEP_ALIVE_BYTES = ":\n\n".getBytes();
+
+  /**
+   * is the singleton.
+   */
+  private static WebGateway Singleton;
+
+  /**
+   * identifies this run of CATS in the ETags, so that a browser does not
+   * mistake a store from an earlier run for a current one.
+   */
+  private final String Epoch = Long.toString(System.currentTimeMillis(), 36);
+
+  /**
+   * is the HTTP server.  It is null when the gateway is not running.
+   */
+  private HttpServer Server;
+
+  /**
+   * are the threads that run the HTTP requests.
+   */
+  private ExecutorService Workers;
+
+  /**
+   * is true while the gateway is running.
+   */
+  private volatile boolean Running;
+
+  /**
+   * are the event streams.
+   */
+  private final LinkedList<EventClient> Clients = new LinkedList<EventClient>();
+
+  /**
+   * is the JSON of each store, in the order of STORE_PATHS.
+   */
+  private final StoreJson[] Cache = new StoreJson[STORE_PATHS.length];
+
+  /**
+   * is the bridge from the stores.
+   */
+  private final GatewayWatcher Watcher = new GatewayWatcher();
+
+  /**
+   * is the ctor.
+   */
+  private WebGateway() {
+  }
+
+  /**
+   * is the only way to get the gateway.
+   *
+   * @return the singleton.  It is created if it does not exist.
+   */
+  public static WebGateway instance() {
+    if (Singleton == null) {
+      Singleton = new WebGateway();
+    }
+    return Singleton;
+  }
+
+  /**
+   * starts the gateway.  If it is running, it is restarted.
+   *
+   * @param port is the port to listen on.
+   */
+  public synchronized void enable(int port) {
+    HttpServer server;
+    disable();
+    try {
+      server = HttpServer.create(new InetSocketAddress(port), 0);
+    }
+    catch (IOException ioe) {
+      log.warn("The web gateway could not listen on port " + port + ": " +
+          ioe.getMessage());
+      return;
+    }
+    for (int s = 0; s < STORE_PATHS.length; ++s) {
+      server.createContext("/" + STORE_PATHS[s], new StoreHandler(s));
+    }
+    server.createContext("/" + EVENTS_PATH, new EventHandler());
+    Workers = Executors.newCachedThreadPool(new ThreadFactory() {
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, SERVICENAME);
+        t.setDaemon(true);
+        return t;
+      }
+    });
+    server.setExecutor(Workers);
+    Running = true;
+    Watcher.register();
+    server.start();
+    Server = server;
+  }
+
+  /**
+   * stops the gateway and closes the event streams.
+   */
+  public synchronized void disable() {
+    if (Server != null) {
+      Running = false;
+      Watcher.unregister();
+      synchronized (Clients) {
+        for (Iterator<EventClient> iter = Clients.iterator(); iter.hasNext(); ) {
+          iter.next().close();
+        }
+        Clients.clear();
+      }
+      Server.stop(0);
+      Server = null;
+      Workers.shutdownNow();
+      Workers = null;
+    }
+  }
+
+  /**
+   * is called to learn if the gateway is running.
+   *
+   * @return true if it is.
+   */
+  public boolean isRunning() {
+    return Running;
+  }
+
+  /**
+   * locates a store.
+   *
+   * @param index is the position of the store in STORE_PATHS.
+   * @return the store.
+   */
+  private static AbstractStore getStore(int index) {
+    switch (index) {
+    case 0:
+      return TrainStore.TrainKeeper;
+    case 1:
+      return JobStore.JobsKeeper;
+    default:
+      return Callboard.Crews;
+    }
+  }
+
+  /**
+   * retrieves the JSON of a store, if it is current.
+   *
+   * @param index is the position of the store in STORE_PATHS.
+   * @param version is the version of the store.
+   * @return the JSON or null, if the store has changed since it was
+   * encoded.
+   */
+  private StoreJson findCurrent(int index, long version) {
+    synchronized (Cache) {
+      if ((Cache[index] != null) && (Cache[index].Version == version)) {
+        return Cache[index];
+      }
+    }
+    return null;
+  }
+
+  /**
+   * encodes a store as JSON, unless the one remembered is current.  It
+   * must be called on the RREvent thread.
+   *
+   * @param index is the position of the store in STORE_PATHS.
+   * @return the JSON.
+   */
+  private StoreJson readStore(int index) {
+    AbstractStore store = getStore(index);
+    long version = store.getImage().getVersion();
+    StoreJson json = findCurrent(index, version);
+    StringBuilder sb;
+    boolean first = true;
+    if (json == null) {
+      sb = new StringBuilder();
+      sb.append('[');
+      for (Iterator<String> iter = store.dumpStoreContents().iterator();
+           iter.hasNext(); ) {
+        if (!first) {
+          sb.append(',');
+        }
+        JsonEncoder.appendRecord(sb, iter.next());
+        first = false;
+      }
+      sb.append(']');
+      json = new StoreJson(version, sb.toString());
+      synchronized (Cache) {
+        Cache[index] = json;
+      }
+    }
+    return json;
+  }
+
+  /**
+   * converts text to the bytes sent.
+   *
+   * @param text is the text.
+   * @return the text, encoded in CHARSET.
+   */
+  private static byte[] encode(String text) {
+    try {
+      return text.getBytes(CHARSET);
+    }
+    catch (UnsupportedEncodingException uee) {
+      return text.getBytes();
+    }
+  }
+
+  /**
+   * constructs a Server-Sent Event.
+   *
+   * @param name is the name of the event or null for an unnamed event.
+   * @param data is the data of the event.  It must be a single line.
+   * @return the encoded event.
+   */
+  private static byte[] buildEvent(String name, String data) {
+    StringBuilder sb = new StringBuilder(data.length() + 32);
+    if (name != null) {
+      sb.append("event: ").append(name).append('\n');
+    }
+    sb.append("data: ").append(data).append("\n\n");
+    return encode(sb.toString());
+  }
+
+  /**
+   * starts sending events to a new event stream.  The stores are encoded
+   * and the stream added to the clients while the changes are held back.
+   * It must be called on the RREvent thread.
+   *
+   * @param client is the new event stream.
+   */
+  private void join(EventClient client) {
+    StringBuilder sb = new StringBuilder();
+    synchronized (Clients) {
+      if (!Running) {
+        client.close();
+        return;
+      }
+      sb.append('{');
+      for (int s = 0; s < STORE_PATHS.length; ++s) {
+        if (s != 0) {
+          sb.append(',');
+        }
+        JsonEncoder.appendString(sb, STORE_PATHS[s]);
+        sb.append(':').append(readStore(s).Text);
+      }
+      sb.append('}');
+      if (client.queue(buildEvent(SNAPSHOT_EVENT, sb.toString()))) {
+        Clients.add(client);
+      }
+    }
+  }
+
+  /**
+   * stops sending events to an event stream.
+   *
+   * @param client is the event stream.
+   */
+  private void leave(EventClient client) {
+    synchronized (Clients) {
+      Clients.remove(client);
+    }
+    client.close();
+  }
+
+  /**
+   * sends a message from the stores to the event streams.  The message is
+   * converted to JSON once, for all the streams.
+   *
+   * @param msg is the message.
+   */
+  private void distribute(String msg) {
+    byte[] event;
+    EventClient client;
+    synchronized (Clients) {
+      if (!Clients.isEmpty()) {
+        event = buildEvent(null, JsonEncoder.encodeMessage(msg));
+        for (Iterator<EventClient> iter = Clients.iterator(); iter.hasNext(); ) {
+          client = iter.next();
+          if (!client.queue(event)) {
+            iter.remove();
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * adds the headers common to all replies.
+   *
+   * @param exchange is the request.
+   * @param contentType is the type of the reply.
+   */
+  private static void addHeaders(HttpExchange exchange, String contentType) {
+    Headers headers = exchange.getResponseHeaders();
+    headers.set("Content-Type", contentType + "; charset=" + CHARSET);
+    headers.set("Cache-Control", "no-cache");
+    headers.set("Access-Control-Allow-Origin", "*");
+  }
+
+  /**
+   * determines if a request is one that is served.  If it is not, the
+   * reply is sent.
+   *
+   * @param exchange is the request.
+   * @param path is the path being served.
+   * @param head is true if a HEAD request is served.
+   * @return true if the request should be served.
+   * @throws IOException if the reply cannot be sent.
+   */
+  private static boolean accept(HttpExchange exchange, String path,
+      boolean head) throws IOException {
+    String method = exchange.getRequestMethod();
+    String requested = exchange.getRequestURI().getPath();
+    if (!requested.equals("/" + path) && !requested.equals("/" + path + "/")) {
+      exchange.sendResponseHeaders(404, -1);
+      return false;
+    }
+    if (!"GET".equals(method) && !(head && "HEAD".equals(method))) {
+      exchange.getResponseHeaders().set("Allow", head ? "GET, HEAD" : "GET");
+      exchange.sendResponseHeaders(405, -1);
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * determines if the browser already has a version of a store.
+   *
+   * @param exchange is the request.
+   * @param tag is the ETag of the version.
+   * @return true if the request named it in If-None-Match.
+   */
+  private static boolean hasVersion(HttpExchange exchange, String tag) {
+    String match = exchange.getRequestHeaders().getFirst("If-None-Match");
+    return (match != null) &&
+      (match.trim().equals("*") || (match.indexOf(tag) >= 0));
+  }
+
+  /**
+   * is the JSON of a store, with the version it was read from.
+   */
+  private static class StoreJson {
+
+    /**
+     * is the version of the store.
+     */
+    final long Version;
+
+    /**
+     * is the JSON.
+     */
+    final String Text;
+
+    /**
+     * is the JSON, encoded.
+     */
+    final byte[] Bytes;
+
+    /**
+     * is the ctor.
+     *
+     * @param version is the version of the store.
+     * @param text is the JSON.
+     */
+    StoreJson(long version, String text) {
+      Version = version;
+      Text = text;
+      Bytes = encode(text);
+    }
+  }
+
+  /**
+   * reads a store on the RREvent thread, for a request.
+   */
+  private class StoreReader extends RREvent {
+
+    /**
+     * is the position of the store in STORE_PATHS.
+     */
+    private final int Index;
+
+    /**
+     * is the JSON, once it has been read.
+     */
+    private StoreJson Result;
+
+    /**
+     * is the ctor.
+     *
+     * @param index is the position of the store in STORE_PATHS.
+     */
+    StoreReader(int index) {
+      Index = index;
+    }
+
+    public int getLane() {
+      return BULK_LANE;
+    }
+
+    public void doIt() {
+      StoreJson json = readStore(Index);
+      synchronized (this) {
+        Result = json;
+        notifyAll();
+      }
+    }
+
+    /**
+     * waits for the store to be read.
+     *
+     * @return the JSON or null, if it was not read within READ_WAIT.
+     */
+    synchronized StoreJson await() {
+      long deadline = System.currentTimeMillis() + READ_WAIT;
+      long remaining;
+      try {
+        while ((Result == null) &&
+            ((remaining = deadline - System.currentTimeMillis()) > 0)) {
+          wait(remaining);
+        }
+      }
+      catch (InterruptedException ie) {
+        Thread.currentThread().interrupt();
+      }
+      return Result;
+    }
+  }
+
+  /**
+   * serves a store.
+   */
+  private class StoreHandler implements HttpHandler {
+
+    /**
+     * is the position of the store in STORE_PATHS.
+     */
+    private final int Index;
+
+    /**
+     * is the ctor.
+     *
+     * @param index is the position of the store in STORE_PATHS.
+     */
+    StoreHandler(int index) {
+      Index = index;
+    }
+
+    public void handle(HttpExchange exchange) throws IOException {
+      long version;
+      StoreJson json;
+      StoreReader reader;
+      String tag;
+      try {
+        if (accept(exchange, STORE_PATHS[Index], true)) {
+          version = getStore(Index).getImage().getVersion();
+          tag = "\"" + Epoch + "-" + version + "\"";
+          addHeaders(exchange, "application/json");
+          if (hasVersion(exchange, tag)) {
+            exchange.getResponseHeaders().set("ETag", tag);
+            exchange.sendResponseHeaders(304, -1);
+            return;
+          }
+          if ((json = findCurrent(Index, version)) == null) {
+            reader = new StoreReader(Index);
+            reader.queUp();
+            if ((json = reader.await()) == null) {
+              exchange.sendResponseHeaders(503, -1);
+              return;
+            }
+          }
+          exchange.getResponseHeaders().set("ETag", "\"" + Epoch + "-" +
+              json.Version + "\"");
+          if ("HEAD".equals(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(200, -1);
+          }
+          else {
+            exchange.sendResponseHeaders(200, json.Bytes.length);
+            exchange.getResponseBody().write(json.Bytes);
+          }
+        }
+      }
+      finally {
+        exchange.close();
+      }
+    }
+  }
+
+  /**
+   * serves the event streams.  The thread running the request writes
+   * the events until the stream is closed.
+   */
+  private class EventHandler implements HttpHandler {
+
+    public void handle(HttpExchange exchange) throws IOException {
+      final EventClient client;
+      try {
+        if (accept(exchange, EVENTS_PATH, false)) {
+          addHeaders(exchange, "text/event-stream");
+          exchange.sendResponseHeaders(200, 0);
+          client = new EventClient(exchange.getResponseBody(),
+              String.valueOf(exchange.getRemoteAddress()));
+          new RREvent() {
+            public int getLane() {
+              return BULK_LANE;
+            }
+
+            public void doIt() {
+              join(client);
+            }
+          }.queUp();
+          try {
+            client.run();
+          }
+          finally {
+            leave(client);
+          }
+        }
+      }
+      finally {
+        exchange.close();
+      }
+    }
+  }
+
+  /**
+   * is a browser receiving events.
+   */
+  private static class EventClient {
+
+    /**
+     * is where the events are written.
+     */
+    private final OutputStream Out;
+
+    /**
+     * identifies the browser in the log.
+     */
+    private final String Name;
+
+    /**
+     * are the events waiting to be written.
+     */
+    private final LinkedList<byte[]> Queue = new LinkedList<byte[]>();
+
+    /**
+     * is true when the stream should be closed.
+     */
+    private boolean Closed;
+
+    /**
+     * is the ctor.
+     *
+     * @param out is where the events are written.
+     * @param name identifies the browser in the log.
+     */
+    EventClient(OutputStream out, String name) {
+      Out = new BufferedOutputStream(out);
+      Name = name;
+    }
+
+    /**
+     * adds an event to the queue.
+     *
+     * @param event is the encoded event.
+     * @return false if the stream is closed, which it is if the queue has
+     * reached the limit.
+     */
+    synchronized boolean queue(byte[] event) {
+      int limit = TrainStatServer.getQueueLimit();
+      if (!Closed && (limit > 0) && (Queue.size() >= limit)) {
+        log.warn("Closing the event stream to " + Name +
+            " because it is not keeping up");
+        close();
+      }
+      if (Closed) {
+        return false;
+      }
+      Queue.add(event);
+      notifyAll();
+      return true;
+    }
+
+    /**
+     * tells the thread writing the events to stop.
+     */
+    synchronized void close() {
+      Closed = true;
+      Queue.clear();
+      notifyAll();
+    }
+
+    /**
+     * writes the events until the stream is closed.
+     *
+     * @throws IOException if the browser has gone away.
+     */
+    void run() throws IOException {
+      ArrayList<byte[]> batch = new ArrayList<byte[]>();
+      while (true) {
+        synchronized (this) {
+          try {
+            if (!Closed && Queue.isEmpty()) {
+              wait(KEEP_ALIVE);
+            }
+          }
+          catch (InterruptedException ie) {
+            Closed = true;
+          }
+          if (Closed) {
+            return;
+          }
+          batch.addAll(Queue);
+          Queue.clear();
+        }
+        if (batch.isEmpty()) {
+          Out.write(KEEP_ALIVE_BYTES);
+        }
+        else {
+          for (Iterator<byte[]> iter = batch.iterator(); iter.hasNext(); ) {
+            Out.write(iter.next());
+          }
+          batch.clear();
+        }
+        Out.flush();
+      }
+    }
+  }
+
+  /**
+   * is the bridge between the Stores and the event streams.
+   */
+  private class GatewayWatcher extends AbstractStoreWatcher {
+
+    /**
+     * passes a message from an AbstractStore to the event streams.
+     *
+     * @param msg is the message.
+     */
+    protected void forward(String msg) {
+      distribute(msg);
+    }
+  }
+
+  static org.apache.log4j.Logger log = org.apache.log4j.Logger.getLogger(
+      WebGateway.class.getName());
+}
+/* @(#)WebGateway.java */
@@ -46,5 +46,15 @@ public class ArrowEvent
   public void doIt() {
     Who.takeArrow(ArrowKey);
   }
+
+  /**
+   * tells the RREventManager which lane the RREvent waits in.
+   *
+   * @return the dispatcher lane.
+   */
+  @Override
+  public int getLane() {
+    return DISPATCHER_LANE;
+  }
 }
 /* @(#)ArrowEvent.java */
\ No newline at end of file
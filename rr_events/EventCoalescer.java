@@ -0,0 +1,160 @@
+/* Name: EventCoalescer.java
+ *
+ * What:
+ *   This class sits in front of the RREventManager queue and merges
+ *   Loconet reports for the same decoder address that arrive before
+ *   the first has been processed.
+ */
+package cats.rr_events;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import cats.layout.CoalescedEventCounter;
+import cats.layout.RREventObserver;
+import jmri.jmrix.loconet.LocoNetMessage;
+
+/**
+ *   This class sits in front of the RREventManager queue and merges
+ *   Loconet reports for the same decoder address that arrive before
+ *   the first has been processed.
+ *   <p>
+ *   A noisy detector or a Loconet echo can queue several reports for the
+ *   same sensor or turnout before the event thread gets to them.  Because
+ *   each report carries the complete state of the decoder, only the latest
+ *   one matters.  So, while a LoconetEvent for an (observer, address) pair
+ *   is waiting in the queue, a newer report replaces the message in the
+ *   waiting LoconetEvent (which keeps its place in line) rather than
+ *   queuing another RREvent.  Each report thus merged is counted in the
+ *   CoalescedEventCounter.
+ * <p>Title: CATS - Crandic Automated Traffic System</p>
+ * <p>Description: A program for dispatching trains on Pat Lana's
+ * Crandic model railroad.
+ * <p>Copyright: Copyright (c) 2019</p>
+ * <p>Company: </p>
+ * @author Rodney Black
+ * @version $Revision$
+ */
+public class EventCoalescer {
+
+  /**
+   * are the LoconetEvents in the queue, which have not been processed.
+   */
+  private static final ConcurrentHashMap<Key, LoconetEvent> Pending =
+    new ConcurrentHashMap<Key, LoconetEvent>();
+
+  /**
+   * is true if reports should be merged.
+   */
+  private static volatile boolean Enabled = true;
+
+  /**
+   * turns merging on or off.
+   *
+   * @param enable is true to merge reports and false to queue every one.
+   */
+  public static void setEnabled(boolean enable) {
+    Enabled = enable;
+  }
+
+  /**
+   * tells if reports are being merged.
+   *
+   * @return true if they are.
+   */
+  public static boolean isEnabled() {
+    return Enabled;
+  }
+
+  /**
+   * delivers a Loconet report to an observer, through the RREventManager
+   * queue.
+   *
+   * @param who is the Object the message is for.
+   * @param opCode is the Loconet op code of the message.
+   * @param address is the decoder address in the message.
+   * @param msg is the message.
+   * @param lane is the RREvent lane the report waits in.
+   */
+  public static void queUp(RREventObserver who, int opCode, int address,
+      LocoNetMessage msg, int lane) {
+    Key key;
+    LoconetEvent event;
+    if (Enabled) {
+      key = new Key(who, opCode, address);
+      event = Pending.get(key);
+      if ((event != null) && event.supersede(msg)) {
+        CoalescedEventCounter.instance().bumpCounter();
+      }
+      else {
+        event = new LoconetEvent(who, msg, key, lane);
+        Pending.put(key, event);
+        event.queUp();
+      }
+    }
+    else {
+      new LoconetEvent(who, msg, null, lane).queUp();
+    }
+  }
+
+  /**
+   * is called when a LoconetEvent is about to be processed, so that
+   * later reports are queued, rather than merged.
+   *
+   * @param key identifies the observer and address.
+   * @param event is the LoconetEvent.
+   */
+  static void retire(Key key, LoconetEvent event) {
+    Pending.remove(key, event);
+  }
+
+  /**
+   * is the identity of a waiting LoconetEvent: the observer (by
+   * reference), the kind of message and the decoder address.
+   */
+  static class Key {
+
+    /**
+     * is the Object the message is for.
+     */
+    private final RREventObserver Who;
+
+    /**
+     * is the Loconet op code.
+     */
+    private final int OpCode;
+
+    /**
+     * is the decoder address.
+     */
+    private final int Address;
+
+    /**
+     * is the constructor.
+     *
+     * @param who is the Object the message is for.
+     * @param opCode is the Loconet op code.
+     * @param address is the decoder address.
+     */
+    Key(RREventObserver who, int opCode, int address) {
+      Who = who;
+      OpCode = opCode;
+      Address = address;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (o instanceof Key) {
+        Key k = (Key) o;
+        return (Who == k.Who) && (OpCode == k.OpCode) &&
+        (Address == k.Address);
+      }
+      return false;
+    }
+
+    @Override
+    public int hashCode() {
+      return (System.identityHashCode(Who) * 31 + OpCode) * 31 + Address;
+    }
+  }
+}
+/* @(#)EventCoalescer.java */
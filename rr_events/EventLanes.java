@@ -0,0 +1,348 @@
+/* Name: EventLanes.java
+ *
+ * What:
+ *   This class is the queue between the RREvent producers and the
+ *   RREventManager.  It holds RREvents in separate lanes, by priority.
+ */
+package cats.rr_events;
+
+import java.util.concurrent.locks.LockSupport;
+
+import cats.layout.PegCounter;
+import cats.layout.Queue;
+import cats.layout.RingQueue;
+
+/**
+ *   This class is the queue between the RREvent producers and the
+ *   RREventManager.  It holds RREvents in separate lanes, by priority:
+ *   <ol>
+ *   <li>safety - turnout verification and reports from the layout
+ *   <li>dispatcher - mouse and keyboard input
+ *   <li>bulk - reports triggered by reading back the state of the layout
+ *   </ol>
+ *   The RREventManager always takes the oldest RREvent from the highest
+ *   priority lane that has one, with one exception.  So that a busy lane
+ *   cannot starve a lower one, once a lower lane has been passed over
+ *   the fairness limit number of times, its oldest RREvent goes next.
+ *   <p>
+ *   Each lane is a RingQueue, so producers do not lock.  The consumer
+ *   parks when all the lanes are empty.
+ *   <p>
+ *   For each lane, the deepest the lane got and the longest an RREvent
+ *   waited in it are published to JMRI Memory objects.
+ * <p>Title: CATS - Crandic Automated Traffic System</p>
+ * <p>Description: A program for dispatching trains on Pat Lana's
+ * Crandic model railroad.
+ * <p>Copyright: Copyright (c) 2019</p>
+ * <p>Company: </p>
+ * @author Rodney Black
+ * @version $Revision$
+ */
+public class EventLanes extends Queue {
+
+  /**
+   * is the number of lanes.
+   */
+  public static final int LANES = 3;
+
+  /**
+   * are the names of the lanes, used in the JMRI Memory names.
+   */
+  public static final String[] LANE_NAMES = {
+    "Safety",
+    "Dispatcher",
+    "Bulk"
+  };
+
+  /**
+   * is the default for how many times a lane can be passed over.
+   */
+  public static final int DEFAULT_FAIRNESS = 8;
+
+  /**
+   * are the lanes.
+   */
+  private final RingQueue[] Lanes = new RingQueue[LANES];
+
+  /**
+   * are the number of times each lane has been passed over since it
+   * was last served.
+   */
+  private final int[] Passed = new int[LANES];
+
+  /**
+   * is how many times a lane can be passed over before it is served.
+   * 0 means that lanes are served in strict priority order.
+   */
+  private volatile int Fairness = DEFAULT_FAIRNESS;
+
+  /**
+   * is the thread emptying the lanes.
+   */
+  private volatile Thread Consumer;
+
+  /**
+   * is true while the consumer is parked (or about to park).
+   */
+  private volatile boolean Waiting;
+
+  /**
+   * is set when the consumer should stop once the lanes are empty.
+   */
+  private volatile boolean Done;
+
+  /**
+   * are the deepest each lane has been since the statistics were
+   * published.
+   */
+  private final int[] MaxDepth = new int[LANES];
+
+  /**
+   * are the longest (in nanoseconds) an RREvent has waited in each lane
+   * since the statistics were published.
+   */
+  private final long[] MaxWait = new long[LANES];
+
+  /**
+   * are the PegCounters for publishing the statistics.
+   */
+  private PegCounter[] DepthCounters;
+  private PegCounter[] WaitCounters;
+
+  /**
+   * is the constructor.
+   *
+   * @param capacity is the size of each lane.  A lane that fills
+   * pauses its producers.
+   */
+  public EventLanes(int capacity) {
+    for (int lane = 0; lane < LANES; ++lane) {
+      Lanes[lane] = new RingQueue(capacity, RingQueue.BLOCK);
+    }
+  }
+
+  /**
+   * sets the fairness limit.
+   *
+   * @param limit is the number of times a lane can be passed over,
+   * before it is served ahead of higher priority lanes.  0 turns
+   * off the fairness check.
+   */
+  public void setFairness(int limit) {
+    Fairness = Math.max(0, limit);
+  }
+
+  /**
+   * retrieves the fairness limit.
+   *
+   * @return the number of times a lane can be passed over.
+   */
+  public int getFairness() {
+    return Fairness;
+  }
+
+  /**
+   * retrieves one of the lanes.
+   *
+   * @param lane is the index of the lane.
+   * @return the RingQueue holding the lane.
+   */
+  public RingQueue getLane(int lane) {
+    return Lanes[lane];
+  }
+
+  /**
+   *  This method adds an RREvent to the lane it asks for.
+   *
+   * @param s is the RREvent.  Anything else is placed in the
+   * safety lane, so that the RREventManager can complain about it.
+   */
+  @Override
+  public void append(Object s) {
+    int lane = RREvent.SAFETY_LANE;
+    Thread t;
+    if (s instanceof RREvent) {
+      lane = ((RREvent) s).getLane();
+      if ((lane < 0) || (lane >= LANES)) {
+        lane = RREvent.SAFETY_LANE;
+      }
+    }
+    Lanes[lane].append(s);
+    if (Waiting && ((t = Consumer) != null)) {
+      LockSupport.unpark(t);
+    }
+  }
+
+  /**
+   * This method pulls the next RREvent off the lanes, waiting if they
+   * are empty.  Only one thread may call it.
+   *
+   * @return The next RREvent or null if the lanes were flushed or the
+   * consumer was interrupted.
+   */
+  @Override
+  public Object get() {
+    Object item;
+    Consumer = Thread.currentThread();
+    while ((item = next()) == null) {
+      if (Done) {
+        return null;
+      }
+      Waiting = true;
+      if (isEmpty() && !Done) {
+        LockSupport.park(this);
+      }
+      Waiting = false;
+      if (Thread.interrupted()) {
+        return null;
+      }
+    }
+    return item;
+  }
+
+  /**
+   * waits for at least one RREvent, then moves it and as many others
+   * as are waiting (up to a limit) into an array, in the order they
+   * should be run.  Only the consumer may call it.
+   *
+   * @param batch is where the RREvents are placed.
+   * @param max is the most RREvents to move.
+   *
+   * @return the number of RREvents moved.  It is 0 if the lanes were
+   * flushed or the consumer was interrupted.
+   */
+  public int drain(Object[] batch, int max) {
+    int count = 0;
+    int limit = Math.min(max, batch.length);
+    Object item = get();
+    while (item != null) {
+      batch[count++] = item;
+      if (count >= limit) {
+        break;
+      }
+      item = next();
+    }
+    return count;
+  }
+
+  /**
+   *  This method notifies the consumer that the lanes should be flushed.
+   */
+  @Override
+  public void flush() {
+    Thread t = Consumer;
+    Done = true;
+    if (t != null) {
+      LockSupport.unpark(t);
+    }
+  }
+
+  /**
+   * tests if all the lanes are empty.
+   *
+   * @return true if no RREvent is waiting.
+   */
+  public boolean isEmpty() {
+    for (int lane = 0; lane < LANES; ++lane) {
+      if (!Lanes[lane].isEmpty()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * estimates the number of RREvents waiting in all lanes.
+   *
+   * @return the number waiting.
+   */
+  public int size() {
+    int depth = 0;
+    for (int lane = 0; lane < LANES; ++lane) {
+      depth += Lanes[lane].size();
+    }
+    return depth;
+  }
+
+  /**
+   * selects the next RREvent to run, without waiting.
+   *
+   * @return the RREvent or null, if the lanes are empty.
+   */
+  private Object next() {
+    Object item;
+    int lane;
+    int limit = Fairness;
+    if (limit > 0) {
+      for (lane = LANES - 1; lane > 0; --lane) {
+        if ((Passed[lane] >= limit) &&
+            ((item = take(lane)) != null)) {
+          return item;
+        }
+      }
+    }
+    for (lane = 0; lane < LANES; ++lane) {
+      if ((item = take(lane)) != null) {
+        for (int lower = lane + 1; lower < LANES; ++lower) {
+          if (!Lanes[lower].isEmpty()) {
+            ++Passed[lower];
+          }
+        }
+        return item;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * removes the oldest RREvent from a lane and records the lane's
+   * statistics.
+   *
+   * @param lane is the lane.
+   * @return the RREvent or null if the lane is empty.
+   */
+  private Object take(int lane) {
+    int depth = Lanes[lane].size();
+    Object item = Lanes[lane].tryGet();
+    long wait;
+    if (item != null) {
+      Passed[lane] = 0;
+      if (depth > MaxDepth[lane]) {
+        MaxDepth[lane] = depth;
+      }
+      if (item instanceof RREvent) {
+        wait = System.nanoTime() - ((RREvent) item).getQueuedTime();
+        if (wait > MaxWait[lane]) {
+          MaxWait[lane] = wait;
+        }
+      }
+    }
+    return item;
+  }
+
+  /**
+   * copies the lane statistics to their JMRI Memory objects
+   * (RREventLaneSafetyDepth, RREventLaneSafetyMaxWaitMsec, and so on)
+   * and starts collecting new ones.  It should be called by the
+   * consumer, after JMRI has been initialized.
+   */
+  public void publish() {
+    if (DepthCounters == null) {
+      DepthCounters = new PegCounter[LANES];
+      WaitCounters = new PegCounter[LANES];
+      for (int lane = 0; lane < LANES; ++lane) {
+        DepthCounters[lane] = new PegCounter("RREventLane" +
+            LANE_NAMES[lane] + "Depth");
+        WaitCounters[lane] = new PegCounter("RREventLane" +
+            LANE_NAMES[lane] + "MaxWaitMsec");
+      }
+    }
+    for (int lane = 0; lane < LANES; ++lane) {
+      DepthCounters[lane].setCount(MaxDepth[lane]);
+      WaitCounters[lane].setCount((int) (MaxWait[lane] / 1000000));
+      MaxDepth[lane] = 0;
+      MaxWait[lane] = 0;
+    }
+  }
+}
+/* @(#)EventLanes.java */
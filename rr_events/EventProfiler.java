@@ -0,0 +1,299 @@
+/* Name: EventProfiler.java
+ *
+ * What:
+ *  This file defines a Singleton that measures how long each kind of
+ *  RREvent waits in the queue and how long it takes to run.
+ *
+ * Special Considerations:
+ */
+package cats.rr_events;
+
+import java.awt.event.ItemEvent;
+import java.awt.event.ItemListener;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Calendar;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import cats.gui.TraceFactory;
+import cats.gui.TraceFlag;
+import cats.layout.PegCounter;
+
+/**
+ *  This file defines a Singleton that measures how long each kind of
+ *  RREvent waits in the queue and how long it takes to run.  Because
+ *  there is only one thread running RREvents, a handler that takes
+ *  too long holds up everything behind it; this is a tool for finding
+ *  such handlers during an operating session.
+ *  <p>
+ *  Measurements are taken only while the "Event Latency" trace item
+ *  is checked.  For each concrete RREvent class, there is a
+ *  LatencyHistogram of the queue wait (from queUp() to the start of
+ *  doIt()) and one of the execution time (doIt()).  The count, 99th
+ *  percentiles and maximum execution time are published to JMRI Memory
+ *  objects named RREvent_ClassName_..., and all the percentiles can be
+ *  written to a file.  ClassName is the full name of the class without
+ *  the leading "cats.", such as "layout.Logger$3", so that anonymous
+ *  RREvents and classes with the same simple name are kept apart.
+ * <p>Title: CATS - Crandic Automated Traffic System</p>
+ * <p>Description: A program for dispatching trains on Pat Lana's
+ * Crandic model railroad.
+ * <p>Copyright: Copyright (c) 2019</p>
+ * <p>Company: </p>
+ * @author Rodney Black
+ * @version $Revision$
+ */
+public class EventProfiler {
+
+  /**
+   * is the Singleton
+   */
+  private static EventProfiler Profiler;
+
+  /**
+   * is the prefix on the JMRI User Names of the Memory Objects.
+   */
+  public static final String JMRI_NAME = "RREvent_";
+
+  /**
+   * is the package prefix dropped from the names of RREvent classes.
+   */
+  private static final String CATS_PACKAGE = "cats.";
+
+  /**
+   * are the percentiles written to the dump file.
+   */
+  private static final double[] PERCENTILES = {
+    50.0, 90.0, 99.0, 99.9
+  };
+
+  /**
+   * is the checkbox on the GUI
+   */
+  private TraceFlag EnableBox;
+
+  /**
+   * is true when measurements are being taken.  It is a copy of
+   * the checkbox, so that the event thread does not query Swing.
+   */
+  private volatile boolean Recording;
+
+  /**
+   * are the measurements, by RREvent class.
+   */
+  private final ConcurrentHashMap<Class<?>, Profile> Profiles =
+    new ConcurrentHashMap<Class<?>, Profile>();
+
+  /**
+   * is the ctor
+   */
+  private EventProfiler() {
+    EnableBox = TraceFactory.Tracer.createTraceItem("Event Latency",
+      "EVENT_LATENCY");
+    EnableBox.addItemListener(new ItemListener() {
+      public void itemStateChanged(ItemEvent arg0) {
+        if (EnableBox.getFlagValue()) {
+          restart();
+        }
+        Recording = EnableBox.getFlagValue();
+      }
+    });
+  }
+
+  /**
+   * is used to locate the singleton
+   *
+   * @return the singleton.  If it does not exist, this method
+   * creates it.
+   */
+  public static EventProfiler instance() {
+    if (Profiler == null) {
+      Profiler = new EventProfiler();
+    }
+    return Profiler;
+  }
+
+  /**
+   * is called to query the state of measurement.  It does not create the
+   * Singleton, so it can be called before the menus exist.
+   *
+   * @return true if RREvents are being measured.
+   */
+  public static boolean isRecording() {
+    return (Profiler != null) && Profiler.Recording;
+  }
+
+  /**
+   * records the measurements of one RREvent.
+   *
+   * @param event is the RREvent.
+   * @param started is when (System.nanoTime()) doIt() was called.
+   * @param finished is when doIt() returned.
+   */
+  public void record(RREvent event, long started, long finished) {
+    Class<?> kind = event.getClass();
+    Profile profile = Profiles.get(kind);
+    if (profile == null) {
+      profile = new Profile(kind);
+      Profiles.put(kind, profile);
+    }
+    if (event.getQueuedTime() != 0) {
+      profile.Wait.record(started - event.getQueuedTime());
+    }
+    profile.Run.record(finished - started);
+  }
+
+  /**
+   * forgets all measurements.
+   */
+  public void restart() {
+    for (Iterator<Profile> iter = Profiles.values().iterator();
+    iter.hasNext(); ) {
+      iter.next().reset();
+    }
+  }
+
+  /**
+   * copies the measurements to the JMRI Memory objects.  It should be
+   * called periodically by the RREventManager.
+   */
+  public void publish() {
+    for (Iterator<Profile> iter = Profiles.values().iterator();
+    iter.hasNext(); ) {
+      iter.next().publish();
+    }
+  }
+
+  /**
+   * writes the measurements, by RREvent class, to a file.  The times
+   * are in microseconds.
+   *
+   * @param fileName is the name of the file.
+   */
+  public void dump(String fileName) {
+    PrintStream out = null;
+    Profile profile;
+    TreeMap<String, Profile> sorted = new TreeMap<String, Profile>();
+    for (Iterator<Profile> iter = Profiles.values().iterator();
+    iter.hasNext(); ) {
+      profile = iter.next();
+      sorted.put(profile.Name, profile);
+    }
+    try {
+      out = new PrintStream(new FileOutputStream(fileName));
+      out.println("RREvent latency (usec) " + Calendar.getInstance().getTime());
+      out.print("event\tmeasure\tcount\tmean");
+      for (int p = 0; p < PERCENTILES.length; ++p) {
+        out.print("\tp" + PERCENTILES[p]);
+      }
+      out.println("\tmax");
+      for (Iterator<Map.Entry<String, Profile>> iter =
+        sorted.entrySet().iterator(); iter.hasNext(); ) {
+        profile = iter.next().getValue();
+        dumpHistogram(out, profile.Name, "wait", profile.Wait);
+        dumpHistogram(out, profile.Name, "run", profile.Run);
+      }
+    }
+    catch (IOException except) {
+      log.warn("Could not write event latency to " + fileName);
+    }
+    finally {
+      if (out != null) {
+        out.close();
+      }
+    }
+  }
+
+  /**
+   * writes one line of the dump file.
+   *
+   * @param out is where the line is written.
+   * @param name is the name of the RREvent class.
+   * @param measure is what was measured.
+   * @param histogram is the measurements.
+   */
+  private void dumpHistogram(PrintStream out, String name, String measure,
+      LatencyHistogram histogram) {
+    out.print(name + "\t" + measure + "\t" + histogram.getCount() + "\t" +
+        (histogram.getMean() / 1000));
+    for (int p = 0; p < PERCENTILES.length; ++p) {
+      out.print("\t" + (histogram.getPercentile(PERCENTILES[p]) / 1000));
+    }
+    out.println("\t" + (histogram.getMax() / 1000));
+  }
+
+  /**
+   * is the measurements of one RREvent class.
+   */
+  private class Profile {
+
+    /**
+     * is the name of the class, without the CATS package prefix.
+     */
+    final String Name;
+
+    /**
+     * is how long RREvents waited in the queue.
+     */
+    final LatencyHistogram Wait = new LatencyHistogram();
+
+    /**
+     * is how long doIt() took.
+     */
+    final LatencyHistogram Run = new LatencyHistogram();
+
+    /**
+     * are the JMRI Memory objects.  They are created on the first
+     * publication.
+     */
+    private PegCounter Count;
+    private PegCounter WaitP99;
+    private PegCounter RunP99;
+    private PegCounter RunMax;
+
+    /**
+     * is the ctor
+     *
+     * @param kind is the RREvent class.
+     */
+    Profile(Class<?> kind) {
+      String name = kind.getName();
+      if (name.startsWith(CATS_PACKAGE)) {
+        name = name.substring(CATS_PACKAGE.length());
+      }
+      Name = name;
+    }
+
+    /**
+     * forgets the measurements.
+     */
+    void reset() {
+      Wait.reset();
+      Run.reset();
+    }
+
+    /**
+     * copies the measurements to the JMRI Memory objects.
+     */
+    void publish() {
+      if (Count == null) {
+        Count = new PegCounter(JMRI_NAME + Name + "_Count");
+        WaitP99 = new PegCounter(JMRI_NAME + Name + "_WaitP99Usec");
+        RunP99 = new PegCounter(JMRI_NAME + Name + "_RunP99Usec");
+        RunMax = new PegCounter(JMRI_NAME + Name + "_RunMaxUsec");
+      }
+      Count.setCount((int) Run.getCount());
+      WaitP99.setCount((int) (Wait.getPercentile(99.0) / 1000));
+      RunP99.setCount((int) (Run.getPercentile(99.0) / 1000));
+      RunMax.setCount((int) (Run.getMax() / 1000));
+    }
+  }
+
+  static org.apache.log4j.Logger log = org.apache.log4j.Logger.getLogger(
+      EventProfiler.class.getName());
+}
+/* @(#)EventProfiler.java */
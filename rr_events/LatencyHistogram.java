@@ -0,0 +1,188 @@
+/* Name: LatencyHistogram.java
+ *
+ * What:
+ *  This file defines a histogram of time intervals, with buckets that
+ *  are linear within each power of 2, so that the relative error is
+ *  the same from microseconds to minutes.
+ *
+ * Special Considerations:
+ *  This class is application independent.
+ */
+package cats.rr_events;
+
+/**
+ *  This file defines a histogram of time intervals, with buckets that
+ *  are linear within each power of 2, so that the relative error is
+ *  the same from microseconds to minutes.
+ *  <p>
+ *  It is modeled after an HDR histogram: values below SUB_BUCKETS
+ *  nanoseconds have their own buckets and each power of 2 above that is
+ *  split into SUB_BUCKETS / 2 buckets, so that any recorded value is
+ *  reported within about 6% of what it was.  Recording a value does
+ *  not allocate anything.
+ * <p>Title: CATS - Crandic Automated Traffic System</p>
+ * <p>Description: A program for dispatching trains on Pat Lana's
+ * Crandic model railroad.
+ * <p>Copyright: Copyright (c) 2019</p>
+ * <p>Company: </p>
+ * @author Rodney Black
+ * @version $Revision$
+ */
+public class LatencyHistogram {
+
+  /**
+   * is the number of bits of precision kept in each value.
+   */
+  private static final int PRECISION = 5;
+
+  /**
+   * is the number of values with their own bucket.
+   */
+  private static final int SUB_BUCKETS = 1 << PRECISION;
+
+  /**
+   * is the number of buckets each power of 2 is split into.
+   */
+  private static final int HALF = SUB_BUCKETS / 2;
+
+  /**
+   * is the number of buckets needed to cover a positive long.
+   */
+  private static final int BUCKETS = SUB_BUCKETS +
+  (64 - PRECISION) * HALF;
+
+  /**
+   * are the counts in each bucket.
+   */
+  private final long[] Counts = new long[BUCKETS];
+
+  /**
+   * is the number of values recorded.
+   */
+  private long Total;
+
+  /**
+   * is the sum of the values recorded.
+   */
+  private long Sum;
+
+  /**
+   * is the largest value recorded.
+   */
+  private long Max;
+
+  /**
+   * records a value.
+   *
+   * @param nanos is the value, in nanoseconds.  Negative values
+   * are recorded as 0.
+   */
+  public synchronized void record(long nanos) {
+    if (nanos < 0) {
+      nanos = 0;
+    }
+    ++Counts[bucketOf(nanos)];
+    ++Total;
+    Sum += nanos;
+    if (nanos > Max) {
+      Max = nanos;
+    }
+  }
+
+  /**
+   * forgets all the recorded values.
+   */
+  public synchronized void reset() {
+    for (int b = 0; b < BUCKETS; ++b) {
+      Counts[b] = 0;
+    }
+    Total = Sum = Max = 0;
+  }
+
+  /**
+   * retrieves the number of values recorded.
+   *
+   * @return the count.
+   */
+  public synchronized long getCount() {
+    return Total;
+  }
+
+  /**
+   * retrieves the largest value recorded.
+   *
+   * @return the largest value, in nanoseconds.
+   */
+  public synchronized long getMax() {
+    return Max;
+  }
+
+  /**
+   * retrieves the average of the values recorded.
+   *
+   * @return the mean, in nanoseconds, or 0 if nothing has been recorded.
+   */
+  public synchronized long getMean() {
+    return (Total == 0) ? 0 : Sum / Total;
+  }
+
+  /**
+   * estimates the value below which a percentage of the values fall.
+   *
+   * @param percent is the percentage (0 to 100).
+   * @return the upper edge of the bucket holding the percentile, in
+   * nanoseconds, but not more than the largest value recorded.
+   */
+  public synchronized long getPercentile(double percent) {
+    long rank;
+    long seen = 0;
+    if (Total == 0) {
+      return 0;
+    }
+    rank = (long) Math.ceil((percent / 100.0) * Total);
+    if (rank < 1) {
+      rank = 1;
+    }
+    for (int b = 0; b < BUCKETS; ++b) {
+      seen += Counts[b];
+      if (seen >= rank) {
+        return Math.min(highestIn(b), Max);
+      }
+    }
+    return Max;
+  }
+
+  /**
+   * computes the bucket a value falls into.
+   *
+   * @param value is a non-negative value.
+   * @return the index of its bucket.
+   */
+  private static int bucketOf(long value) {
+    int shift;
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    shift = 63 - Long.numberOfLeadingZeros(value) - (PRECISION - 1);
+    return SUB_BUCKETS + ((shift - 1) * HALF) +
+    (int) ((value >>> shift) - HALF);
+  }
+
+  /**
+   * computes the largest value that falls into a bucket.
+   *
+   * @param bucket is the index of the bucket.
+   * @return the largest value it holds.
+   */
+  private static long highestIn(int bucket) {
+    int shift;
+    long base;
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    shift = ((bucket - SUB_BUCKETS) / HALF) + 1;
+    base = ((bucket - SUB_BUCKETS) % HALF) + HALF;
+    return ((base + 1) << shift) - 1;
+  }
+}
+/* @(#)LatencyHistogram.java */
@@ -27,10 +27,22 @@ public class LoconetEvent
   private RREventObserver Who;
 
   /**
-   * is the LocoNetMessage received
+   * is the LocoNetMessage received.  It can be replaced by a later
+   * report while the LoconetEvent is waiting in the queue.
    */
   private LocoNetMessage Msg;
 
+  /**
+   * is the EventCoalescer identity of the LoconetEvent.  It is not null
+   * while later reports can be merged into this one.
+   */
+  private EventCoalescer.Key Pending;
+
+  /**
+   * is the lane the LoconetEvent waits in.
+   */
+  private int Lane = SAFETY_LANE;
+
   /**
    * is the constructor.  There is an assumption in all of this that
    * because messages may be sent to multiple recipients and the messages
@@ -45,11 +57,62 @@ public class LoconetEvent
     Msg = msg;
   }
 
+  /**
+   * is the constructor for a LoconetEvent that later reports can be
+   * merged into.
+   *
+   * @param who is the Object where the message will be delivered.
+   * @param msg is the LocoNetMessage being delivered.
+   * @param key is the EventCoalescer identity of the LoconetEvent.
+   * @param lane is the lane the LoconetEvent waits in.
+   */
+  LoconetEvent(RREventObserver who, LocoNetMessage msg,
+      EventCoalescer.Key key, int lane) {
+    Who = who;
+    Msg = msg;
+    Pending = key;
+    Lane = lane;
+  }
+
+  /**
+   * tells the RREventManager which lane the RREvent waits in.
+   *
+   * @return the lane selected when the report was received.
+   */
+  @Override
+  public int getLane() {
+    return Lane;
+  }
+
+  /**
+   * replaces the message with a later one, if the LoconetEvent has
+   * not been processed.
+   *
+   * @param msg is the later message.
+   * @return true if the message was replaced and false if it is
+   * too late.
+   */
+  synchronized boolean supersede(LocoNetMessage msg) {
+    if (Pending == null) {
+      return false;
+    }
+    Msg = msg;
+    return true;
+  }
+
   /*
    * Performs the command encapsulated by this object.
    */
   public void doIt() {
-    Who.acceptMessage(Msg);
+    LocoNetMessage msg;
+    synchronized (this) {
+      if (Pending != null) {
+        EventCoalescer.retire(Pending, this);
+        Pending = null;
+      }
+      msg = Msg;
+    }
+    Who.acceptMessage(msg);
   }
 }
 /* @(#)LoconetEvent.java */
\ No newline at end of file
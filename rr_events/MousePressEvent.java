@@ -40,5 +40,15 @@ public class MousePressEvent
   public void doIt() {
     Screen.DispatcherPanel.mousePressedAction(Mevent);
   }
+
+  /**
+   * tells the RREventManager which lane the RREvent waits in.
+   *
+   * @return the dispatcher lane.
+   */
+  @Override
+  public int getLane() {
+    return DISPATCHER_LANE;
+  }
 }
 /* @(#)MousePressEvent.java */
\ No newline at end of file
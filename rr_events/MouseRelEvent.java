@@ -40,5 +40,15 @@ public class MouseRelEvent
   public void doIt() {
     Screen.DispatcherPanel.mouseReleasedAction(Mevent);
   }
+
+  /**
+   * tells the RREventManager which lane the RREvent waits in.
+   *
+   * @return the dispatcher lane.
+   */
+  @Override
+  public int getLane() {
+    return DISPATCHER_LANE;
+  }
 }
 /* @(#)MouseRelEvent.java */
\ No newline at end of file
@@ -29,15 +29,57 @@ package cats.rr_events;
  */
 public abstract class RREvent {
 
+  /**
+   * is the lane for RREvents that keep the layout safe: reports from
+   * the layout and turnout verification.
+   */
+  public static final int SAFETY_LANE = 0;
+
+  /**
+   * is the lane for input from the dispatcher.
+   */
+  public static final int DISPATCHER_LANE = 1;
+
+  /**
+   * is the lane for RREvents that refresh the state of the layout in
+   * bulk.
+   */
+  public static final int BULK_LANE = 2;
+
+  /**
+   * is when (System.nanoTime()) the RREvent was queued.
+   */
+  private long QueuedTime;
+
   /**
    * Performs the command encapsulated by this object.
    */
   public abstract void doIt();
 
+  /**
+   * tells the RREventManager which lane the RREvent waits in.
+   *
+   * @return one of the lane constants.  Unless overridden, it is
+   * the safety lane.
+   */
+  public int getLane() {
+    return SAFETY_LANE;
+  }
+
+  /**
+   * retrieves when the RREvent was queued.
+   *
+   * @return the System.nanoTime() when queUp() was called.
+   */
+  public long getQueuedTime() {
+    return QueuedTime;
+  }
+
   /**
    * adds the RREvent object to the queue.
    */
   public void queUp() {
+    QueuedTime = System.nanoTime();
     RREventManager.EventQue.append(this);
   }
 }
@@ -6,7 +6,10 @@
  */
 package cats.rr_events;
 
-import cats.layout.Queue;
+import cats.gui.CounterFactory;
+import cats.gui.GridTile;
+import cats.gui.Sequence;
+import cats.layout.PegCounter;
 
 /**
  *   This file contains a class that becomes the thread that receives
@@ -14,7 +17,7 @@ import cats.layout.Queue;
  *   queue must be derived from RREvent, so that the doIt() method exists
  *   and can be executed.
  *   @see cats.rr_events.RREvent
- *   @see cats.layout.Queue
+ *   @see cats.rr_events.EventLanes
  *   @see java.lang.Runnable
  * <p>Title: CATS - Crandic Automated Traffic System</p>
  * <p>Description: A program for dispatching trains on Pat Lana's
@@ -33,9 +36,18 @@ public class RREventManager implements Runnable {
   }
 
   /**
-   * a FIFO for holding RREvent objects.
+   * is the number of RREvents that can be waiting in each lane before
+   * producers are paused.
    */
-  public static Queue EventQue = new Queue();
+  public static final int EVENT_CAPACITY = 4096;
+
+  /**
+   * a FIFO (per priority lane) for holding RREvent objects.  It is
+   * filled from the Swing thread, the JMRI listener threads and the
+   * timers, but only emptied by the EventThread, so it does not need
+   * a lock.
+   */
+  public static EventLanes EventQue = new EventLanes(EVENT_CAPACITY);
 
   /**
    * The asynchronous thread that periodically flushes the Queue
@@ -43,10 +55,71 @@ public class RREventManager implements Runnable {
    */
   public static Thread EventThread;
 
+  /**
+   * is the most RREvents that will ever be run in one batch.
+   */
+  public static final int MAX_BATCH = 128;
+
+  /**
+   * is the batch size used if the Adjustments menu has not been created.
+   */
+  private static final int DEFAULT_BATCH = 32;
+
+  /**
+   * is how often (in milliseconds) the batch statistics are copied to
+   * the JMRI Memory objects.
+   */
+  private static final long PUBLISH_INTERVAL = 1000;
+
+  /**
+   * are the JMRI User Names of the Memory objects holding the batch
+   * statistics.
+   */
+  public static final String BATCH_SIZE_NAME = "RREventBatchSize";
+  public static final String BATCH_MAX_NAME = "RREventBatchMax";
+  public static final String BATCH_USEC_NAME = "RREventBatchUsec";
+  public static final String BATCH_MAX_USEC_NAME = "RREventBatchMaxUsec";
+
+  /**
+   * is the Adjustment for selecting the batch size.
+   */
+  private static Sequence BatchLimit;
+
+  /**
+   * is the Adjustment for selecting the lane fairness limit.
+   */
+  private static Sequence LaneFairness;
+
+  /**
+   * are the statistics gathered since they were last published.
+   */
+  private int Batches;
+  private int Events;
+  private int LargestBatch;
+  private long Nanos;
+  private long LongestNanos;
+
+  /**
+   * is when the statistics were last published, in milliseconds.
+   */
+  private long LastPublished;
+
+  /**
+   * are the PegCounters the statistics are published through.  They
+   * are created on the first publication, so that JMRI is up.
+   */
+  private PegCounter AverageSize;
+  private PegCounter MaxSize;
+  private PegCounter AverageUsec;
+  private PegCounter MaxUsec;
+
   /* Name: void run()
    *
    * What:
-   *   This is the Thread
+   *   This is the Thread.  It waits for RREvents, then runs all that
+   *   are waiting (up to the batch size), highest priority lane first,
+   *   before asking the screen to repaint the GridTiles they changed.  Thus, a burst of occupancy
+   *   reports results in one repaint, rather than one per report.
    *
    * Inputs:
    *   There are none
@@ -57,16 +130,109 @@ public class RREventManager implements Runnable {
    * Special Considerations:
    */
   public void run() {
-    RREvent event;
+    Object batch[] = new Object[MAX_BATCH];
+    int count;
+    long start;
+    long began;
+    boolean profiling;
 //    System.out.println("RREventManager::run");
     while (true) {
+      count = EventQue.drain(batch, getBatchLimit());
+      start = System.nanoTime();
+      profiling = EventProfiler.isRecording();
+      if (count > 1) {
+        GridTile.holdUpdates();
+      }
       try {
-        event = ( (RREvent) EventQue.get());
-        event.doIt();
+        for (int i = 0; i < count; ++i) {
+          try {
+            if (profiling) {
+              began = System.nanoTime();
+              ( (RREvent) batch[i]).doIt();
+              EventProfiler.instance().record((RREvent) batch[i], began,
+                  System.nanoTime());
+            }
+            else {
+              ( (RREvent) batch[i]).doIt();
+            }
+          }
+          catch (ClassCastException cce) {
+            System.out.println("RREventManager received something that isn't an RREvent.");
+          }
+          batch[i] = null;
+        }
+      }
+      finally {
+        if (count > 1) {
+          GridTile.releaseUpdates();
+        }
+      }
+      if (count > 0) {
+        recordBatch(count, System.nanoTime() - start);
+      }
+    }
+  }
+
+  /**
+   * retrieves the most RREvents to run before updating the screen.
+   * It also passes the lane fairness limit from the Adjustments menu
+   * to EventQue.
+   *
+   * @return the batch size from the Adjustments menu.
+   */
+  private static int getBatchLimit() {
+    if ((BatchLimit == null) && (CounterFactory.CountKeeper != null)) {
+      BatchLimit = CounterFactory.CountKeeper.findSequence(
+          CounterFactory.EVENTBATCHTAG);
+      LaneFairness = CounterFactory.CountKeeper.findSequence(
+          CounterFactory.EVENTFAIRTAG);
+    }
+    if (LaneFairness != null) {
+      EventQue.setFairness(LaneFairness.getAdjustment());
+    }
+    if (BatchLimit == null) {
+      return DEFAULT_BATCH;
+    }
+    return Math.max(1, Math.min(MAX_BATCH, BatchLimit.getAdjustment()));
+  }
+
+  /**
+   * accumulates the statistics on a batch and, periodically, copies them
+   * to the JMRI Memory objects.
+   *
+   * @param size is the number of RREvents in the batch.
+   * @param nanos is how long the batch took to run, including the
+   * screen update.
+   */
+  private void recordBatch(int size, long nanos) {
+    long now = System.currentTimeMillis();
+    ++Batches;
+    Events += size;
+    Nanos += nanos;
+    if (size > LargestBatch) {
+      LargestBatch = size;
+    }
+    if (nanos > LongestNanos) {
+      LongestNanos = nanos;
+    }
+    if ((now - LastPublished) >= PUBLISH_INTERVAL) {
+      if (AverageSize == null) {
+        AverageSize = new PegCounter(BATCH_SIZE_NAME);
+        MaxSize = new PegCounter(BATCH_MAX_NAME);
+        AverageUsec = new PegCounter(BATCH_USEC_NAME);
+        MaxUsec = new PegCounter(BATCH_MAX_USEC_NAME);
       }
-      catch (ClassCastException cce) {
-        System.out.println("RREventManager received something that isn't an RREvent.");
+      AverageSize.setCount(Events / Batches);
+      MaxSize.setCount(LargestBatch);
+      AverageUsec.setCount((int) (Nanos / Batches / 1000));
+      MaxUsec.setCount((int) (LongestNanos / 1000));
+      EventQue.publish();
+      if (EventProfiler.isRecording()) {
+        EventProfiler.instance().publish();
       }
+      Batches = Events = LargestBatch = 0;
+      Nanos = LongestNanos = 0;
+      LastPublished = now;
     }
   }
 }
@@ -10,6 +10,7 @@ import cats.common.Sides;
 import cats.crew.*;
 import cats.jmri.OperationsTrains;
 import cats.layout.FontList;
+import cats.layout.LogRecord;
 import cats.layout.Logger;
 import cats.gui.crew.CrewPicker;
 import cats.gui.CtcFont;
@@ -24,6 +25,7 @@ import cats.layout.FastClock;
 import cats.layout.items.SecEdge;
 import cats.layout.items.Section;
 import cats.layout.store.FieldPair;
+import cats.layout.store.FieldSlot;
 import cats.layout.store.GenericRecord;
 import cats.layout.store.StoredObject;
 import cats.layout.xml.*;
@@ -196,6 +198,19 @@ implements StoredObject, XMLEleObject {
 	 */
 	public static final String TRAIN_RERUN = "TRAIN_RERUN";
 
+	/*
+	 * The following are the slots of the fields read often, so they are
+	 * found without searching the GenericRecord.
+	 */
+	private static final FieldSlot NAME_SLOT = new FieldSlot(TRAIN_NAME);
+	private static final FieldSlot SYMBOL_SLOT = new FieldSlot(TRAIN_SYMBOL);
+	private static final FieldSlot ENGINE_SLOT = new FieldSlot(ENGINE);
+	private static final FieldSlot CABOOSE_SLOT = new FieldSlot(CABOOSE);
+	private static final FieldSlot CREW_SLOT = new FieldSlot(CREW);
+	private static final FieldSlot ONDUTY_SLOT = new FieldSlot(ONDUTY);
+	private static final FieldSlot DEPARTURE_SLOT = new FieldSlot(DEPARTURE);
+	private static final FieldSlot TRANSPONDING_SLOT = new FieldSlot(TRANSPONDING);
+
 	/*
 	 * The following identify bits for selecting Trains.  They are not private
 	 * because the Roster uses them for constructing selection masks.
@@ -356,7 +371,7 @@ implements StoredObject, XMLEleObject {
 		FieldPair newPair;
 		FieldPair oldPair;
 		GenericRecord broadcastRec = new GenericRecord();
-		broadcastRec.add(TrainFields.findPair(TRAIN_SYMBOL));
+		broadcastRec.add(TrainFields.findPair(SYMBOL_SLOT));
 		for (Iterator<FieldPair> iter = description.iterator(); iter.hasNext(); ) {
 			newPair = iter.next();
 			fieldTag = newPair.FieldTag;
@@ -429,7 +444,7 @@ implements StoredObject, XMLEleObject {
 	 * @return the name of the Train.
 	 */
 	public String getName() {
-		return new String( (String) TrainFields.findValue(TRAIN_NAME));
+		return new String( (String) TrainFields.findValue(NAME_SLOT));
 	}
 
 	/**
@@ -447,7 +462,7 @@ implements StoredObject, XMLEleObject {
 	 * @return the identity of the Train.
 	 */
 	public String getSymbol() {
-		return new String( (String) TrainFields.findValue(TRAIN_SYMBOL));
+		return new String( (String) TrainFields.findValue(SYMBOL_SLOT));
 	}
 
 	/**
@@ -456,7 +471,7 @@ implements StoredObject, XMLEleObject {
 	 * @return the lead engine.
 	 */
 	public String getEngine() {
-		return new String( (String) TrainFields.findValue(ENGINE));
+		return new String( (String) TrainFields.findValue(ENGINE_SLOT));
 	}
 
 	/**
@@ -490,7 +505,7 @@ implements StoredObject, XMLEleObject {
 	 * @return the caboose decoder address.
 	 */
 	public String getCaboose() {
-		return new String( (String) TrainFields.findValue(CABOOSE));
+		return new String( (String) TrainFields.findValue(CABOOSE_SLOT));
 	}
 
 	/**
@@ -514,7 +529,7 @@ implements StoredObject, XMLEleObject {
 	private void setOnDuty() {
 		String crewTime;
 		if (TimeOnDuty == TimeSpec.UNKNOWN_TIME) {
-			crewTime = ( (String) TrainFields.findValue(ONDUTY)).trim();
+			crewTime = ( (String) TrainFields.findValue(ONDUTY_SLOT)).trim();
 			if (crewTime.length() == 0) {
 				TimeOnDuty = TimeSpec.currentTime();
 			}
@@ -543,7 +558,7 @@ implements StoredObject, XMLEleObject {
 	 */
 	public void adjustOnDuty() {
 		String trainTime = getDeparture();
-		String crewTime = ( (String) TrainFields.findValue(ONDUTY)).trim();
+		String crewTime = ( (String) TrainFields.findValue(ONDUTY_SLOT)).trim();
 		if ( (crewTime.length() != 0) &&
 				( (crewTime.charAt(0) == '-') || (crewTime.charAt(0) == '+'))
 				&& (trainTime != null)) {
@@ -564,7 +579,7 @@ implements StoredObject, XMLEleObject {
 	 * @return null or the absolute departure time.
 	 */
 	public String getDeparture() {
-		String trainTime = ( (String) TrainFields.findValue(DEPARTURE)).trim();
+		String trainTime = ( (String) TrainFields.findValue(DEPARTURE_SLOT)).trim();
 		if (trainTime.length() == 0) {
 			trainTime = null;
 		}
@@ -608,9 +623,9 @@ implements StoredObject, XMLEleObject {
 	 * @see cats.crew.Crew
 	 */
 	public void setCrew(Crew crew) {
-		FieldPair pair = TrainFields.findPair(CREW);
+		FieldPair pair = TrainFields.findPair(CREW_SLOT);
 		GenericRecord broadcastRec = new GenericRecord();
-		broadcastRec.add(TrainFields.findPair(TRAIN_SYMBOL));
+		broadcastRec.add(TrainFields.findPair(SYMBOL_SLOT));
 		MyCrew = crew;
 		if (MyCrew == null) {
 			TrainState.clear(ASSIGNED_BIT);
@@ -618,12 +633,12 @@ implements StoredObject, XMLEleObject {
 				TrainState.clear(FOCUS_BIT);
 				TrainStore.TrainKeeper.clrFocus();
 			}
-			pair.FieldValue = "";
+			TrainFields.replaceValue(CREW, "");
 			TimeOnDuty = TimeSpec.UNKNOWN_TIME;
 		}
 		else {
 			TrainState.set(ASSIGNED_BIT);
-			pair.FieldValue = MyCrew.getCrewName();
+			TrainFields.replaceValue(CREW, MyCrew.getCrewName());
 			setOnDuty();
 		}
 		setLabel();
@@ -631,7 +646,7 @@ implements StoredObject, XMLEleObject {
 			Location.getTile().requestUpdate();
 		}
 		broadcastRec.add(pair);
-		pair = TrainFields.findPair(ONDUTY);
+		pair = TrainFields.findPair(ONDUTY_SLOT);
 		pair.FieldValue = TimeSpec.convertMinutes(getOnDuty());
 		broadcastRec.add(pair);
 		TrainStore.TrainKeeper.broadcastChange(broadcastRec);    
@@ -704,7 +719,7 @@ implements StoredObject, XMLEleObject {
 	 * false if it doesn't.
 	 */
 	public Boolean getTransponding() {
-		return (Boolean) TrainFields.findValue(TRANSPONDING);
+		return (Boolean) TrainFields.findValue(TRANSPONDING_SLOT);
 	}
 
 	/**
@@ -779,10 +794,14 @@ implements StoredObject, XMLEleObject {
 			TrainState.clear();
 			TrainState.set(TIEDUP_BIT);
 		}
+		TrainStore.TrainKeeper.stateChanged(this);
 		if (TrainFields != null) {
 			TrainFields.setStatus(Train.TRAIN_TIED_DOWN);      
 		}
 		OperationsTrains.instance().terminateTrain(getSymbol());
+		// logState() announced the change before the state was changed, so
+		// a snapshot taken in between may have cached the old status.
+		TrainStore.TrainKeeper.forgetImage(getSymbol());
 	}
 
 	/**
@@ -804,6 +823,7 @@ implements StoredObject, XMLEleObject {
 		//    TimeOnDuty = TimeSpec.UNKNOWN_TIME;
 		TrainState.clear();
 		TrainState.set(REMOVED_BIT);
+		TrainStore.TrainKeeper.stateChanged(this);
 		if (Location != null) {
 			Location.addTrain(null);
 			Location = null;
@@ -816,6 +836,9 @@ implements StoredObject, XMLEleObject {
 			TrainFields.setStatus(Train.TRAIN_TERMINATED);
 		}
 		TrainLab = null;
+		// logState() announced the change before the state was changed, so
+		// a snapshot taken in between may have cached the old status.
+		TrainStore.TrainKeeper.forgetImage(getSymbol());
 		// disable this because a train may be removed from the layout
 		// before its cars have been classified (and released)
 		//OperationsTrains.instance().terminateTrain(getSymbol());
@@ -830,6 +853,7 @@ implements StoredObject, XMLEleObject {
 		if (!TrainState.get(POSITIONED_BIT)) {
 			TrainState.set(CREATED_BIT);
 		}
+		TrainStore.TrainKeeper.stateChanged(this);
 		if (TrainFields != null) {
 			TrainFields.setStatus(GenericRecord.UNCHANGED);
 		}
@@ -881,7 +905,7 @@ implements StoredObject, XMLEleObject {
 		}
 		//    Logger.timeStamp(logTag, info);
 		//    TrainStore.TrainKeeper.broadcastUpdate(logTag, info);
-		TrainStore.TrainKeeper.broadcastTimestamp(logTag, info);
+		TrainStore.TrainKeeper.broadcastTimestamp(getSymbol(), logTag, info);
 	}
 
 	/**
@@ -1107,6 +1131,7 @@ implements StoredObject, XMLEleObject {
 			Station = Location.addTrain(this);
 			TrainState.clear(CREATED_BIT);
 			TrainState.set(POSITIONED_BIT);
+			TrainStore.TrainKeeper.stateChanged(this);
 			recordMove(null, null, Side, Location);
 		}
 	}
@@ -1275,57 +1300,62 @@ implements StoredObject, XMLEleObject {
 	 */
 	private void recordMove(SecEdge departure, Section depart, SecEdge arrival,
 			Section arrive) {
-		String movement;
-		Point dest = null;
-		String destEdge = null;
+		LogRecord movement;
+		String from;
+		String to;
 		String station;
+		Point dest = null;
+		int destEdge = -1;
 
-		movement = new String(Constants.QUOTE + getSymbol() + Constants.QUOTE_FS);
 		if ( (departure != null) && ( (station = departure.identify()) != null)) {
-			movement = movement.concat(station);
+			from = station;
 		}
 		else if (depart != null) {
 			station = depart.getStation();
 			if (station == null) {
-				movement = movement.concat(depart.toString());
+				from = depart.toString();
 			}
 			else {
-				movement = movement.concat(station);
+				from = station;
 			}
 		}
 		else {
-			movement = movement.concat(Constants.UNKNOWN);
+			from = Constants.UNKNOWN;
 		}
-		movement = movement.concat(Constants.QUOTE + Constants.FS_STRING + "to" + Constants.FS + Constants.QUOTE);
 		if ( (arrival != null) && ( (station = arrival.identify()) != null)) {
-			movement = movement.concat(station);
+			to = station;
 			dest = arrival.getSection().getCoordinates();
-			destEdge = String.valueOf(arrival.getEdge());
+			destEdge = arrival.getEdge();
 			OperationsTrains.instance().moveTrain(getSymbol(), station);
 		}
 		else if (arrive != null) {
 			station = arrive.getStation();
 			if (station == null) {
-				movement = movement.concat(arrive.toString());
+				to = arrive.toString();
 			}
 			else {
-				movement = movement.concat(station);
+				to = station;
 				OperationsTrains.instance().moveTrain(getSymbol(), station);
 			}
 			dest = arrive.getCoordinates();
 		}
 		else {
-			movement = movement.concat(Constants.UNKNOWN);
+			to = Constants.UNKNOWN;
 		}
+
+		// the record is formatted in place, in the format of
+		// "symbol"	"from"	to	"to"	"(x,y):edge"
+		movement = LogRecord.start(Constants.MOVE_TAG);
+		movement.append(Constants.QUOTE).append(getSymbol()).append(Constants.QUOTE_FS);
+		movement.append(from).append(Constants.QUOTE).append(Constants.FS).append("to");
+		movement.append(Constants.FS).append(Constants.QUOTE).append(to);
 		if (dest == null) {
-			movement = movement.concat(Constants.QUOTE);
+			movement.append(Constants.QUOTE);
 		}
 		else {
-			movement = movement.concat(Constants.QUOTE_FS + Logger.formatLocation(dest, destEdge) + Constants.QUOTE);
+			movement.append(Constants.QUOTE_FS).appendLocation(dest, destEdge).append(Constants.QUOTE);
 		}
-		//    Logger.timeStamp(Logger.MOVE_TAG, movement);
-		//    TrainStore.TrainKeeper.broadcastUpdate(Logger.MOVE_TAG, movement);
-		TrainStore.TrainKeeper.broadcastTimestamp(Constants.MOVE_TAG, movement);
+		TrainStore.TrainKeeper.broadcastRecord(getSymbol(), movement.finish());
 	}
 
 	//  /**
@@ -0,0 +1,213 @@
+/*
+ * Name: TrainStates.java
+ *
+ * What:
+ *   This file contains the Trains of the TrainStore sorted by the states
+ *   the lineup and menus ask for (created, unrun, run and not removed),
+ *   so that asking for the Trains in a state does not examine every
+ *   Train.
+ *
+ * Special Considerations:
+ *   Trains change state on the GUI thread and from the network, so all
+ *   methods are synchronized.
+ */
+package cats.trains;
+
+import cats.layout.store.GenericRecord;
+import cats.layout.store.RecordVector;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.TreeSet;
+import java.util.Vector;
+
+/**
+ *   This file contains the Trains of the TrainStore sorted by the states
+ *   the lineup and menus ask for (created, unrun, run and not removed),
+ *   so that asking for the Trains in a state does not examine every
+ *   Train.
+ *   <p>
+ *   Each state has a set of the Trains in it.  A Train moves between the
+ *   sets when it tells the TrainStore that its state changed, so a query
+ *   costs only the Trains it returns.  The sets are kept in the order of
+ *   the records in the TrainStore, because the lineup presents Trains in
+ *   the order they were added.
+ *   <p>
+ *   Trains are learned from the TrainStore's RecordVector when a query is
+ *   made.  Records are only appended to it, except when the lineup is
+ *   edited, so new Trains are picked up from the end of it.  When the
+ *   RecordVector is replaced, shrinks or is reordered (see forget()), the
+ *   sets are rebuilt from it.
+ *
+ * <p>Title: CATS - Crandic Automated Traffic System</p>
+ * <p>Description: A program for dispatching trains on Pat Lana's
+ * Crandic model railroad.
+ * <p>Copyright: Copyright (c) 2019</p>
+ * <p>Company: </p>
+ * @author Rodney Black
+ * @version $Revision$
+ */
+class TrainStates {
+
+  /**
+   * selects the Trains that have not been positioned on the layout.
+   */
+  static final int CREATED = 0;
+
+  /**
+   * selects the Trains that have not been assigned crews and have not
+   * been run.
+   */
+  static final int UNRUN = 1;
+
+  /**
+   * selects the Trains that have been tied down or terminated.
+   */
+  static final int RUN = 2;
+
+  /**
+   * selects the Trains that have not been removed.
+   */
+  static final int NOT_REMOVED = 3;
+
+  /**
+   * is the number of states.
+   */
+  private static final int STATES = 4;
+
+  /**
+   * is the position of each Train in the RecordVector.
+   */
+  private final HashMap<Train, Integer> Order = new HashMap<Train, Integer>();
+
+  /**
+   * are the Trains in each state, in RecordVector order.
+   */
+  private final ArrayList<TreeSet<Train>> Sets =
+    new ArrayList<TreeSet<Train>>(STATES);
+
+  /**
+   * is the RecordVector the Trains were learned from.
+   */
+  private RecordVector<GenericRecord> Source;
+
+  /**
+   * is the number of records in Source that have been learned.
+   */
+  private int Learned;
+
+  /**
+   * is the constructor.
+   */
+  TrainStates() {
+    Comparator<Train> byOrder = new Comparator<Train>() {
+      public int compare(Train left, Train right) {
+        return Order.get(left).compareTo(Order.get(right));
+      }
+    };
+    for (int s = 0; s < STATES; ++s) {
+      Sets.add(new TreeSet<Train>(byOrder));
+    }
+  }
+
+  /**
+   * constructs a Vector of the Trains in a state.
+   *
+   * @param state is one of the states above.
+   * @param store is the RecordVector holding the Trains.
+   *
+   * @return the Trains, in the order of their records.
+   */
+  synchronized Vector<Train> select(int state, RecordVector<GenericRecord> store) {
+    catchUp(store);
+    return new Vector<Train>(Sets.get(state));
+  }
+
+  /**
+   * moves a Train to the sets of its new state.  A Train that has not
+   * been learned yet is placed when it is.
+   *
+   * @param train is the Train whose state changed.
+   */
+  synchronized void changed(Train train) {
+    if (Order.containsKey(train)) {
+      place(train);
+    }
+  }
+
+  /**
+   * discards the sets, so that they are rebuilt on the next query.  It
+   * should be called when the records are reordered.
+   */
+  synchronized void forget() {
+    Source = null;
+  }
+
+  /**
+   * brings the sets up to date with the RecordVector.
+   *
+   * @param store is the RecordVector holding the Trains.
+   */
+  private void catchUp(RecordVector<GenericRecord> store) {
+    int size = store.size();
+    Train train;
+    if ((store != Source) || (size < Learned)) {
+      Order.clear();
+      for (int s = 0; s < STATES; ++s) {
+        Sets.get(s).clear();
+      }
+      Source = store;
+      Learned = 0;
+    }
+    for (; Learned < size; ++Learned) {
+      train = (Train) store.get(Learned).getActiveReference();
+      if ((train != null) && !Order.containsKey(train)) {
+        Order.put(train, Integer.valueOf(Learned));
+        place(train);
+      }
+    }
+  }
+
+  /**
+   * adds a Train to the sets of the states it is in and removes it from
+   * the others.
+   *
+   * @param train is the Train.
+   */
+  private void place(Train train) {
+    for (int s = 0; s < STATES; ++s) {
+      if (isIn(train, s)) {
+        Sets.get(s).add(train);
+      }
+      else {
+        Sets.get(s).remove(train);
+      }
+    }
+  }
+
+  /**
+   * determines if a Train is in a state.
+   *
+   * @param train is the Train.
+   * @param state is one of the states above.
+   *
+   * @return true if it is.
+   */
+  private static boolean isIn(Train train, int state) {
+    switch (state) {
+      case CREATED:
+        return train.selectTrain(Train.Created, null);
+
+      case UNRUN:
+        return train.selectTrain(Train.Unassigned, Train.Done);
+
+      case RUN:
+        return train.selectTrain(Train.Done, null);
+
+      default:
+        return train.selectTrain(null, Train.Removed);
+    }
+  }
+}
+/* @(#)TrainStates.java */
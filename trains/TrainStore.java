@@ -30,7 +30,6 @@ import cats.layout.store.RecordVector;
 
 import java.awt.Component;
 import java.awt.event.KeyEvent;
-import java.util.BitSet;
 import java.util.Enumeration;
 import java.util.Vector;
 
@@ -204,6 +203,11 @@ public class TrainStore
    * is the Train receiving keystrokes.
    */
   private Train Focus;
+
+  /**
+   * are the Trains sorted by state, for the lineup and menus.
+   */
+  private final TrainStates States = new TrainStates();
   
 //  /**
 //   * is the strategy to use when selecting which Trains are to appear
@@ -477,29 +481,13 @@ public class TrainStore
   }
 
   /**
-   * extracts the Train Field from all Train Records that match the selection
-   * criteria.
-   * @param selector is the Train state being searched for.  If any one
-   * of the bits in the BitSet are set, then it matches.
-   *
-   * @param filter is the inverse of selector.  If any one of the bits
-   * in the BitSet are set, then it is rejected.
+   * is called by a Train when it moves to a new state, so that it is
+   * found by the queries on that state.
    *
-   * @return a Vector containing all Trains whose state is selector.
+   * @param train is the Train.
    */
-  private Vector<Train> selectTrain(BitSet selector, BitSet filter) {
-    Vector<Train> trains = new Vector<Train>();
-    Train train;
-    GenericRecord t;
-    for (Enumeration<GenericRecord> e = DataStore.elements();
-         e.hasMoreElements(); ) {
-      t = (e.nextElement());
-      train = (Train) t.getActiveReference();
-      if ( (train != null) && (train.selectTrain(selector, filter))) {
-        trains.add(train);
-      }
-    }
-    return trains;
+  void stateChanged(Train train) {
+    States.changed(train);
   }
 
   /**
@@ -509,7 +497,7 @@ public class TrainStore
    * @return the Vector.
    */
   public Vector<Train> getCreated() {
-    return selectTrain(Train.Created, null);
+    return States.select(TrainStates.CREATED, DataStore);
   }
 
   /**
@@ -519,7 +507,7 @@ public class TrainStore
    * @return the Vector.
    */
   public Vector<Train> getUnrun() {
-    return selectTrain(Train.Unassigned, Train.Done);
+    return States.select(TrainStates.UNRUN, DataStore);
   }
 
 //  /**
@@ -537,7 +525,7 @@ public class TrainStore
    * @return the Vector.
    */
   private Vector<Train> getNotRemoved() {
-    return selectTrain(null, Train.Removed);
+    return States.select(TrainStates.NOT_REMOVED, DataStore);
   }
 
   /**
@@ -546,7 +534,7 @@ public class TrainStore
    * or terminated.
    */
   public Vector<Train> getRun() {
-    return selectTrain(Train.Done, null);
+    return States.select(TrainStates.RUN, DataStore);
   }
 
   /**
@@ -778,25 +766,34 @@ public class TrainStore
     GenericRecord master;
     FieldPair keyPair;
     String keyTag = FieldInfoStore.getKeyField();
-    RecordVector<GenericRecord> tempStore = DataStore.duplicate();
+    RecordVector<GenericRecord> tempStore;
     
-    // preserve the order of records from the edit
-    DataStore.clear();
-    for (Enumeration<GenericRecord> e = trial.elements(); e.hasMoreElements(); ) {
-      edit = e.nextElement();
-      keyPair = edit.findPair(keyTag);
-      master = tempStore.search(keyPair, null);
-      
-      if (master == null) {
-        // the record was just created.  A Train can not be deleted.  So, after the
-        // accept button is pushed, it remains until CATS ends.
-        edit.setStatus(GenericRecord.UNCHANGED);
-        addTrustedRecord(edit);
-      }
-      else {
-        updateTrain(edit, master);
-        DataStore.add(master);
+    StoreLock.writeLock().lock();
+    try {
+      tempStore = DataStore.duplicate();
+      // preserve the order of records from the edit
+      forgetImage();
+      DataStore.clear();
+      for (Enumeration<GenericRecord> e = trial.elements(); e.hasMoreElements(); ) {
+        edit = e.nextElement();
+        keyPair = edit.findPair(keyTag);
+        master = tempStore.search(keyPair, null);
+
+        if (master == null) {
+          // the record was just created.  A Train can not be deleted.  So, after the
+          // accept button is pushed, it remains until CATS ends.
+          edit.setStatus(GenericRecord.UNCHANGED);
+          addTrustedRecord(edit);
+        }
+        else {
+          updateTrain(edit, master);
+          DataStore.add(master);
+        }
       }
+      States.forget();
+    }
+    finally {
+      StoreLock.writeLock().unlock();
     }
   }
 